@@ -0,0 +1,161 @@
+package com.chestshop.managers;
+
+import com.chestshop.models.Shop;
+import com.chestshop.models.ShopOwner;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Retained heap per shop at 100k shops, measured from the used heap after
+ * full GCs rather than estimated from field layout. Not a JMH benchmark -
+ * run it through the benchmark profile with its own main class:
+ *
+ * <pre>
+ * mvn -P benchmark compile exec:exec -Dbenchmark.jvmArgs=-XX:+UseSerialGC \
+ *     -Dbenchmark.main=com.chestshop.managers.ShopHeapFootprint
+ * </pre>
+ *
+ * Use the serial collector: G1 accounts for large arrays by whole regions,
+ * which skews the readings for anything backed by one big array.
+ *
+ * Every case builds the same generated shops (fixed seed, 1000 owners,
+ * 3 worlds), and the owner intern table is emptied before each, so runs are
+ * comparable. Pass a shop count as the first argument to change it.
+ */
+public class ShopHeapFootprint {
+
+    private static final int DEFAULT_SHOPS = 100_000;
+    private static final int OWNERS = 1000;
+    private static final int ROUNDS = 5;
+    private static final String[] WORLDS = {"world", "world_nether", "world_the_end"};
+    private static final Material[] ITEMS = Material.values();
+
+    /**
+     * Shop as it was before packed positions: two Locations, and a UUID and
+     * name string per shop, as parsed from storage
+     */
+    @SuppressWarnings("unused")
+    private record LegacyShop(UUID ownerUUID, String ownerName, Location signLocation, Location chestLocation,
+                              Material item, int amount, double buyPrice, double sellPrice) {}
+
+    private record Generated(UUID owner, String ownerName, String world, int x, int y, int z, Material item,
+                             int amount, double buyPrice, double sellPrice) {}
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SHOPS;
+        Generated[] shops = generate(count);
+        Map<String, World> worlds = new HashMap<>();
+        for (String name : WORLDS) {
+            worlds.put(name, world(name));
+        }
+
+        measure("legacy Shop (Locations)", count, () -> build(count, i -> {
+            Generated g = shops[i];
+            return new LegacyShop(UUID.fromString(g.owner().toString()), new String(g.ownerName()),
+                    new Location(worlds.get(g.world()), g.x(), g.y(), g.z()),
+                    new Location(worlds.get(g.world()), g.x(), g.y() - 1, g.z()),
+                    g.item(), g.amount(), g.buyPrice(), g.sellPrice());
+        }));
+        measure("Shop", count, () -> build(count, i -> shop(shops[i])));
+        measure("ShopTable", count, () -> {
+            ShopTable table = new ShopTable();
+            table.clear(count);
+            for (Generated g : shops) {
+                table.add(shop(g));
+            }
+            return table;
+        });
+    }
+
+    private static Generated[] generate(int count) {
+        Random random = new Random(42);
+        UUID[] owners = new UUID[OWNERS];
+        for (int i = 0; i < OWNERS; i++) {
+            owners[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        Generated[] shops = new Generated[count];
+        for (int i = 0; i < count; i++) {
+            int owner = random.nextInt(OWNERS);
+            shops[i] = new Generated(owners[owner], "Player" + owner, WORLDS[random.nextInt(WORLDS.length)],
+                    random.nextInt(20_000) - 10_000, 40 + random.nextInt(80), random.nextInt(20_000) - 10_000,
+                    ITEMS[random.nextInt(ITEMS.length)], 1 + random.nextInt(64),
+                    random.nextInt(1000) / 10.0, random.nextInt(1000) / 10.0);
+        }
+        return shops;
+    }
+
+    /**
+     * A Shop as the loader builds it - strings and UUIDs parsed afresh, interned by Shop
+     */
+    private static Shop shop(Generated g) {
+        return new Shop(-1, UUID.fromString(g.owner().toString()), new String(g.ownerName()),
+                new String(g.world()), g.x(), g.y(), g.z(), new String(g.world()), g.x(), g.y() - 1, g.z(),
+                g.item(), g.amount(), g.buyPrice(), g.sellPrice(), -1, -1);
+    }
+
+    /**
+     * A stand-in World - Location only keeps a weak reference to it
+     */
+    private static World world(String name) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getName", "toString" -> name;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static Object[] build(int count, IntFunction<Object> factory) {
+        Object[] built = new Object[count];
+        for (int i = 0; i < count; i++) {
+            built[i] = factory.apply(i);
+        }
+        return built;
+    }
+
+    /**
+     * Build a case a few times and report the smallest increase in used heap -
+     * stray garbage only ever adds to a reading
+     */
+    private static void measure(String name, int count, Supplier<Object> build) {
+        long bytes = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            ShopOwner.retainOnly(List.of());
+            long before = usedAfterGc();
+            Object retained = build.get();
+            bytes = Math.min(bytes, usedAfterGc() - before);
+            Reference.reachabilityFence(retained);
+        }
+        System.out.printf("%-26s %,12d bytes  %6.1f bytes/shop  (%d interned owners)%n",
+                name, bytes, bytes / (double) count, ShopOwner.internedCount());
+    }
+
+    private static long usedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // Repeat until a GC frees nothing more
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,118 @@
+package com.chestshop.storage;
+
+import com.chestshop.models.Shop;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Startup read of the same shops from shops.yml ({@link YamlShopStore}) and
+ * from the binary region shards ({@link FileShopStore}): everything
+ * {@code load()} does, from opening the files to the finished records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ShopLoadBenchmark {
+
+    private static final Material[] ITEMS = {Material.DIAMOND, Material.OAK_LOG, Material.IRON_INGOT, Material.BREAD};
+
+    @Param({"10000", "100000"})
+    public int shops;
+
+    private final Logger logger = Logger.getLogger("ShopLoadBenchmark");
+    private File yamlFolder;
+    private File binaryFolder;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Shop> generated = generate(shops);
+        yamlFolder = Files.createTempDirectory("chestshop-yaml").toFile();
+        binaryFolder = Files.createTempDirectory("chestshop-binary").toFile();
+        save(new YamlShopStore(logger, yamlFolder, 0), generated);
+        save(new FileShopStore(logger, binaryFolder, 0), generated);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        delete(yamlFolder);
+        delete(binaryFolder);
+    }
+
+    @Benchmark
+    public List<ShopRecord> yaml() throws IOException {
+        return new YamlShopStore(logger, yamlFolder, 0).load();
+    }
+
+    @Benchmark
+    public List<ShopRecord> binary() {
+        return new FileShopStore(logger, binaryFolder, 0).load();
+    }
+
+    /**
+     * Shops spread over a 20k x 20k area of three worlds, a few hundred owners
+     */
+    private static List<Shop> generate(int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        UUID[] owners = new UUID[Math.max(1, count / 200)];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        String[] worlds = {"world", "world_nether", "world_the_end"};
+        List<Shop> shops = new ArrayList<>(count);
+        for (int id = 0; id < count; id++) {
+            int owner = random.nextInt(owners.length);
+            String world = worlds[random.nextInt(worlds.length)];
+            int x = random.nextInt(-10_000, 10_000);
+            int y = random.nextInt(-60, 300);
+            int z = random.nextInt(-10_000, 10_000);
+            shops.add(new Shop(id, owners[owner], "owner" + owner, world, x, y + 1, z, world, x, y, z,
+                    ITEMS[random.nextInt(ITEMS.length)], 1 + random.nextInt(64),
+                    random.nextInt(1000), random.nextInt(500), random.nextInt(1728), random.nextInt(1728)));
+        }
+        return shops;
+    }
+
+    private static void save(ShopStore store, List<Shop> shops) throws Exception {
+        store.start();
+        store.invalidate();
+        if (!store.checkpoint(shops).get(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("failed to write " + store.getName() + " snapshot");
+        }
+        store.close();
+    }
+
+    private static void delete(File folder) throws IOException {
+        try (Stream<Path> files = Files.walk(folder.toPath())) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
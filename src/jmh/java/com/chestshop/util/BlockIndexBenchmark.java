@@ -0,0 +1,103 @@
+package com.chestshop.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign/chest lookups: {@link BlockIndex} (a {@link LongIntMap} of packed
+ * positions per world) against the String-keyed HashMap it replaced, which
+ * built a "world:x:y:z" key for every lookup. Each invocation does one
+ * lookup per probe, half of them hits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockIndexBenchmark {
+
+    private static final String[] WORLDS = {"world", "world_nether", "world_the_end"};
+    private static final int PROBES = 1024;
+
+    @Param({"1000", "100000"})
+    public int shops;
+
+    private BlockIndex index;
+    private Map<String, Integer> stringIndex;
+    private String[] probeWorld;
+    private int[] probeX;
+    private int[] probeY;
+    private int[] probeZ;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        index = new BlockIndex();
+        stringIndex = new HashMap<>();
+        String[] world = new String[shops];
+        int[] x = new int[shops];
+        int[] y = new int[shops];
+        int[] z = new int[shops];
+        for (int id = 0; id < shops; id++) {
+            world[id] = WORLDS[random.nextInt(WORLDS.length)];
+            x[id] = random.nextInt(-30_000, 30_000);
+            y[id] = random.nextInt(-64, 320);
+            z[id] = random.nextInt(-30_000, 30_000);
+            index.put(world[id], x[id], y[id], z[id], id);
+            stringIndex.put(key(world[id], x[id], y[id], z[id]), id);
+        }
+
+        probeWorld = new String[PROBES];
+        probeX = new int[PROBES];
+        probeY = new int[PROBES];
+        probeZ = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            int id = random.nextInt(shops);
+            boolean hit = (i & 1) == 0;
+            probeWorld[i] = world[id];
+            probeX[i] = x[id];
+            probeY[i] = hit ? y[id] : y[id] + 1000; // Above the build limit, so never a shop
+            probeZ[i] = z[id];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void blockIndex(Blackhole blackhole) {
+        for (int i = 0; i < PROBES; i++) {
+            blackhole.consume(index.get(probeWorld[i], probeX[i], probeY[i], probeZ[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void stringKeyedHashMap(Blackhole blackhole) {
+        for (int i = 0; i < PROBES; i++) {
+            blackhole.consume(stringIndex.get(key(probeWorld[i], probeX[i], probeY[i], probeZ[i])));
+        }
+    }
+
+    /**
+     * The key format the String-keyed index used
+     */
+    private static String key(String world, int x, int y, int z) {
+        return world + ":" + x + ":" + y + ":" + z;
+    }
+}
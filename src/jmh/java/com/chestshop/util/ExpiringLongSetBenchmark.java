@@ -0,0 +1,86 @@
+package com.chestshop.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One alert cooldown check with a steady number of live cooldowns:
+ * {@link ExpiringLongSet} against the HashMap of "type:location" strings
+ * it replaced, which scanned every entry once it held more than 100.
+ * Each check uses a fresh key and advances the clock so that the number of
+ * live cooldowns stays at {@code live}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpiringLongSetBenchmark {
+
+    private static final long COOLDOWN = 5 * 60 * 1000L;
+
+    @Param({"1000", "8000"})
+    public int live;
+
+    private ExpiringLongSet set;
+    private LegacyCooldowns legacy;
+    private long step;
+    private long setClock;
+    private long setKey;
+    private long legacyClock;
+    private long legacyKey;
+
+    @Setup
+    public void setUp() {
+        step = COOLDOWN / live;
+        set = new ExpiringLongSet(COOLDOWN);
+        legacy = new LegacyCooldowns();
+        for (int i = 0; i < live; i++) {
+            set.add(setKey++, setClock += step);
+            legacy.trySend("stock:world:" + legacyKey++ + ":64:0", legacyClock += step);
+        }
+    }
+
+    @Benchmark
+    public boolean expiringLongSet() {
+        return set.add(setKey++, setClock += step);
+    }
+
+    @Benchmark
+    public boolean legacyStringMap() {
+        return legacy.trySend("stock:world:" + legacyKey++ + ":64:0", legacyClock += step);
+    }
+
+    /**
+     * The cooldown logic AlertManager used before ExpiringLongSet
+     */
+    private static final class LegacyCooldowns {
+        private final Map<String, Long> cooldowns = new HashMap<>();
+
+        boolean trySend(String key, long now) {
+            if (cooldowns.size() > 100) {
+                cooldowns.entrySet().removeIf(entry -> (now - entry.getValue()) >= COOLDOWN);
+            }
+            Long last = cooldowns.get(key);
+            if (last != null && now - last < COOLDOWN) {
+                return false;
+            }
+            cooldowns.put(key, now);
+            return true;
+        }
+    }
+}
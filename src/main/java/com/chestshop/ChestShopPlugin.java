@@ -1,9 +1,17 @@
 package com.chestshop;
 
 import com.chestshop.commands.ShopCommand;
+import com.chestshop.economy.EconomyGateway;
+import com.chestshop.economy.SimulatedEconomyGateway;
+import com.chestshop.economy.TransactionEngine;
+import com.chestshop.economy.VaultEconomyGateway;
+import com.chestshop.ledger.TradeLedger;
+import com.chestshop.listeners.ChunkListener;
 import com.chestshop.listeners.PlayerJoinListener;
 import com.chestshop.listeners.ShopListener;
+import com.chestshop.managers.AlertEvaluator;
 import com.chestshop.managers.AlertManager;
+import com.chestshop.managers.DeliveryManager;
 import com.chestshop.managers.HologramManager;
 import com.chestshop.managers.ShopManager;
 import net.kyori.adventure.platform.bukkit.BukkitAudiences;
@@ -13,6 +21,7 @@ import org.bukkit.Material;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -21,8 +30,12 @@ public class ChestShopPlugin extends JavaPlugin {
 
     private static ChestShopPlugin instance;
     private Economy economy;
+    private TransactionEngine transactionEngine;
+    private TradeLedger tradeLedger;
     private ShopManager shopManager;
     private AlertManager alertManager;
+    private AlertEvaluator alertEvaluator;
+    private DeliveryManager deliveryManager;
     private HologramManager hologramManager;
     private BukkitAudiences adventure;
 
@@ -31,12 +44,16 @@ public class ChestShopPlugin extends JavaPlugin {
     private double maxPrice;
     private double shopCreationCost;
     private double transactionTaxPercent;
+    private int bulkTradeBundles;
     private Set<Material> blockedItems;
 
     // Alert settings
     private boolean alertsEnabled;
     private int lowStockThreshold;
     private double lowMoneyThreshold;
+    private int maxPendingAlerts;
+    private boolean alertDigestEnabled;
+    private int alertDigestSeconds;
     private boolean hologramsEnabled;
 
     @Override
@@ -58,14 +75,34 @@ public class ChestShopPlugin extends JavaPlugin {
             return;
         }
 
+        // Trade payments, off the main thread unless disabled
+        long simulatedLatency = getConfig().getLong("trades.simulated-economy-latency-ms", -1);
+        EconomyGateway gateway = simulatedLatency >= 0
+                ? new SimulatedEconomyGateway(simulatedLatency, 1000)
+                : new VaultEconomyGateway(economy);
+        transactionEngine = new TransactionEngine(this, gateway, getConfig().getBoolean("trades.async-economy", true));
+        if (simulatedLatency >= 0) {
+            getLogger().warning("Trades use a simulated in-memory economy - balances are not real and not saved!");
+        }
+
+        // Trade records, written off the main thread
+        tradeLedger = new TradeLedger(new File(getDataFolder(), "ledger"), getLogger(),
+                task -> getServer().getScheduler().runTask(this, task), getConfig().getInt("ledger.buffer-size", 8192),
+                getConfig().getLong("ledger.flush-interval-ms", 1000), getConfig().getInt("ledger.retain-days", 90));
+        tradeLedger.start();
+
         // Initialize managers
         shopManager = new ShopManager(this);
         alertManager = new AlertManager(this);
+        alertEvaluator = new AlertEvaluator(this);
+        alertEvaluator.start();
+        deliveryManager = new DeliveryManager(this);
         hologramManager = new HologramManager(this);
 
         // Register listeners
         getServer().getPluginManager().registerEvents(new ShopListener(this), this);
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(this), this);
+        getServer().getPluginManager().registerEvents(new ChunkListener(this), this);
 
         // Create holograms for existing shops (delayed to ensure world is loaded)
         if (hologramsEnabled && hologramManager.isEnabled()) {
@@ -97,7 +134,7 @@ public class ChestShopPlugin extends JavaPlugin {
         getLogger().info("  Version: " + getDescription().getVersion());
         List<String> authors = getDescription().getAuthors();
         getLogger().info("  Author: " + (authors.isEmpty() ? "Unknown" : authors.get(0)));
-        getLogger().info("  Economy: " + economy.getName());
+        getLogger().info("  Economy: " + gateway.getName() + (transactionEngine.isAsync() ? " (async)" : ""));
         getLogger().info("  Protection: " + (protectionPlugin != null ? protectionPlugin : "None"));
         getLogger().info("  Shops Loaded: " + shopCount);
         getLogger().info("");
@@ -135,6 +172,22 @@ public class ChestShopPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        // Finish trades still waiting on the economy (returns or delivers their items)
+        if (transactionEngine != null) {
+            transactionEngine.shutdown();
+        }
+        // Check alerts for the trades those completed
+        if (alertEvaluator != null) {
+            alertEvaluator.shutdown();
+        }
+        // Save items held for buyers who logged off mid-trade
+        if (deliveryManager != null) {
+            deliveryManager.close();
+        }
+        // Write out the trades those completed
+        if (tradeLedger != null) {
+            tradeLedger.close();
+        }
         // Remove holograms
         if (hologramManager != null) {
             hologramManager.removeAllHolograms();
@@ -174,6 +227,14 @@ public class ChestShopPlugin extends JavaPlugin {
         return economy;
     }
 
+    public TransactionEngine getTransactionEngine() {
+        return transactionEngine;
+    }
+
+    public TradeLedger getTradeLedger() {
+        return tradeLedger;
+    }
+
     public ShopManager getShopManager() {
         return shopManager;
     }
@@ -195,6 +256,9 @@ public class ChestShopPlugin extends JavaPlugin {
         if (transactionTaxPercent < 0) transactionTaxPercent = 0;
         if (transactionTaxPercent > 100) transactionTaxPercent = 100;
 
+        // Sneak-click trades at least one bundle
+        bulkTradeBundles = Math.max(1, getConfig().getInt("trades.bulk-max-bundles", 64));
+
         // Load blocked items
         blockedItems = new HashSet<>();
         List<String> blockedList = getConfig().getStringList("blocked-items");
@@ -211,6 +275,9 @@ public class ChestShopPlugin extends JavaPlugin {
         alertsEnabled = getConfig().getBoolean("alerts.enabled", true);
         lowStockThreshold = getConfig().getInt("alerts.low-stock-threshold", 10);
         lowMoneyThreshold = getConfig().getDouble("alerts.low-money-threshold", 100);
+        maxPendingAlerts = Math.max(1, getConfig().getInt("alerts.max-pending-per-owner", 50));
+        alertDigestEnabled = getConfig().getBoolean("alerts.digest.enabled", false);
+        alertDigestSeconds = Math.max(1, getConfig().getInt("alerts.digest.window-seconds", 60));
 
         // Load hologram settings
         hologramsEnabled = getConfig().getBoolean("holograms.enabled", true);
@@ -239,6 +306,10 @@ public class ChestShopPlugin extends JavaPlugin {
         return transactionTaxPercent;
     }
 
+    public int getBulkTradeBundles() {
+        return bulkTradeBundles;
+    }
+
     public boolean isItemBlocked(Material material) {
         return blockedItems.contains(material);
     }
@@ -262,6 +333,14 @@ public class ChestShopPlugin extends JavaPlugin {
         return alertManager;
     }
 
+    public AlertEvaluator getAlertEvaluator() {
+        return alertEvaluator;
+    }
+
+    public DeliveryManager getDeliveryManager() {
+        return deliveryManager;
+    }
+
     public HologramManager getHologramManager() {
         return hologramManager;
     }
@@ -278,6 +357,18 @@ public class ChestShopPlugin extends JavaPlugin {
         return lowMoneyThreshold;
     }
 
+    public int getMaxPendingAlerts() {
+        return maxPendingAlerts;
+    }
+
+    public boolean isAlertDigestEnabled() {
+        return alertDigestEnabled;
+    }
+
+    public int getAlertDigestSeconds() {
+        return alertDigestSeconds;
+    }
+
     public boolean isHologramsEnabled() {
         return hologramsEnabled;
     }
@@ -1,8 +1,13 @@
 package com.chestshop.commands;
 
 import com.chestshop.ChestShopPlugin;
+import com.chestshop.ledger.HistoryPage;
+import com.chestshop.ledger.HistoryQuery;
+import com.chestshop.ledger.TradeRecord;
 import com.chestshop.managers.ShopManager;
+import com.chestshop.managers.ShopPage;
 import com.chestshop.models.Shop;
+import com.chestshop.models.TradeSide;
 import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
@@ -11,8 +16,10 @@ import net.kyori.adventure.text.event.HoverEvent;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.format.TextColor;
 import net.kyori.adventure.text.format.TextDecoration;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.block.Chest;
@@ -27,6 +34,10 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -34,6 +45,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ShopCommand implements CommandExecutor, TabCompleter {
 
@@ -59,6 +71,7 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
     private static final String BOX_TOP = "  +-----------------------------------------+";
     private static final String BOX_BOTTOM = "  +-----------------------------------------+";
     private static final String ARROW = "\u00BB";  // >>
+    private static final String ARROW_LEFT = "\u00AB"; // <<
     private static final String BULLET = "\u2022"; // bullet
     private static final String CHECK = "\u2714";  // checkmark
     private static final String CROSS = "\u2718";  // X
@@ -66,6 +79,23 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
     private static final String COIN = "\u25CF";   // filled circle (coin)
     private static final String STAR = "\u2605";   // star
 
+    // /shop near
+    private static final int NEAR_DEFAULT_RADIUS = 128;
+    private static final int NEAR_MAX_RADIUS = 1024;
+    private static final int NEAR_LIMIT = 10;
+
+    // /shop history
+    private static final int HISTORY_PAGE_SIZE = 10;
+    private static final DateTimeFormatter HISTORY_TIME = DateTimeFormatter.ofPattern("MM-dd HH:mm");
+    private static final DateTimeFormatter HISTORY_FULL_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // /shop find pages, rendered once per item version
+    private static final int FIND_PAGE_SIZE = 10;
+    private static final int FIND_CACHE_LIMIT = 256;
+    private record FindKey(Material item, TradeSide side, String world, int page) {}
+    private record CachedFind(long version, List<Component> lines) {}
+    private final Map<FindKey, CachedFind> findCache = new HashMap<>();
+
     public ShopCommand(ChestShopPlugin plugin) {
         this.plugin = plugin;
         this.shopManager = plugin.getShopManager();
@@ -94,6 +124,19 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
             case "find":
                 handleFind(sender, args);
                 break;
+            case "near":
+                if (!(sender instanceof Player player)) {
+                    sendError(sender, "This command can only be used by players.");
+                    return true;
+                }
+                handleNear(player, args);
+                break;
+            case "region":
+                handleRegion(sender, args);
+                break;
+            case "history":
+                handleHistory(sender, args);
+                break;
             case "info":
                 if (!(sender instanceof Player player)) {
                     sendError(sender, "This command can only be used by players.");
@@ -126,13 +169,16 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
         audience.sendMessage(Component.empty());
 
         sendCommandHelp(sender, "/shop create", "<item> <amt> <buy> <sell>", "Create a new shop", "Look at a chest and run this command\nUse 0 for buy/sell to disable");
-        sendCommandHelp(sender, "/shop find", "<item>", "Search for shops", "Find all shops trading an item");
+        sendCommandHelp(sender, "/shop find", "<item> [buy|sell] [page] [world]", "Search for shops", "Find shops trading an item, best price first\nbuy: cheapest to buy from, sell: best price to sell to");
+        sendCommandHelp(sender, "/shop near", "[item] [radius]", "Nearest shops", "Find the closest shops around you\nOptionally only shops trading an item");
         sendCommandHelp(sender, "/shop info", "", "View shop details", "Look at a shop sign");
+        sendCommandHelp(sender, "/shop history", "[player|here] [page]", "Trade history", "Trades at your shops, newest first\nhere: the shop you're looking at\nAdmins can look up any player's trades");
         sendCommandHelp(sender, "/shop remove", "", "Delete your shop", "Look at your shop sign");
 
         if (sender.hasPermission("chestshop.admin")) {
             audience.sendMessage(Component.empty());
             audience.sendMessage(Component.text("  Admin Commands", MUTED).decorate(TextDecoration.ITALIC));
+            sendCommandHelp(sender, "/shop region", "<x1> <z1> <x2> <z2> [world]", "Shops in an area", "List every shop between two corners");
             sendCommandHelp(sender, "/shop reload", "", "Reload from disk", "Reloads all shop data");
         }
 
@@ -341,7 +387,10 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
                     buyPrice,
                     sellPrice
             );
-            shopManager.addShop(shop);
+            shop = shopManager.addShop(shop);
+            if (targetBlock.getState() instanceof Chest chest) {
+                shop = shopManager.countStock(shop, chest.getInventory());
+            }
 
             // Create hologram if enabled
             if (plugin.isHologramsEnabled() && plugin.getHologramManager() != null) {
@@ -376,7 +425,7 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length < 2) {
-            sendError(sender, "Usage: /shop find <item>");
+            sendError(sender, "Usage: /shop find <item> [buy|sell] [page] [world]");
             return;
         }
 
@@ -388,40 +437,100 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        List<Shop> shops = shopManager.getShopsByItem(item);
+        // Optional arguments, in any order
+        TradeSide side = null;
+        int page = 1;
+        String world = null;
+        for (int i = 2; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equalsIgnoreCase("buy")) {
+                side = TradeSide.BUY;
+            } else if (arg.equalsIgnoreCase("sell")) {
+                side = TradeSide.SELL;
+            } else if (!arg.isEmpty() && arg.chars().allMatch(Character::isDigit)) {
+                page = arg.length() > 6 ? Integer.MAX_VALUE : Integer.parseInt(arg);
+            } else {
+                World namedWorld = Bukkit.getWorld(arg);
+                world = namedWorld != null ? namedWorld.getName() : arg;
+            }
+        }
+        if (side == null) {
+            // Show shops to buy from, unless the item is only bought by shops
+            side = shopManager.countShops(item, TradeSide.BUY) == 0 && shopManager.countShops(item, TradeSide.SELL) > 0
+                    ? TradeSide.SELL : TradeSide.BUY;
+        }
+
+        // Rendered pages are reused until a shop for this item is added or removed
+        FindKey key = new FindKey(item, side, world, page);
+        long version = shopManager.getItemVersion(item);
+        CachedFind cached = findCache.get(key);
+        if (cached == null || cached.version() != version) {
+            if (findCache.size() >= FIND_CACHE_LIMIT) {
+                findCache.clear();
+            }
+            cached = new CachedFind(version, renderFindPage(item, side, world, page));
+            findCache.put(key, cached);
+        }
+
         Audience audience = audience(sender);
-        if (shops.isEmpty()) {
-            audience.sendMessage(Component.empty());
-            audience.sendMessage(Component.text("  " + CROSS + " ", ACCENT_ALT)
-                    .append(Component.text("No shops found for ", MUTED))
-                    .append(Component.text(formatItemName(item), HIGHLIGHT)));
-            return;
+        for (Component line : cached.lines()) {
+            audience.sendMessage(line);
         }
+    }
 
-        audience.sendMessage(Component.empty());
-        audience.sendMessage(createHeader("Shops for " + formatItemName(item)));
-        audience.sendMessage(Component.text("  Found ", MUTED)
-                .append(Component.text(shops.size(), HIGHLIGHT).decorate(TextDecoration.BOLD))
-                .append(Component.text(" shop" + (shops.size() != 1 ? "s" : ""), MUTED)));
-        audience.sendMessage(Component.empty());
+    private List<Component> renderFindPage(Material item, TradeSide side, String world, int page) {
+        ShopPage result = shopManager.findShops(item, side, world, page, FIND_PAGE_SIZE);
+        String itemName = formatItemName(item);
+        String where = world != null ? " in " + world : "";
+        List<Component> lines = new ArrayList<>();
+        lines.add(Component.empty());
+
+        if (result.total() == 0) {
+            lines.add(Component.text("  " + CROSS + " ", ACCENT_ALT)
+                    .append(Component.text(side == TradeSide.BUY ? "No shops selling " : "No shops buying ", MUTED))
+                    .append(Component.text(itemName, HIGHLIGHT))
+                    .append(Component.text(where, MUTED)));
+            return lines;
+        }
 
-        int count = 0;
-        for (Shop shop : shops) {
-            if (count++ >= 10) {
-                audience.sendMessage(Component.text("  ... and " + (shops.size() - 10) + " more", MUTED).decorate(TextDecoration.ITALIC));
-                break;
+        lines.add(createHeader((side == TradeSide.BUY ? "Buy " : "Sell ") + itemName));
+        lines.add(Component.text("  Found ", MUTED)
+                .append(Component.text(result.total(), HIGHLIGHT).decorate(TextDecoration.BOLD))
+                .append(Component.text(" shop" + (result.total() != 1 ? "s" : "") + where + ", "
+                        + (side == TradeSide.BUY ? "cheapest" : "best price") + " first", MUTED)));
+        lines.add(Component.empty());
+
+        for (Shop shop : result.shops()) {
+            lines.add(createShopListItem(shop));
+        }
+
+        if (result.pageCount() > 1) {
+            String command = "/shop find " + item.name().toLowerCase() + " " + side.name().toLowerCase() + " ";
+            String suffix = world != null ? " " + world : "";
+            TextComponent.Builder navigation = Component.text().append(Component.text("  "));
+            if (result.page() > 1) {
+                navigation.append(Component.text(ARROW_LEFT + " Prev ", PRIMARY)
+                        .clickEvent(ClickEvent.runCommand(command + (result.page() - 1) + suffix))
+                        .hoverEvent(HoverEvent.showText(Component.text("Page " + (result.page() - 1), MUTED))));
             }
-            sendShopListItem(sender, shop);
+            navigation.append(Component.text("Page " + result.page() + "/" + result.pageCount(), MUTED));
+            if (result.page() < result.pageCount()) {
+                navigation.append(Component.text(" Next " + ARROW, PRIMARY)
+                        .clickEvent(ClickEvent.runCommand(command + (result.page() + 1) + suffix))
+                        .hoverEvent(HoverEvent.showText(Component.text("Page " + (result.page() + 1), MUTED))));
+            }
+            lines.add(Component.empty());
+            lines.add(navigation.build());
         }
 
-        audience.sendMessage(Component.empty());
-        audience.sendMessage(createFooter());
+        lines.add(Component.empty());
+        lines.add(createFooter());
+        return lines;
     }
 
-    private void sendShopListItem(CommandSender sender, Shop shop) {
-        Location loc = shop.getSignLocation();
-        String coords = loc.getBlockX() + ", " + loc.getBlockY() + ", " + loc.getBlockZ();
-        String worldName = loc.getWorld() != null ? loc.getWorld().getName() : "Unknown";
+    private Component createShopListItem(Shop shop) {
+        String coords = shop.getSignX() + ", " + shop.getSignY() + ", " + shop.getSignZ();
+        String worldName = shop.getSignWorldName();
 
         TextComponent.Builder builder = Component.text();
         builder.append(Component.text("  " + BULLET + " ", SECONDARY));
@@ -439,6 +548,10 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
             builder.append(Component.text("SELL ", SELL_COLOR).decorate(TextDecoration.BOLD));
             builder.append(Component.text("$" + formatPrice(shop.getSellPrice()), SELL_COLOR));
         }
+        if (shop.getStock() >= 0) {
+            builder.append(Component.text(" | ", MUTED));
+            builder.append(createStockLabel(shop));
+        }
 
         Component locationComponent = Component.text(" [" + coords + "]", MUTED)
                 .hoverEvent(HoverEvent.showText(
@@ -451,7 +564,256 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
                 ))
                 .clickEvent(ClickEvent.copyToClipboard(coords));
 
-        audience(sender).sendMessage(builder.append(locationComponent).build());
+        return builder.append(locationComponent).build();
+    }
+
+    /**
+     * Cached stock for shops that sell, free space for shops that only buy
+     */
+    private Component createStockLabel(Shop shop) {
+        if (shop.canBuy()) {
+            return shop.getStock() < shop.getAmount()
+                    ? Component.text("out of stock", ACCENT_ALT)
+                    : Component.text(shop.getStock() + " in stock", HIGHLIGHT);
+        }
+        return shop.getSpace() < shop.getAmount()
+                ? Component.text("full", ACCENT_ALT)
+                : Component.text("room for " + shop.getSpace(), HIGHLIGHT);
+    }
+
+    private void handleNear(Player player, String[] args) {
+        if (!player.hasPermission("chestshop.use")) {
+            sendError(player, "You don't have permission to use this command.");
+            return;
+        }
+
+        // Optional item and radius, in any order
+        Material item = null;
+        int radius = NEAR_DEFAULT_RADIUS;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.isEmpty() && arg.chars().allMatch(Character::isDigit)) {
+                radius = arg.length() > 6 ? NEAR_MAX_RADIUS : Math.min(Integer.parseInt(arg), NEAR_MAX_RADIUS);
+                continue;
+            }
+            try {
+                item = Material.valueOf(arg.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                sendError(player, "Invalid item: " + arg);
+                return;
+            }
+        }
+
+        Location location = player.getLocation();
+        List<Shop> shops = shopManager.findNearest(location, item, radius, NEAR_LIMIT);
+        Audience audience = audience(player);
+        audience.sendMessage(Component.empty());
+        if (shops.isEmpty()) {
+            audience.sendMessage(Component.text("  " + CROSS + " ", ACCENT_ALT)
+                    .append(Component.text("No shops" + (item != null ? " for " : ""), MUTED))
+                    .append(Component.text(item != null ? formatItemName(item) : "", HIGHLIGHT))
+                    .append(Component.text(" within " + radius + " blocks", MUTED)));
+            return;
+        }
+
+        audience.sendMessage(createHeader(item != null ? "Nearest " + formatItemName(item) + " Shops" : "Nearest Shops"));
+        audience.sendMessage(Component.empty());
+        for (Shop shop : shops) {
+            double dx = shop.getSignX() - location.getBlockX();
+            double dy = shop.getSignY() - location.getBlockY();
+            double dz = shop.getSignZ() - location.getBlockZ();
+            long distance = Math.round(Math.sqrt(dx * dx + dy * dy + dz * dz));
+            audience.sendMessage(createShopListItem(shop).append(Component.text(" " + distance + "m", HIGHLIGHT)));
+        }
+        audience.sendMessage(Component.empty());
+        audience.sendMessage(createFooter());
+    }
+
+    private void handleRegion(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("chestshop.admin")) {
+            sendError(sender, "You don't have permission to use this command.");
+            return;
+        }
+        if (args.length < 5) {
+            sendError(sender, "Usage: /shop region <x1> <z1> <x2> <z2> [world]");
+            return;
+        }
+
+        int x1, z1, x2, z2;
+        try {
+            x1 = Integer.parseInt(args[1]);
+            z1 = Integer.parseInt(args[2]);
+            x2 = Integer.parseInt(args[3]);
+            z2 = Integer.parseInt(args[4]);
+        } catch (NumberFormatException e) {
+            sendError(sender, "Coordinates must be whole numbers.");
+            return;
+        }
+
+        String world;
+        if (args.length > 5) {
+            World namedWorld = Bukkit.getWorld(args[5]);
+            world = namedWorld != null ? namedWorld.getName() : args[5];
+        } else if (sender instanceof Player player) {
+            world = player.getWorld().getName();
+        } else {
+            sendError(sender, "Specify a world when running this from the console.");
+            return;
+        }
+
+        List<Shop> shops = shopManager.findInArea(world, x1, z1, x2, z2);
+        Audience audience = audience(sender);
+        audience.sendMessage(Component.empty());
+        audience.sendMessage(createHeader("Shops in Region"));
+        audience.sendMessage(Component.text("  Found ", MUTED)
+                .append(Component.text(shops.size(), HIGHLIGHT).decorate(TextDecoration.BOLD))
+                .append(Component.text(" shop" + (shops.size() != 1 ? "s" : "") + " in " + world
+                        + " (" + x1 + ", " + z1 + ") to (" + x2 + ", " + z2 + ")", MUTED)));
+        audience.sendMessage(Component.empty());
+
+        int count = 0;
+        for (Shop shop : shops) {
+            if (count++ >= 10) {
+                audience.sendMessage(Component.text("  ... and " + (shops.size() - 10) + " more", MUTED).decorate(TextDecoration.ITALIC));
+                break;
+            }
+            audience.sendMessage(createShopListItem(shop));
+        }
+
+        audience.sendMessage(Component.empty());
+        audience.sendMessage(createFooter());
+    }
+
+    private void handleHistory(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("chestshop.use")) {
+            sendError(sender, "You don't have permission to use this command.");
+            return;
+        }
+
+        // Optional target (a player name or "here") and page, in any order
+        String target = null;
+        int page = 1;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.isEmpty() && arg.chars().allMatch(Character::isDigit)) {
+                page = arg.length() > 6 ? Integer.MAX_VALUE : Integer.parseInt(arg);
+            } else {
+                target = arg;
+            }
+        }
+
+        HistoryQuery query;
+        String title;
+        if (target == null) {
+            if (!(sender instanceof Player player)) {
+                sendError(sender, "Usage: /shop history <player> [page]");
+                return;
+            }
+            query = HistoryQuery.byOwner(player.getUniqueId());
+            title = "Trades at Your Shops";
+        } else if (target.equalsIgnoreCase("here")) {
+            if (!(sender instanceof Player player)) {
+                sendError(sender, "This command can only be used by players.");
+                return;
+            }
+            Block targetBlock = player.getTargetBlockExact(5);
+            Shop shop = targetBlock != null ? shopManager.getShop(targetBlock) : null;
+            if (shop == null) {
+                sendError(player, "You must be looking at a shop sign.");
+                return;
+            }
+            if (!shop.getOwnerUUID().equals(player.getUniqueId()) && !player.hasPermission("chestshop.admin")) {
+                sendError(player, "You can only view the history of your own shops.");
+                return;
+            }
+            query = HistoryQuery.byShop(shop);
+            title = shop.getOwnerName() + "'s " + formatItemName(shop.getItem()) + " Shop";
+        } else {
+            boolean self = sender instanceof Player player && player.getName().equalsIgnoreCase(target);
+            if (!self && !sender.hasPermission("chestshop.admin")) {
+                sendError(sender, "You can only view your own trade history.");
+                return;
+            }
+            // Offline players are resolved by the ledger from the names it has recorded
+            Player online = Bukkit.getPlayerExact(target);
+            query = HistoryQuery.byPlayer(online != null ? online.getUniqueId() : null, target);
+            title = (online != null ? online.getName() : target) + "'s Trades";
+        }
+
+        String command = "/shop history " + (target != null ? target + " " : "");
+        boolean started = plugin.getTradeLedger().history(query, page, HISTORY_PAGE_SIZE,
+                result -> sendHistoryPage(sender, title, command, result));
+        if (!started) {
+            sendError(sender, "Trade history is not available right now.");
+        }
+    }
+
+    private void sendHistoryPage(CommandSender sender, String title, String command, HistoryPage result) {
+        Audience audience = audience(sender);
+        audience.sendMessage(Component.empty());
+        if (result.total() == 0) {
+            audience.sendMessage(Component.text("  " + CROSS + " ", ACCENT_ALT)
+                    .append(Component.text("No trades recorded", MUTED)));
+            return;
+        }
+
+        audience.sendMessage(createHeader(title));
+        audience.sendMessage(Component.text("  ", MUTED)
+                .append(Component.text(result.total(), HIGHLIGHT).decorate(TextDecoration.BOLD))
+                .append(Component.text(" trade" + (result.total() != 1 ? "s" : "") + ", newest first", MUTED)));
+        audience.sendMessage(Component.empty());
+
+        for (TradeRecord trade : result.trades()) {
+            audience.sendMessage(createTradeListItem(trade));
+        }
+
+        if (result.pageCount() > 1) {
+            TextComponent.Builder navigation = Component.text().append(Component.text("  "));
+            if (result.page() > 1) {
+                navigation.append(Component.text(ARROW_LEFT + " Prev ", PRIMARY)
+                        .clickEvent(ClickEvent.runCommand(command + (result.page() - 1)))
+                        .hoverEvent(HoverEvent.showText(Component.text("Page " + (result.page() - 1), MUTED))));
+            }
+            navigation.append(Component.text("Page " + result.page() + "/" + result.pageCount(), MUTED));
+            if (result.page() < result.pageCount()) {
+                navigation.append(Component.text(" Next " + ARROW, PRIMARY)
+                        .clickEvent(ClickEvent.runCommand(command + (result.page() + 1)))
+                        .hoverEvent(HoverEvent.showText(Component.text("Page " + (result.page() + 1), MUTED))));
+            }
+            audience.sendMessage(Component.empty());
+            audience.sendMessage(navigation.build());
+        }
+
+        audience.sendMessage(Component.empty());
+        audience.sendMessage(createFooter());
+    }
+
+    private Component createTradeListItem(TradeRecord trade) {
+        boolean bought = trade.side() == TradeSide.BUY;
+        String playerName = trade.playerName() != null ? trade.playerName() : trade.player().toString().substring(0, 8);
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(trade.time()), ZoneId.systemDefault());
+        String coords = trade.x() + ", " + trade.y() + ", " + trade.z();
+
+        Component details = Component.text("Time: ", MUTED).append(Component.text(time.format(HISTORY_FULL_TIME), HIGHLIGHT))
+                .append(Component.newline())
+                .append(Component.text("Shop owner: ", MUTED).append(Component.text(trade.ownerName(), HIGHLIGHT)))
+                .append(Component.newline())
+                .append(Component.text("Location: ", MUTED).append(Component.text(trade.world() + " " + coords, HIGHLIGHT)))
+                .append(Component.newline())
+                .append(Component.text("Paid: ", MUTED).append(Component.text("$" + formatPrice(trade.price()), HIGHLIGHT)));
+        if (trade.tax() > 0) {
+            details = details.append(Component.newline())
+                    .append(Component.text("Tax: ", MUTED).append(Component.text("$" + formatPrice(trade.tax()), HIGHLIGHT)));
+        }
+
+        return Component.text("  " + BULLET + " ", SECONDARY)
+                .append(Component.text(time.format(HISTORY_TIME) + " ", MUTED))
+                .append(Component.text(playerName, PRIMARY).decorate(TextDecoration.BOLD))
+                .append(Component.text(bought ? " bought " : " sold ", bought ? BUY_COLOR : SELL_COLOR))
+                .append(Component.text(trade.amount() + "x ", HIGHLIGHT))
+                .append(Component.text(formatItemName(trade.item()), NamedTextColor.WHITE))
+                .append(Component.text(" $" + formatPrice(trade.price()), bought ? BUY_COLOR : SELL_COLOR))
+                .hoverEvent(HoverEvent.showText(details));
     }
 
     private void handleInfo(Player player) {
@@ -466,7 +828,7 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        Shop shop = shopManager.getShop(targetBlock.getLocation());
+        Shop shop = shopManager.getShop(targetBlock);
         if (shop == null) {
             sendError(player, "You must be looking at a shop sign.");
             return;
@@ -502,10 +864,16 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
                     .append(Component.text(" (left-click to sell)", MUTED).decorate(TextDecoration.ITALIC)));
         }
 
+        // Stock (cached - counted on trades and when the chest is closed)
+        Component stock = shop.getStock() < 0
+                ? Component.text("not counted yet", MUTED).decorate(TextDecoration.ITALIC)
+                : Component.text(shop.getStock() + " in stock", shop.getStock() < shop.getAmount() ? ACCENT_ALT : HIGHLIGHT)
+                        .append(Component.text(", room for " + shop.getSpace(), MUTED));
+        audience.sendMessage(Component.text("  Stock       ", MUTED).append(stock));
+
         // Location (only show to staff)
         if (player.hasPermission("chestshop.admin")) {
-            Location loc = shop.getChestLocation();
-            String coords = loc.getBlockX() + ", " + loc.getBlockY() + ", " + loc.getBlockZ();
+            String coords = shop.getChestX() + ", " + shop.getChestY() + ", " + shop.getChestZ();
             audience.sendMessage(Component.text("  Location    ", MUTED)
                     .append(Component.text("(" + coords + ")", MUTED)));
         }
@@ -537,7 +905,7 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        Shop shop = shopManager.getShop(targetBlock.getLocation());
+        Shop shop = shopManager.getShop(targetBlock);
         if (shop == null) {
             sendError(player, "You must be looking at a shop sign.");
             return;
@@ -571,30 +939,37 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        // Remove existing holograms before reload
-        if (plugin.isHologramsEnabled() && plugin.getHologramManager() != null) {
-            plugin.getHologramManager().removeAllHolograms();
-        }
-
         plugin.reloadConfiguration();
-        shopManager.reloadShops();
-        int count = shopManager.getAllShops().size();
 
-        // Recreate holograms for loaded shops
-        if (plugin.isHologramsEnabled() && plugin.getHologramManager() != null) {
-            plugin.getHologramManager().createAllHolograms();
-        }
+        // Shops are read off the main thread; the result is applied on the next tick
+        long start = System.currentTimeMillis();
+        boolean started = shopManager.reloadShops(() -> {
+            int count = shopManager.getAllShops().size();
 
-        Audience audience = audience(sender);
-        audience.sendMessage(Component.empty());
-        audience.sendMessage(Component.text("  " + CHECK + " ", ACCENT)
-                .append(Component.text("ChestShop reloaded!", NamedTextColor.WHITE)));
-        audience.sendMessage(Component.text("    Config ", MUTED)
-                .append(Component.text("reloaded", ACCENT)));
-        audience.sendMessage(Component.text("    Loaded ", MUTED)
-                .append(Component.text(count, HIGHLIGHT).decorate(TextDecoration.BOLD))
-                .append(Component.text(" shop" + (count != 1 ? "s" : "") + " from disk", MUTED)));
-        audience.sendMessage(Component.empty());
+            // Recreate holograms for loaded shops
+            if (plugin.isHologramsEnabled() && plugin.getHologramManager() != null) {
+                plugin.getHologramManager().removeAllHolograms();
+                plugin.getHologramManager().createAllHolograms();
+            }
+
+            Audience audience = audience(sender);
+            audience.sendMessage(Component.empty());
+            audience.sendMessage(Component.text("  " + CHECK + " ", ACCENT)
+                    .append(Component.text("ChestShop reloaded!", NamedTextColor.WHITE)));
+            audience.sendMessage(Component.text("    Config ", MUTED)
+                    .append(Component.text("reloaded", ACCENT)));
+            audience.sendMessage(Component.text("    Loaded ", MUTED)
+                    .append(Component.text(count, HIGHLIGHT).decorate(TextDecoration.BOLD))
+                    .append(Component.text(" shop" + (count != 1 ? "s" : "") + " from disk", MUTED))
+                    .append(Component.text(" (" + (System.currentTimeMillis() - start) + "ms)", MUTED)));
+            audience.sendMessage(Component.empty());
+        });
+
+        if (!started) {
+            sendError(sender, "A reload is already in progress.");
+            return;
+        }
+        audience(sender).sendMessage(Component.text("  Reloading shops...", MUTED));
     }
 
     // ===== UI Helpers =====
@@ -649,8 +1024,9 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
         List<String> completions = new ArrayList<>();
 
         if (args.length == 1) {
-            List<String> subCommands = new ArrayList<>(Arrays.asList("help", "create", "find", "info", "remove"));
+            List<String> subCommands = new ArrayList<>(Arrays.asList("help", "create", "find", "near", "history", "info", "remove"));
             if (sender.hasPermission("chestshop.admin")) {
+                subCommands.add("region");
                 subCommands.add("reload");
             }
             String input = args[0].toLowerCase();
@@ -659,7 +1035,7 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
                     .collect(Collectors.toList());
         } else if (args.length == 2) {
             String subCommand = args[0].toLowerCase();
-            if (subCommand.equals("create") || subCommand.equals("find")) {
+            if (subCommand.equals("create") || subCommand.equals("find") || subCommand.equals("near")) {
                 String input = args[1].toUpperCase();
                 completions = Arrays.stream(Material.values())
                         .filter(Material::isItem)
@@ -667,6 +1043,28 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
                         .filter(s -> s.startsWith(input))
                         .limit(20)
                         .collect(Collectors.toList());
+            } else if (subCommand.equals("history")) {
+                String input = args[1].toLowerCase();
+                List<String> targets = new ArrayList<>(List.of("here"));
+                if (sender.hasPermission("chestshop.admin")) {
+                    Bukkit.getOnlinePlayers().forEach(p -> targets.add(p.getName()));
+                } else if (sender instanceof Player player) {
+                    targets.add(player.getName());
+                }
+                completions = targets.stream()
+                        .filter(s -> s.toLowerCase().startsWith(input))
+                        .collect(Collectors.toList());
+            }
+        } else if (args.length >= 3 && args.length <= 5 && args[0].equalsIgnoreCase("find")) {
+            String input = args[args.length - 1].toLowerCase();
+            if (args.length == 3) {
+                completions = Stream.of("buy", "sell").filter(s -> s.startsWith(input)).collect(Collectors.toList());
+            } else if (args.length == 4) {
+                completions.add("<page>");
+            } else {
+                completions = Bukkit.getWorlds().stream().map(World::getName)
+                        .filter(s -> s.toLowerCase().startsWith(input))
+                        .collect(Collectors.toList());
             }
         } else if (args.length >= 3 && args.length <= 5 && args[0].equalsIgnoreCase("create")) {
             if (args.length == 3) {
@@ -0,0 +1,34 @@
+package com.chestshop.economy;
+
+import org.bukkit.OfflinePlayer;
+
+/**
+ * The economy calls trades need. When trades run asynchronously every method
+ * is called from the single economy thread, never from the main thread.
+ */
+public interface EconomyGateway {
+
+    /**
+     * Outcome of a withdrawal or deposit
+     */
+    record Result(boolean success, String errorMessage) {
+        static final Result OK = new Result(true, null);
+
+        static Result failed(String errorMessage) {
+            return new Result(false, errorMessage != null ? errorMessage : "unknown error");
+        }
+    }
+
+    /**
+     * Name shown in log messages
+     */
+    String getName();
+
+    boolean has(OfflinePlayer player, double amount);
+
+    double getBalance(OfflinePlayer player);
+
+    Result withdraw(OfflinePlayer player, double amount);
+
+    Result deposit(OfflinePlayer player, double amount);
+}
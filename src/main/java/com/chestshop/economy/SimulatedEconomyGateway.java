@@ -0,0 +1,67 @@
+package com.chestshop.economy;
+
+import org.bukkit.OfflinePlayer;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory economy that waits a fixed time on every call, for trying out
+ * trade throughput against a slow economy without a real one
+ * (trades.simulated-economy-latency-ms). Balances are never saved.
+ */
+public class SimulatedEconomyGateway implements EconomyGateway {
+
+    private final long latencyNanos;
+    private final double startingBalance;
+    private final Map<UUID, Double> balances = new ConcurrentHashMap<>();
+
+    public SimulatedEconomyGateway(long latencyMillis, double startingBalance) {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, latencyMillis));
+        this.startingBalance = startingBalance;
+    }
+
+    @Override
+    public String getName() {
+        return "Simulated (" + TimeUnit.NANOSECONDS.toMillis(latencyNanos) + "ms per call)";
+    }
+
+    @Override
+    public boolean has(OfflinePlayer player, double amount) {
+        return getBalance(player) >= amount;
+    }
+
+    @Override
+    public double getBalance(OfflinePlayer player) {
+        delay();
+        return balances.getOrDefault(player.getUniqueId(), startingBalance);
+    }
+
+    @Override
+    public Result withdraw(OfflinePlayer player, double amount) {
+        delay();
+        boolean[] done = {false};
+        balances.compute(player.getUniqueId(), (id, balance) -> {
+            double current = balance != null ? balance : startingBalance;
+            done[0] = current >= amount;
+            return done[0] ? current - amount : current;
+        });
+        return done[0] ? Result.OK : Result.failed("Insufficient funds");
+    }
+
+    @Override
+    public Result deposit(OfflinePlayer player, double amount) {
+        delay();
+        balances.merge(player.getUniqueId(), startingBalance + amount, (balance, added) -> balance + amount);
+        return Result.OK;
+    }
+
+    private void delay() {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.chestshop.economy;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Runs the money side of a trade.
+ *
+ * The caller escrows the items on the main thread first (takes them out of
+ * the seller's inventory), then hands the payment here. With async enabled
+ * the economy calls run on one dedicated thread - economy plugins are rarely
+ * thread-safe, so they are never called concurrently - and the result is
+ * handed back to the main thread on the next tick, where the caller delivers
+ * or returns the escrowed items. Without async everything runs inline.
+ */
+public class TransactionEngine {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    /**
+     * How a payment ended
+     */
+    public enum Status {
+        PAID,
+        INSUFFICIENT_FUNDS, // Payer can't afford it - nothing was moved
+        WITHDRAW_FAILED,    // Economy refused the withdrawal - nothing was moved
+        DEPOSIT_FAILED      // Payee couldn't be paid - the payer was refunded
+    }
+
+    /**
+     * Result of {@link #pay}: how many units were paid for (0 unless PAID)
+     */
+    public record Payment(Status status, int units, String errorMessage) {
+        public boolean isPaid() {
+            return status == Status.PAID;
+        }
+    }
+
+    private final EconomyGateway economy;
+    private final Logger logger;
+    private final ExecutorService worker; // Null when running synchronously
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+    private int drainTaskId = -1;
+
+    public TransactionEngine(Plugin plugin, EconomyGateway economy, boolean async) {
+        this(economy, plugin.getLogger(), async);
+        if (async) {
+            // Results are applied at the start of the next tick
+            this.drainTaskId = Bukkit.getScheduler().runTaskTimer(plugin, this::drainCompletions, 1L, 1L).getTaskId();
+        }
+    }
+
+    /**
+     * Without the tick task - the owner calls {@link #drainCompletions()} (tests)
+     */
+    TransactionEngine(EconomyGateway economy, Logger logger, boolean async) {
+        this.economy = economy;
+        this.logger = logger;
+        if (async) {
+            this.worker = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ChestShop-Economy");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.worker = null;
+        }
+    }
+
+    public EconomyGateway getEconomy() {
+        return economy;
+    }
+
+    public boolean isAsync() {
+        return worker != null;
+    }
+
+    /**
+     * Pay for up to maxUnits units of unitPrice from payer to payee, who
+     * receives unitPayeeAmount per unit (price minus tax). Bulk trades
+     * (maxUnits above 1) are cut down to what the payer can afford and still
+     * move the money in one withdrawal and one deposit. If the deposit fails
+     * the payer is refunded. The result is passed to {@code then} on the main thread.
+     */
+    public void pay(OfflinePlayer payer, OfflinePlayer payee, double unitPrice, double unitPayeeAmount, int maxUnits,
+                    Consumer<Payment> then) {
+        if (runsInline()) {
+            then.accept(transfer(payer, payee, unitPrice, unitPayeeAmount, maxUnits));
+            return;
+        }
+        worker.execute(() -> {
+            Payment payment = transfer(payer, payee, unitPrice, unitPayeeAmount, maxUnits);
+            completions.add(() -> then.accept(payment));
+        });
+    }
+
+    /**
+     * Run other economy reads (e.g. balance checks for alerts) on the economy
+     * thread, in order with payments. then receives the result on the main thread,
+     * or null if the task threw - it is always called exactly once.
+     */
+    public <T> void submit(Supplier<T> task, Consumer<T> then) {
+        if (runsInline()) {
+            then.accept(get(task));
+            return;
+        }
+        worker.execute(() -> {
+            T result = get(task);
+            completions.add(() -> then.accept(result));
+        });
+    }
+
+    /**
+     * Finish queued payments and apply their results (main thread, on disable)
+     */
+    public void shutdown() {
+        if (worker == null) {
+            return;
+        }
+        if (drainTaskId != -1) {
+            Bukkit.getScheduler().cancelTask(drainTaskId);
+            drainTaskId = -1;
+        }
+        worker.shutdown();
+        try {
+            if (!worker.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.severe("Economy thread did not finish in time - some trades may be incomplete!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainCompletions();
+    }
+
+    /**
+     * True if economy calls run on the caller's thread: always without async,
+     * and once shutdown has stopped the economy thread
+     */
+    private boolean runsInline() {
+        return worker == null || worker.isShutdown();
+    }
+
+    void drainCompletions() {
+        Runnable completion;
+        while ((completion = completions.poll()) != null) {
+            try {
+                completion.run();
+            } catch (RuntimeException e) {
+                logger.severe("Failed to complete trade: " + e);
+            }
+        }
+    }
+
+    /**
+     * The economy steps, in the same order as a synchronous trade
+     */
+    private Payment transfer(OfflinePlayer payer, OfflinePlayer payee, double unitPrice, double unitPayeeAmount,
+                             int maxUnits) {
+        int units = maxUnits;
+        try {
+            if (maxUnits <= 1) {
+                units = economy.has(payer, unitPrice) ? 1 : 0;
+            } else {
+                // One balance lookup sizes the whole bulk trade
+                units = (int) Math.min(maxUnits, Math.floor(economy.getBalance(payer) / unitPrice));
+            }
+        } catch (RuntimeException e) {
+            return new Payment(Status.WITHDRAW_FAILED, 0, String.valueOf(e.getMessage()));
+        }
+        if (units < 1) {
+            return new Payment(Status.INSUFFICIENT_FUNDS, 0, null);
+        }
+        double price = unitPrice * units;
+        double payeeAmount = unitPayeeAmount * units;
+
+        EconomyGateway.Result withdrawn = call(() -> economy.withdraw(payer, price));
+        if (!withdrawn.success()) {
+            return new Payment(Status.WITHDRAW_FAILED, 0, withdrawn.errorMessage());
+        }
+
+        EconomyGateway.Result deposited = call(() -> economy.deposit(payee, payeeAmount));
+        if (!deposited.success()) {
+            EconomyGateway.Result refunded = call(() -> economy.deposit(payer, price));
+            if (!refunded.success()) {
+                logger.severe("Could not refund $" + price + " to " + payer.getName() + ": " + refunded.errorMessage());
+            }
+            return new Payment(Status.DEPOSIT_FAILED, 0, deposited.errorMessage());
+        }
+
+        return new Payment(Status.PAID, units, null);
+    }
+
+    /**
+     * A submitted task, with exceptions (economy plugins throw freely) logged and turned into null
+     */
+    private <T> T get(Supplier<T> task) {
+        try {
+            return task.get();
+        } catch (RuntimeException e) {
+            logger.severe("Economy task failed: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * An economy call, with exceptions from the economy plugin turned into failures
+     */
+    private static EconomyGateway.Result call(Supplier<EconomyGateway.Result> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return EconomyGateway.Result.failed(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.chestshop.economy;
+
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.OfflinePlayer;
+
+/**
+ * Gateway to the economy plugin registered with Vault
+ */
+public class VaultEconomyGateway implements EconomyGateway {
+
+    private final Economy economy;
+
+    public VaultEconomyGateway(Economy economy) {
+        this.economy = economy;
+    }
+
+    @Override
+    public String getName() {
+        return economy.getName();
+    }
+
+    @Override
+    public boolean has(OfflinePlayer player, double amount) {
+        return economy.has(player, amount);
+    }
+
+    @Override
+    public double getBalance(OfflinePlayer player) {
+        return economy.getBalance(player);
+    }
+
+    @Override
+    public Result withdraw(OfflinePlayer player, double amount) {
+        return result(economy.withdrawPlayer(player, amount));
+    }
+
+    @Override
+    public Result deposit(OfflinePlayer player, double amount) {
+        return result(economy.depositPlayer(player, amount));
+    }
+
+    private static Result result(EconomyResponse response) {
+        return response.transactionSuccess() ? Result.OK : Result.failed(response.errorMessage);
+    }
+}
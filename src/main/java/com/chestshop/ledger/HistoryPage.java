@@ -0,0 +1,11 @@
+package com.chestshop.ledger;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One page of trade history, newest first (pages are 1-based). player is the
+ * UUID the query resolved to, or null if nobody by that name has traded.
+ */
+public record HistoryPage(List<TradeRecord> trades, int page, int pageCount, int total, UUID player) {
+}
@@ -0,0 +1,48 @@
+package com.chestshop.ledger;
+
+import com.chestshop.models.Shop;
+
+import java.util.UUID;
+
+/**
+ * Which trades a history lookup wants. A player can be given by name only;
+ * the ledger resolves it from the names it has recorded.
+ */
+public record HistoryQuery(Kind kind, UUID uuid, String name, String world, int x, int y, int z) {
+
+    public enum Kind {
+        /** Trades at any shop the player owns */
+        OWNER,
+        /** Trades the player made at other people's shops */
+        PLAYER,
+        /** Trades at one shop sign position */
+        SHOP
+    }
+
+    public static HistoryQuery byOwner(UUID owner) {
+        return new HistoryQuery(Kind.OWNER, owner, null, null, 0, 0, 0);
+    }
+
+    public static HistoryQuery byPlayer(UUID player, String name) {
+        return new HistoryQuery(Kind.PLAYER, player, name, null, 0, 0, 0);
+    }
+
+    public static HistoryQuery byShop(Shop shop) {
+        return new HistoryQuery(Kind.SHOP, null, null, shop.getSignWorldName(), shop.getSignX(), shop.getSignY(), shop.getSignZ());
+    }
+
+    HistoryQuery withPlayer(UUID player) {
+        return new HistoryQuery(kind, player, name, world, x, y, z);
+    }
+
+    /**
+     * Exact check of a record found through the index (shop keys are hashed)
+     */
+    boolean matches(TradeRecord trade) {
+        return switch (kind) {
+            case OWNER -> trade.owner().equals(uuid);
+            case PLAYER -> trade.player().equals(uuid);
+            case SHOP -> trade.x() == x && trade.y() == y && trade.z() == z && trade.world().equals(world);
+        };
+    }
+}
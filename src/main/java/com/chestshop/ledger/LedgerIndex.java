@@ -0,0 +1,117 @@
+package com.chestshop.ledger;
+
+import com.chestshop.util.BlockKey;
+import com.chestshop.util.LongList;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory posting lists over the ledger: for every player, owner and shop
+ * position, the locators of its trades in write order (so newest last).
+ *
+ * A locator packs the day file (epoch day) and the byte offset of the line
+ * in it, so a page of results is read with one seek per trade instead of a
+ * scan. The lists are rebuilt at startup from the .idx sidecar files of the
+ * retained days, and days that fall out of retention are dropped. Ledger
+ * thread only.
+ */
+final class LedgerIndex {
+
+    private static final int OFFSET_BITS = 40; // Day files up to 1 TB
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private final Map<UUID, LongList> byPlayer = new HashMap<>();
+    private final Map<UUID, LongList> byOwner = new HashMap<>();
+    private final Map<Long, LongList> byShop = new HashMap<>();
+    private final Map<String, UUID> names = new HashMap<>(); // Lower-case name -> last UUID seen with it
+    private int size;
+
+    static long locator(LocalDate day, long offset) {
+        return (day.toEpochDay() << OFFSET_BITS) | offset;
+    }
+
+    static LocalDate day(long locator) {
+        return LocalDate.ofEpochDay(locator >>> OFFSET_BITS);
+    }
+
+    static long offset(long locator) {
+        return locator & OFFSET_MASK;
+    }
+
+    /**
+     * Hash of a shop sign position; collisions are filtered out by {@link HistoryQuery#matches}
+     */
+    static long shopKey(String world, int x, int y, int z) {
+        return BlockKey.pack(x, y, z) * 0x9E3779B97F4A7C15L + world.hashCode();
+    }
+
+    void add(long locator, UUID player, UUID owner, long shopKey) {
+        byPlayer.computeIfAbsent(player, k -> new LongList()).add(locator);
+        byOwner.computeIfAbsent(owner, k -> new LongList()).add(locator);
+        byShop.computeIfAbsent(shopKey, k -> new LongList()).add(locator);
+        size++;
+    }
+
+    /**
+     * Drop every trade from before the given day. Lists are in write order, so
+     * those are at the front of each.
+     */
+    void dropBefore(LocalDate day) {
+        long first = locator(day, 0);
+        dropBefore(byPlayer, first);
+        dropBefore(byOwner, first);
+        size -= dropBefore(byShop, first);
+    }
+
+    private static int dropBefore(Map<?, LongList> lists, long first) {
+        int dropped = 0;
+        for (Iterator<LongList> it = lists.values().iterator(); it.hasNext(); ) {
+            LongList list = it.next();
+            int old = 0;
+            while (old < list.size() && list.get(old) < first) {
+                old++;
+            }
+            if (old == list.size()) {
+                it.remove();
+            } else if (old > 0) {
+                list.removeFirst(old);
+            }
+            dropped += old;
+        }
+        return dropped;
+    }
+
+    /**
+     * Remember the UUID last seen with a name. Returns true if that changed it.
+     */
+    boolean name(String name, UUID uuid) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        return !uuid.equals(names.put(name.toLowerCase(Locale.ROOT), uuid));
+    }
+
+    UUID resolve(String name) {
+        return names.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Locators for a query with its player resolved, or null if there are none
+     */
+    LongList postings(HistoryQuery query) {
+        return switch (query.kind()) {
+            case OWNER -> byOwner.get(query.uuid());
+            case PLAYER -> byPlayer.get(query.uuid());
+            case SHOP -> byShop.get(shopKey(query.world(), query.x(), query.y(), query.z()));
+        };
+    }
+
+    int size() {
+        return size;
+    }
+}
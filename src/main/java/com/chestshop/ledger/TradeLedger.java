@@ -0,0 +1,532 @@
+package com.chestshop.ledger;
+
+import com.chestshop.util.LongList;
+import com.chestshop.util.SpscRing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Record of every completed trade, one CSV file per day (UTC) in the ledger
+ * folder: trades-2026-01-31.csv.
+ *
+ * The main thread only drops a {@link TradeRecord} into a lock-free ring; a
+ * background thread drains it every flush interval, formats the batch and
+ * writes it with one flush. If the disk falls so far behind that the ring is
+ * full, the trade goes to the server log instead - the main thread never
+ * waits on the disk.
+ *
+ * Next to each day file is an index (trades-2026-01-31.idx) of fixed-size
+ * entries: [long line offset][player uuid][owner uuid][long shop key]. The
+ * ledger thread loads these into a {@link LedgerIndex} at startup (indexing
+ * any lines a crash left unindexed), then answers history queries from it,
+ * reading only the lines on the requested page. Only the last retainDays days
+ * are indexed (ledger.retain-days); older day files stay on disk untouched
+ * but are no longer searchable, and days are dropped from the index as they
+ * age out.
+ */
+public class TradeLedger {
+
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final int MAX_BATCH = 1024;
+    private static final int INDEX_ENTRY_SIZE = 48;
+    private static final String PREFIX = "trades-";
+    private static final String NAMES_FILE = "names.csv";
+
+    private final File folder;
+    private final Logger logger;
+    private final Executor mainThread;
+    private final SpscRing<TradeRecord> ring;
+    private final long flushIntervalNanos;
+    private final int retainDays; // 0 keeps every day
+    private final AtomicLong overflowed = new AtomicLong();
+    private final Queue<Runnable> queries = new ConcurrentLinkedQueue<>();
+    private volatile boolean running;
+    private Thread writerThread;
+
+    // Ledger thread only
+    private final LedgerIndex index = new LedgerIndex();
+    private LocalDate openDay;
+    private OutputStream out;
+    private DataOutputStream indexOut;
+    private OutputStream namesOut;
+    private long position; // Length of the open day file
+
+    /**
+     * mainThread runs query results on the server thread. History covers the
+     * last retainDays days (UTC, including today), or every day if 0.
+     */
+    public TradeLedger(File folder, Logger logger, Executor mainThread, int bufferSize, long flushIntervalMillis,
+                       int retainDays) {
+        this.folder = folder;
+        this.logger = logger;
+        this.mainThread = mainThread;
+        this.ring = new SpscRing<>(bufferSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.retainDays = Math.max(0, retainDays);
+    }
+
+    public void start() {
+        if (writerThread != null) {
+            return;
+        }
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            logger.severe("Could not create trade ledger folder " + folder + " - trades will only be logged");
+        }
+        running = true;
+        writerThread = new Thread(this::runWriter, "ChestShop-Ledger");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Record a completed trade (main thread). Never blocks.
+     */
+    public void record(TradeRecord trade) {
+        if (writerThread == null || !ring.offer(trade)) {
+            overflowed.incrementAndGet();
+            logger.info("[Transaction] " + trade.toCsv());
+        }
+    }
+
+    /**
+     * Look up one page of trades, newest first, on the ledger thread; then
+     * receives the result on the main thread. Returns false if the ledger
+     * isn't running.
+     */
+    public boolean history(HistoryQuery query, int page, int pageSize, Consumer<HistoryPage> then) {
+        Thread thread = writerThread;
+        if (thread == null) {
+            return false;
+        }
+        queries.add(() -> {
+            HistoryPage result = readPage(query, page, pageSize);
+            mainThread.execute(() -> then.accept(result));
+        });
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * Write everything recorded so far and stop the writer (main thread, on disable)
+     */
+    public void close() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            logger.severe("Trade ledger writer did not finish in time - recent trades may be missing from the ledger!");
+        }
+        writerThread = null;
+        long missed = overflowed.get();
+        if (missed > 0) {
+            logger.warning(missed + " trades did not fit in the ledger buffer and were written to the server log instead");
+        }
+    }
+
+    // ===== Ledger thread =====
+
+    private void runWriter() {
+        loadIndex();
+        List<TradeRecord> batch = new ArrayList<>();
+        while (true) {
+            while (ring.drainTo(batch, MAX_BATCH) > 0) {
+                write(batch);
+                batch.clear();
+            }
+            // Queries see every trade recorded before them, even one that came in after the drain above
+            Runnable query;
+            boolean queried = false;
+            while ((query = queries.poll()) != null) {
+                queried = true;
+                while (ring.drainTo(batch, MAX_BATCH) > 0) {
+                    write(batch);
+                    batch.clear();
+                }
+                try {
+                    query.run();
+                } catch (RuntimeException e) {
+                    logger.warning("Trade history lookup failed: " + e);
+                }
+            }
+            if (!queried && ring.isEmpty()) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+        closeFile();
+    }
+
+    /**
+     * Append a batch with one flush per file, switching files at each new day.
+     * Lines are flushed before their index entries, so an index never points
+     * past its day file.
+     */
+    private void write(List<TradeRecord> batch) {
+        long[] locators = new long[batch.size()];
+        int flushed = 0; // Trades before this one are on disk
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                TradeRecord trade = batch.get(i);
+                LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(trade.time()), ZoneOffset.UTC);
+                if (!day.equals(openDay)) {
+                    flushFile();
+                    addToIndex(batch, locators, flushed, i);
+                    flushed = i;
+                    open(day);
+                }
+                byte[] line = (trade.toCsv() + "\n").getBytes(StandardCharsets.UTF_8);
+                long offset = position;
+                out.write(line);
+                position += line.length;
+                writeIndexEntry(indexOut, offset, trade);
+                locators[i] = LedgerIndex.locator(day, offset);
+            }
+            flushFile();
+            addToIndex(batch, locators, flushed, batch.size());
+        } catch (IOException e) {
+            // Buffered lines since the last flush may be lost too - log the whole batch
+            logger.severe("Failed to write " + batch.size() + " trades to the ledger: " + e.getMessage());
+            for (TradeRecord trade : batch) {
+                logger.info("[Transaction] " + trade.toCsv());
+            }
+            closeFile();
+        }
+    }
+
+    /**
+     * Add trades [from, to) of a flushed batch to the in-memory index
+     */
+    private void addToIndex(List<TradeRecord> batch, long[] locators, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            add(locators[i], batch.get(i));
+        }
+        if (namesOut != null) {
+            namesOut.flush();
+        }
+    }
+
+    private void add(long locator, TradeRecord trade) throws IOException {
+        index.add(locator, trade.player(), trade.owner(), LedgerIndex.shopKey(trade.world(), trade.x(), trade.y(), trade.z()));
+        rememberName(trade.playerName(), trade.player());
+        rememberName(trade.ownerName(), trade.owner());
+    }
+
+    /**
+     * Names are kept in names.csv (uuid,name per line, latest wins) so
+     * lookups by name work without reading old day files
+     */
+    private void rememberName(String name, UUID uuid) throws IOException {
+        if (!index.name(name, uuid)) {
+            return;
+        }
+        if (namesOut == null) {
+            namesOut = new BufferedOutputStream(new FileOutputStream(new File(folder, NAMES_FILE), true));
+        }
+        namesOut.write((uuid + "," + name + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void open(LocalDate day) throws IOException {
+        closeFile();
+        if (retainDays > 0) {
+            index.dropBefore(firstRetainedDay(day)); // A new day - the oldest one ages out
+        }
+        File file = dayFile(day);
+        position = file.length();
+        out = new BufferedOutputStream(new FileOutputStream(file, true));
+        indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(day), true)));
+        openDay = day;
+        if (position == 0) {
+            byte[] header = (TradeRecord.CSV_HEADER + "\n").getBytes(StandardCharsets.UTF_8);
+            out.write(header);
+            position = header.length;
+        }
+    }
+
+    private void flushFile() throws IOException {
+        if (out != null) {
+            out.flush();
+            indexOut.flush();
+        }
+    }
+
+    private void closeFile() {
+        try {
+            if (out != null) {
+                out.close();
+            }
+            if (indexOut != null) {
+                indexOut.close();
+            }
+            if (namesOut != null) {
+                namesOut.close();
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to close trade ledger file: " + e.getMessage());
+        }
+        out = null;
+        indexOut = null;
+        namesOut = null;
+        openDay = null;
+    }
+
+    private static void writeIndexEntry(DataOutputStream index, long offset, TradeRecord trade) throws IOException {
+        index.writeLong(offset);
+        index.writeLong(trade.player().getMostSignificantBits());
+        index.writeLong(trade.player().getLeastSignificantBits());
+        index.writeLong(trade.owner().getMostSignificantBits());
+        index.writeLong(trade.owner().getLeastSignificantBits());
+        index.writeLong(LedgerIndex.shopKey(trade.world(), trade.x(), trade.y(), trade.z()));
+    }
+
+    /**
+     * Oldest day kept in the index when the newest is today
+     */
+    private LocalDate firstRetainedDay(LocalDate today) {
+        return today.minusDays(retainDays - 1);
+    }
+
+    // ===== Startup =====
+
+    /**
+     * Load the index of every retained day, oldest first, and index lines it is missing
+     */
+    private void loadIndex() {
+        File[] files = folder.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(".csv"));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files); // ISO dates sort chronologically
+        long start = System.currentTimeMillis();
+        LocalDate firstDay = retainDays > 0 ? firstRetainedDay(LocalDate.now(ZoneOffset.UTC)) : LocalDate.MIN;
+        int days = 0;
+        readNames();
+        for (File file : files) {
+            LocalDate day;
+            try {
+                day = LocalDate.parse(file.getName().substring(PREFIX.length(), file.getName().length() - 4));
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (day.isBefore(firstDay)) {
+                continue; // Past ledger.retain-days - kept on disk, not searchable
+            }
+            days++;
+            try {
+                long lastOffset = readIndex(day);
+                indexTail(day, lastOffset);
+            } catch (IOException e) {
+                logger.warning("Failed to index trade ledger " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        if (index.size() > 0) {
+            logger.info("Indexed " + index.size() + " ledger trades from " + days + " days in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    private void readNames() {
+        File file = new File(folder, NAMES_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                int comma = line.indexOf(',');
+                if (comma > 0) {
+                    try {
+                        index.name(line.substring(comma + 1), UUID.fromString(line.substring(0, comma)));
+                    } catch (IllegalArgumentException e) {
+                        // Torn line
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to read ledger names: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load one day's index file. Returns the offset of its last line, or -1.
+     */
+    private long readIndex(LocalDate day) throws IOException {
+        File file = indexFile(day);
+        if (!file.exists()) {
+            return -1;
+        }
+        long whole = file.length() - file.length() % INDEX_ENTRY_SIZE;
+        if (whole != file.length()) {
+            // Torn entry from a crash - the line it belonged to is indexed again below
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(whole);
+            }
+        }
+        long lastOffset = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            for (long read = 0; read < whole; read += INDEX_ENTRY_SIZE) {
+                long offset = in.readLong();
+                UUID player = new UUID(in.readLong(), in.readLong());
+                UUID owner = new UUID(in.readLong(), in.readLong());
+                long shopKey = in.readLong();
+                index.add(LedgerIndex.locator(day, offset), player, owner, shopKey);
+                lastOffset = offset;
+            }
+        } catch (EOFException e) {
+            // Shorter than it was a moment ago - use what was read
+        }
+        return lastOffset;
+    }
+
+    /**
+     * Index the lines after the last indexed one (written but not yet indexed
+     * when the server stopped), and cut off a torn last line so new lines
+     * start cleanly. Normally this only reads the last line.
+     */
+    private void indexTail(LocalDate day, long lastOffset) throws IOException {
+        File file = dayFile(day);
+        long from = Math.max(0, lastOffset);
+        long end = from; // End of the last complete line
+        try (FileInputStream stream = new FileInputStream(file);
+             DataOutputStream indexAppend = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(day), true)))) {
+            stream.getChannel().position(from);
+            InputStream in = new BufferedInputStream(stream, 1 << 16);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long lineStart = from;
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                TradeRecord trade = TradeRecord.fromCsv(line.toString(StandardCharsets.UTF_8));
+                if (trade != null && lineStart != lastOffset) {
+                    writeIndexEntry(indexAppend, lineStart, trade);
+                    add(LedgerIndex.locator(day, lineStart), trade);
+                }
+                end = lineStart + line.size() + 1;
+                lineStart = end;
+                line.reset();
+            }
+        }
+        if (end < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(end);
+            }
+        }
+    }
+
+    // ===== Queries =====
+
+    private HistoryPage readPage(HistoryQuery query, int page, int pageSize) {
+        if (query.uuid() == null && query.kind() != HistoryQuery.Kind.SHOP) {
+            UUID resolved = index.resolve(query.name());
+            if (resolved == null) {
+                return new HistoryPage(List.of(), 1, 1, 0, null);
+            }
+            query = query.withPlayer(resolved);
+        }
+
+        LongList postings = index.postings(query);
+        int total = postings != null ? postings.size() : 0;
+        int pageCount = Math.max(1, (total + pageSize - 1) / pageSize);
+        page = Math.max(1, Math.min(page, pageCount));
+
+        List<TradeRecord> trades = new ArrayList<>(pageSize);
+        Map<LocalDate, RandomAccessFile> files = new HashMap<>();
+        try {
+            int newest = total - 1 - (page - 1) * pageSize;
+            for (int i = newest; i >= 0 && i > newest - pageSize; i--) {
+                long locator = postings.get(i);
+                TradeRecord trade = readLine(files, LedgerIndex.day(locator), LedgerIndex.offset(locator));
+                if (trade != null && query.matches(trade)) {
+                    trades.add(trade);
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to read trade history: " + e.getMessage());
+        } finally {
+            for (RandomAccessFile file : files.values()) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    // Read-only
+                }
+            }
+        }
+        return new HistoryPage(trades, page, pageCount, total, query.uuid());
+    }
+
+    private TradeRecord readLine(Map<LocalDate, RandomAccessFile> files, LocalDate day, long offset) throws IOException {
+        RandomAccessFile file = files.get(day);
+        if (file == null) {
+            File path = dayFile(day);
+            if (!path.exists()) {
+                return null;
+            }
+            file = new RandomAccessFile(path, "r");
+            files.put(day, file);
+        }
+        file.seek(offset);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        byte[] chunk = new byte[256];
+        int read;
+        while ((read = file.read(chunk)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (chunk[i] == '\n') {
+                    line.write(chunk, 0, i);
+                    return TradeRecord.fromCsv(line.toString(StandardCharsets.UTF_8));
+                }
+            }
+            line.write(chunk, 0, read);
+        }
+        return null; // No line end - not a complete line
+    }
+
+    private File dayFile(LocalDate day) {
+        return new File(folder, PREFIX + day + ".csv");
+    }
+
+    private File indexFile(LocalDate day) {
+        return new File(folder, PREFIX + day + ".idx");
+    }
+}
@@ -0,0 +1,130 @@
+package com.chestshop.ledger;
+
+import com.chestshop.models.Shop;
+import com.chestshop.models.TradeSide;
+import org.bukkit.Material;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One completed trade, as written to the ledger.
+ *
+ * price is what the payer paid (the buyer for BUY, the owner for SELL); tax
+ * is the part of it that went to nobody.
+ */
+public record TradeRecord(long time, TradeSide side, UUID player, String playerName, UUID owner, String ownerName,
+                          int shopId, String world, int x, int y, int z, Material item, int amount,
+                          double price, double tax) {
+
+    static final String CSV_HEADER = "time,side,player,player_uuid,owner,owner_uuid,shop_id,world,x,y,z,item,amount,price,tax";
+
+    /**
+     * A trade that just completed at the given shop
+     */
+    public static TradeRecord of(Shop shop, TradeSide side, UUID player, String playerName, int amount,
+                                 double price, double tax) {
+        return new TradeRecord(System.currentTimeMillis(), side, player, playerName, shop.getOwnerUUID(),
+                shop.getOwnerName(), shop.getId(), shop.getSignWorldName(), shop.getSignX(), shop.getSignY(),
+                shop.getSignZ(), shop.getItem(), amount, price, tax);
+    }
+
+    /**
+     * One CSV line (no line break), in {@link #CSV_HEADER} column order
+     */
+    String toCsv() {
+        StringBuilder line = new StringBuilder(160);
+        line.append(Instant.ofEpochMilli(time)).append(',')
+                .append(side).append(',');
+        appendField(line, playerName).append(',')
+                .append(player).append(',');
+        appendField(line, ownerName).append(',')
+                .append(owner).append(',')
+                .append(shopId).append(',');
+        appendField(line, world).append(',')
+                .append(x).append(',')
+                .append(y).append(',')
+                .append(z).append(',')
+                .append(item.name()).append(',')
+                .append(amount).append(',')
+                .append(BigDecimal.valueOf(price).toPlainString()).append(',')
+                .append(BigDecimal.valueOf(tax).toPlainString());
+        return line.toString();
+    }
+
+    /**
+     * Parse a line written by {@link #toCsv}. Returns null for the header or a
+     * damaged line.
+     */
+    static TradeRecord fromCsv(String line) {
+        List<String> fields = splitFields(line);
+        if (fields.size() != 15) {
+            return null;
+        }
+        try {
+            return new TradeRecord(
+                    Instant.parse(fields.get(0)).toEpochMilli(),
+                    TradeSide.valueOf(fields.get(1)),
+                    UUID.fromString(fields.get(3)),
+                    fields.get(2).isEmpty() ? null : fields.get(2),
+                    UUID.fromString(fields.get(5)),
+                    fields.get(4),
+                    Integer.parseInt(fields.get(6)),
+                    fields.get(7),
+                    Integer.parseInt(fields.get(8)),
+                    Integer.parseInt(fields.get(9)),
+                    Integer.parseInt(fields.get(10)),
+                    Material.valueOf(fields.get(11)),
+                    Integer.parseInt(fields.get(12)),
+                    Double.parseDouble(fields.get(13)),
+                    Double.parseDouble(fields.get(14)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static List<String> splitFields(String line) {
+        List<String> fields = new ArrayList<>(15);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Quote a field if it could break the CSV (player and world names are free text)
+     */
+    private static StringBuilder appendField(StringBuilder line, String value) {
+        if (value == null) {
+            return line;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return line.append(value);
+        }
+        return line.append('"').append(value.replace("\"", "\"\"").replace('\n', ' ').replace('\r', ' ')).append('"');
+    }
+}
@@ -0,0 +1,34 @@
+package com.chestshop.listeners;
+
+import com.chestshop.ChestShopPlugin;
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/**
+ * Verifies loaded shops once their chunk is loaded, so startup never has to load chunks,
+ * and drops cached inventory lookups when a chunk unloads
+ */
+public class ChunkListener implements Listener {
+
+    private final ChestShopPlugin plugin;
+
+    public ChunkListener(ChestShopPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        plugin.getShopManager().verifyChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        plugin.getShopManager().chunkUnloaded(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+}
@@ -7,7 +7,7 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 
 /**
- * Handles player join events for showing pending alerts
+ * Handles player join events for showing pending alerts and handing over held deliveries
  */
 public class PlayerJoinListener implements Listener {
 
@@ -21,6 +21,11 @@ public class PlayerJoinListener implements Listener {
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
 
+        // Items bought just before logging off
+        if (plugin.getDeliveryManager() != null) {
+            plugin.getDeliveryManager().deliver(player);
+        }
+
         // Show pending alerts if alerts are enabled
         if (plugin.isAlertsEnabled() && plugin.getAlertManager() != null) {
             plugin.getAlertManager().showPendingAlerts(player);
@@ -1,9 +1,11 @@
 package com.chestshop.listeners;
 
 import com.chestshop.ChestShopPlugin;
+import com.chestshop.economy.TransactionEngine;
+import com.chestshop.ledger.TradeRecord;
 import com.chestshop.models.Shop;
+import com.chestshop.models.TradeSide;
 import net.milkbowl.vault.economy.Economy;
-import net.milkbowl.vault.economy.EconomyResponse;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -25,11 +27,13 @@ import org.bukkit.event.block.BlockFromToEvent;
 import org.bukkit.event.block.BlockPhysicsEvent;
 import org.bukkit.event.block.BlockPistonExtendEvent;
 import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.SignChangeEvent;
-import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.event.entity.EntityChangeBlockEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.block.DoubleChest;
@@ -37,6 +41,7 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -248,7 +253,12 @@ public class ShopListener implements Listener {
                 sellPrice
         );
 
-        plugin.getShopManager().addShop(shop);
+        Shop registered = plugin.getShopManager().addShop(shop);
+
+        // Count the chest once now, so /shop find and /shop info can show stock straight away
+        if (chestBlock.getState() instanceof Chest chest) {
+            plugin.getShopManager().countStock(registered, chest.getInventory());
+        }
 
         // Create hologram if enabled
         if (plugin.isHologramsEnabled() && plugin.getHologramManager() != null) {
@@ -285,7 +295,7 @@ public class ShopListener implements Listener {
         Block block = event.getClickedBlock();
         if (!isSign(block.getType())) return;
 
-        Shop shop = plugin.getShopManager().getShop(block.getLocation());
+        Shop shop = plugin.getShopManager().getShop(block);
         if (shop == null) return;
 
         event.setCancelled(true);
@@ -315,22 +325,19 @@ public class ShopListener implements Listener {
             return;
         }
 
-        Block chestBlock = shop.getChestLocation().getBlock();
-        if (!(chestBlock.getState() instanceof Chest chest)) {
+        Block chestBlock = shop.getChestBlock();
+        if (chestBlock == null || !(chestBlock.getState() instanceof Chest chest)) {
             player.sendMessage(ChatColor.RED + "Shop chest not found!");
             return;
         }
 
         Inventory chestInventory = chest.getInventory();
-        Economy economy = plugin.getEconomy();
 
         // Get unique shop key for transaction locking (with null safety)
-        Location signLoc = shop.getSignLocation();
-        String worldName = signLoc.getWorld() != null ? signLoc.getWorld().getName() : "unknown";
-        String shopKey = worldName + ":" +
-                signLoc.getBlockX() + ":" +
-                signLoc.getBlockY() + ":" +
-                signLoc.getBlockZ();
+        String shopKey = shop.getSignWorldName() + ":" +
+                shop.getSignX() + ":" +
+                shop.getSignY() + ":" +
+                shop.getSignZ();
 
         // Prevent race condition - only one transaction per shop at a time
         if (!activeTransactions.add(shopKey)) {
@@ -338,6 +345,7 @@ public class ShopListener implements Listener {
             return;
         }
 
+        boolean pending = false; // Payment still running - the lock is released when it completes
         try {
             // Right click = Buy, Left click = Sell
             switch (event.getAction()) {
@@ -347,7 +355,7 @@ public class ShopListener implements Listener {
                         player.sendMessage(ChatColor.RED + "This shop is not selling!");
                         return;
                     }
-                    handleBuy(player, shop, chestInventory, economy);
+                    pending = handleBuy(player, shop, chestInventory, shopKey);
                 }
                 case LEFT_CLICK_BLOCK -> {
                     // Player wants to SELL
@@ -355,249 +363,314 @@ public class ShopListener implements Listener {
                         player.sendMessage(ChatColor.RED + "This shop is not buying!");
                         return;
                     }
-                    handleSell(player, shop, chestInventory, economy);
+                    pending = handleSell(player, shop, chestInventory, shopKey);
                 }
             }
         } finally {
-            // Always release the transaction lock
-            activeTransactions.remove(shopKey);
+            if (!pending) {
+                activeTransactions.remove(shopKey);
+            }
         }
     }
 
-    private void handleBuy(Player player, Shop shop, Inventory chestInventory, Economy economy) {
-        double price = shop.getBuyPrice();
+    /**
+     * Start a purchase: take the items out of the chest into escrow and hand
+     * the payment to the transaction engine. A sneak-click buys as many
+     * bundles as the stock, the buyer's inventory and the configured cap
+     * allow; the engine trims that to what the buyer can afford. Returns true
+     * if the payment is running (the shop lock is then released by
+     * {@link #completeBuy}).
+     */
+    private boolean handleBuy(Player player, Shop shop, Inventory chestInventory, String shopKey) {
+        int amount = shop.getAmount();
 
-        // Check if chest has enough items (matching exact item type)
-        if (!hasEnoughItems(chestInventory, shop.getItem(), shop.getAmount())) {
+        // Check if chest has enough items (cached count - the chest is only scanned when the cache is cold)
+        int stock = plugin.getShopManager().countStock(shop, chestInventory).getStock();
+        if (stock < amount) {
             player.sendMessage(ChatColor.RED + "Shop is out of stock!");
-            return;
-        }
-
-        // Check if player has enough money
-        if (!economy.has(player, price)) {
-            player.sendMessage(ChatColor.RED + "You don't have enough money! Need: $" + formatPrice(price));
-            return;
+            return false;
         }
 
         // Check if player has inventory space
-        ItemStack testItem = new ItemStack(shop.getItem(), shop.getAmount());
-        if (player.getInventory().firstEmpty() == -1 && !canStackItem(player.getInventory(), testItem)) {
+        int room = roomFor(player.getInventory(), shop.getItem());
+        if (room < amount) {
             player.sendMessage(ChatColor.RED + "Your inventory is full!");
-            return;
+            return false;
         }
+        int maxBundles = player.isSneaking() ? plugin.getBulkTradeBundles() : 1;
+        int bundles = Math.min(maxBundles, Math.min(stock, room) / amount);
 
         // SAFE TRANSACTION ORDER: Items first, then money
-        // Step 1: Collect actual items from chest (preserves enchantments/metadata)
-        List<ItemStack> collectedItems = collectItems(chestInventory, shop.getItem(), shop.getAmount());
-        if (collectedItems == null) {
+        // Step 1: Escrow actual items from chest (preserves enchantments/metadata)
+        List<ItemStack> escrow = collectItems(chestInventory, shop.getItem(), bundles * amount);
+        if (escrow == null) {
+            plugin.getShopManager().forgetStock(shop); // Chest changed behind our back - recount next time
             player.sendMessage(ChatColor.RED + "Transaction failed: Could not retrieve items.");
-            return;
+            return false;
         }
+        Shop stocked = plugin.getShopManager().tradeStock(shop, chestInventory, -bundles * amount);
 
-        // Step 2: Add collected items to player (track what was successfully added for proper rollback)
-        List<ItemStack> addedToPlayer = new ArrayList<>();
-        boolean addFailed = false;
+        // Step 2: Withdraw from player, deposit to shop owner (minus tax) - on the economy thread
+        double price = shop.getBuyPrice();
+        double taxAmount = price * (plugin.getTransactionTaxPercent() / 100.0);
+        UUID playerId = player.getUniqueId();
+        plugin.getTransactionEngine().pay(player, Bukkit(shop.getOwnerUUID()), price, price - taxAmount, bundles, payment -> {
+            activeTransactions.remove(shopKey);
+            completeBuy(playerId, stocked, escrow, bundles, payment, taxAmount);
+        });
+        return true;
+    }
 
-        for (ItemStack item : collectedItems) {
-            HashMap<Integer, ItemStack> leftover = player.getInventory().addItem(item.clone());
-            if (!leftover.isEmpty()) {
-                // Partial add - some items couldn't fit
-                // Calculate how many were actually added
-                int addedAmount = item.getAmount();
-                for (ItemStack left : leftover.values()) {
-                    addedAmount -= left.getAmount();
-                }
-                if (addedAmount > 0) {
-                    ItemStack added = item.clone();
-                    added.setAmount(addedAmount);
-                    addedToPlayer.add(added);
+    /**
+     * Step 3 of a purchase (main thread): hand the paid-for items to the buyer
+     * and put the rest back in the chest
+     */
+    private void completeBuy(UUID playerId, Shop shop, List<ItemStack> escrow, int bundles,
+                             TransactionEngine.Payment payment, double bundleTax) {
+        Player player = org.bukkit.Bukkit.getPlayer(playerId);
+
+        if (!payment.isPaid()) {
+            returnToChest(shop, escrow);
+            if (player != null) {
+                switch (payment.status()) {
+                    case INSUFFICIENT_FUNDS -> player.sendMessage(ChatColor.RED + "You don't have enough money! Need: $" + formatPrice(shop.getBuyPrice()));
+                    case WITHDRAW_FAILED -> player.sendMessage(ChatColor.RED + "Transaction failed: " + payment.errorMessage());
+                    default -> player.sendMessage(ChatColor.RED + "Transaction failed: Could not pay shop owner.");
                 }
-                addFailed = true;
-                break;
-            } else {
-                addedToPlayer.add(item.clone());
-            }
-        }
-
-        if (addFailed) {
-            // Rollback: Remove only what was actually added to player, return all to chest
-            for (ItemStack added : addedToPlayer) {
-                player.getInventory().removeItem(added);
             }
-            for (ItemStack collected : collectedItems) {
-                chestInventory.addItem(collected);
+            if (payment.status() == TransactionEngine.Status.DEPOSIT_FAILED) {
+                plugin.getLogger().warning("Deposit failed for shop owner " + shop.getOwnerName() + ": " + payment.errorMessage());
             }
-            player.sendMessage(ChatColor.RED + "Transaction failed: Your inventory is full!");
             return;
         }
 
-        // Step 3: Withdraw money from player
-        EconomyResponse withdrawResponse = economy.withdrawPlayer(player, price);
-        if (!withdrawResponse.transactionSuccess()) {
-            // Rollback: Remove added items from player, return all to chest
-            for (ItemStack item : addedToPlayer) {
-                player.getInventory().removeItem(item);
-            }
-            for (ItemStack item : collectedItems) {
-                chestInventory.addItem(item);
-            }
-            player.sendMessage(ChatColor.RED + "Transaction failed: " + withdrawResponse.errorMessage);
-            return;
+        // Bulk buy cut short by the buyer's balance - the unpaid bundles go back
+        int amount = shop.getAmount() * payment.units();
+        List<ItemStack> unpaid = splitEscrow(escrow, amount);
+        if (!unpaid.isEmpty()) {
+            shop = returnToChest(shop, unpaid);
         }
+        double price = shop.getBuyPrice() * payment.units();
+        double taxAmount = bundleTax * payment.units();
 
-        // Step 4: Deposit to shop owner (minus tax)
-        double taxPercent = plugin.getTransactionTaxPercent();
-        double taxAmount = price * (taxPercent / 100.0);
-        double ownerReceives = price - taxAmount;
-
-        EconomyResponse depositResponse = economy.depositPlayer(Bukkit(shop.getOwnerUUID()), ownerReceives);
-        if (!depositResponse.transactionSuccess()) {
-            // Critical: Refund player, remove items from player, return to chest
-            economy.depositPlayer(player, price);
-            for (ItemStack item : addedToPlayer) {
-                player.getInventory().removeItem(item);
-            }
-            for (ItemStack item : collectedItems) {
-                chestInventory.addItem(item);
-            }
-            player.sendMessage(ChatColor.RED + "Transaction failed: Could not pay shop owner.");
-            plugin.getLogger().warning("Deposit failed for shop owner " + shop.getOwnerName() + ": " + depositResponse.errorMessage);
-            return;
+        // The money has moved, so the items are the buyer's now. If they left
+        // meanwhile they get them at their next login; whatever no longer fits
+        // their inventory is dropped at their feet.
+        boolean dropped = false;
+        if (player == null) {
+            plugin.getDeliveryManager().hold(playerId, escrow);
+        } else {
+            dropped = returnToPlayer(player, player.getLocation(), escrow);
         }
 
-        // Log transaction
-        String taxInfo = taxAmount > 0 ? " (tax: $" + formatPrice(taxAmount) + ")" : "";
-        plugin.getLogger().info("[Transaction] " + player.getName() + " bought " + shop.getAmount() + "x " +
-                shop.getItem().name() + " from " + shop.getOwnerName() + " for $" + formatPrice(price) + taxInfo);
+        // Record transaction (written to the ledger off the main thread)
+        String buyerName = player != null ? player.getName() : null;
+        plugin.getTradeLedger().record(TradeRecord.of(shop, TradeSide.BUY, playerId, buyerName, amount, price, taxAmount));
 
-        player.sendMessage(plugin.getMessage("purchase-success",
-                "{amount}", String.valueOf(shop.getAmount()),
-                "{item}", formatItemName(shop.getItem()),
-                "{price}", formatPrice(price)));
+        if (player != null) {
+            String limited = payment.units() < bundles ? ChatColor.GRAY + " (all you could afford)" : "";
+            String full = dropped ? ChatColor.YELLOW + " Your inventory is full - the rest is at your feet." : "";
+            player.sendMessage(plugin.getMessage("purchase-success",
+                    "{amount}", String.valueOf(amount),
+                    "{item}", formatItemName(shop.getItem()),
+                    "{price}", formatPrice(price)) + limited + full);
+        }
 
-        // Check stock levels and send alerts
+        // Stock alerts are checked off the main thread
         if (plugin.isAlertsEnabled()) {
-            checkStockAlerts(shop, chestInventory);
+            plugin.getAlertEvaluator().bought(shop);
         }
     }
 
-    private void handleSell(Player player, Shop shop, Inventory chestInventory, Economy economy) {
-        double price = shop.getSellPrice();
+    /**
+     * Start a sale: take the items out of the player's inventory into escrow
+     * and hand the payment to the transaction engine. A sneak-click sells as
+     * many bundles as the player holds and the chest has room for, up to the
+     * configured cap; the engine trims that to what the owner can afford.
+     * Returns true if the payment is running (the shop lock is then released
+     * by {@link #completeSell}).
+     */
+    private boolean handleSell(Player player, Shop shop, Inventory chestInventory, String shopKey) {
+        int amount = shop.getAmount();
 
         // Check if player has the items (matching exact item type)
-        if (!hasEnoughItems(player.getInventory(), shop.getItem(), shop.getAmount())) {
+        int held = countItems(player.getInventory(), shop.getItem());
+        if (held < amount) {
             player.sendMessage(ChatColor.RED + "You don't have enough items to sell!");
-            return;
+            return false;
         }
 
-        // Check if chest has space
-        ItemStack testItem = new ItemStack(shop.getItem(), shop.getAmount());
-        if (chestInventory.firstEmpty() == -1 && !canStackItem(chestInventory, testItem)) {
+        // Check if chest has space (cached count, like the stock check)
+        int space = plugin.getShopManager().countStock(shop, chestInventory).getSpace();
+        if (space < amount) {
             player.sendMessage(ChatColor.RED + "Shop chest is full!");
-            return;
-        }
-
-        // Check if shop owner has enough money
-        if (!economy.has(Bukkit(shop.getOwnerUUID()), price)) {
-            player.sendMessage(ChatColor.RED + "Shop owner doesn't have enough money!");
-            return;
+            return false;
         }
+        int maxBundles = player.isSneaking() ? plugin.getBulkTradeBundles() : 1;
+        int bundles = Math.min(maxBundles, Math.min(held, space) / amount);
 
         // SAFE TRANSACTION ORDER: Items first, then money
-        // Step 1: Collect actual items from player (preserves enchantments/metadata)
-        List<ItemStack> collectedItems = collectItems(player.getInventory(), shop.getItem(), shop.getAmount());
-        if (collectedItems == null) {
+        // Step 1: Escrow actual items from player (preserves enchantments/metadata)
+        List<ItemStack> escrow = collectItems(player.getInventory(), shop.getItem(), bundles * amount);
+        if (escrow == null) {
             player.sendMessage(ChatColor.RED + "Transaction failed: Could not take items.");
-            return;
+            return false;
         }
 
-        // Step 2: Add items to chest (track what was successfully added for proper rollback)
-        List<ItemStack> addedToChest = new ArrayList<>();
-        boolean addFailed = false;
+        // Step 2: Withdraw from shop owner, deposit to player (minus tax) - on the economy thread
+        double price = shop.getSellPrice();
+        double taxAmount = price * (plugin.getTransactionTaxPercent() / 100.0);
+        UUID playerId = player.getUniqueId();
+        Location playerLocation = player.getLocation();
+        org.bukkit.OfflinePlayer owner = Bukkit(shop.getOwnerUUID());
+        plugin.getTransactionEngine().pay(owner, player, price, price - taxAmount, bundles, payment -> {
+            activeTransactions.remove(shopKey);
+            completeSell(playerId, playerLocation, shop, owner, escrow, bundles, payment, taxAmount);
+        });
+        return true;
+    }
 
-        for (ItemStack item : collectedItems) {
-            HashMap<Integer, ItemStack> leftover = chestInventory.addItem(item.clone());
-            if (!leftover.isEmpty()) {
-                // Partial add - some items couldn't fit
-                int addedAmount = item.getAmount();
-                for (ItemStack left : leftover.values()) {
-                    addedAmount -= left.getAmount();
-                }
-                if (addedAmount > 0) {
-                    ItemStack added = item.clone();
-                    added.setAmount(addedAmount);
-                    addedToChest.add(added);
+    /**
+     * Step 3 of a sale (main thread): put the paid-for items in the chest and
+     * give the rest back to the seller
+     */
+    private void completeSell(UUID playerId, Location playerLocation, Shop shop, org.bukkit.OfflinePlayer owner,
+                              List<ItemStack> escrow, int bundles, TransactionEngine.Payment payment, double bundleTax) {
+        Player player = org.bukkit.Bukkit.getPlayer(playerId);
+
+        if (!payment.isPaid()) {
+            returnToPlayer(player, playerLocation, escrow);
+            if (player != null) {
+                switch (payment.status()) {
+                    case INSUFFICIENT_FUNDS -> player.sendMessage(ChatColor.RED + "Shop owner doesn't have enough money!");
+                    case WITHDRAW_FAILED -> player.sendMessage(ChatColor.RED + "Transaction failed: Owner has insufficient funds.");
+                    default -> player.sendMessage(ChatColor.RED + "Transaction failed: Could not receive payment.");
                 }
-                addFailed = true;
-                break;
-            } else {
-                addedToChest.add(item.clone());
-            }
-        }
-
-        if (addFailed) {
-            // Rollback: Remove only what was actually added to chest, return all to player
-            for (ItemStack added : addedToChest) {
-                chestInventory.removeItem(added);
             }
-            for (ItemStack collected : collectedItems) {
-                player.getInventory().addItem(collected);
+            if (payment.status() == TransactionEngine.Status.DEPOSIT_FAILED) {
+                plugin.getLogger().warning("Deposit failed for player " + playerId + ": " + payment.errorMessage());
             }
-            player.sendMessage(ChatColor.RED + "Transaction failed: Shop chest is full!");
             return;
         }
 
-        // Step 3: Withdraw money from shop owner
-        EconomyResponse withdrawResponse = economy.withdrawPlayer(Bukkit(shop.getOwnerUUID()), price);
-        if (!withdrawResponse.transactionSuccess()) {
-            // Rollback: Remove added items from chest, return all to player
-            for (ItemStack item : addedToChest) {
-                chestInventory.removeItem(item);
-            }
-            for (ItemStack item : collectedItems) {
-                player.getInventory().addItem(item);
-            }
-            player.sendMessage(ChatColor.RED + "Transaction failed: Owner has insufficient funds.");
-            return;
+        // Bulk sale cut short by the owner's balance - the unpaid bundles go back
+        int amount = shop.getAmount() * payment.units();
+        List<ItemStack> unpaid = splitEscrow(escrow, amount);
+        if (!unpaid.isEmpty()) {
+            returnToPlayer(player, playerLocation, unpaid);
         }
-
-        // Step 4: Deposit to player (minus tax)
-        double taxPercent = plugin.getTransactionTaxPercent();
-        double taxAmount = price * (taxPercent / 100.0);
+        double price = shop.getSellPrice() * payment.units();
+        double taxAmount = bundleTax * payment.units();
         double playerReceives = price - taxAmount;
 
-        EconomyResponse depositResponse = economy.depositPlayer(player, playerReceives);
-        if (!depositResponse.transactionSuccess()) {
-            // Critical: Refund owner, remove items from chest, return to player
-            economy.depositPlayer(Bukkit(shop.getOwnerUUID()), price);
-            for (ItemStack item : addedToChest) {
-                chestInventory.removeItem(item);
-            }
-            for (ItemStack item : collectedItems) {
-                player.getInventory().addItem(item);
+        // The money has moved, so the items are the owner's now - if the chest
+        // was removed or filled up meanwhile, the overflow is dropped at it
+        Shop stocked = returnToChest(shop, escrow);
+
+        // Record transaction (written to the ledger off the main thread)
+        String sellerName = player != null ? player.getName() : null;
+        plugin.getTradeLedger().record(TradeRecord.of(shop, TradeSide.SELL, playerId, sellerName, amount, price, taxAmount));
+
+        if (player != null) {
+            String limited = payment.units() < bundles ? ChatColor.GRAY + " (all the owner could afford)" : "";
+            player.sendMessage(plugin.getMessage("sale-success",
+                    "{amount}", String.valueOf(amount),
+                    "{item}", formatItemName(shop.getItem()),
+                    "{price}", formatPrice(playerReceives)) + limited);
+        }
+
+        // Money and chest-full alerts are checked off the main thread
+        if (plugin.isAlertsEnabled()) {
+            plugin.getAlertEvaluator().sold(stocked, owner);
+        }
+    }
+
+    /**
+     * Cut escrowed items down to the first keep items. Returns the rest.
+     */
+    private List<ItemStack> splitEscrow(List<ItemStack> escrow, int keep) {
+        List<ItemStack> rest = new ArrayList<>();
+        int kept = 0;
+        int i = 0;
+        for (; i < escrow.size() && kept < keep; i++) {
+            ItemStack item = escrow.get(i);
+            int take = Math.min(item.getAmount(), keep - kept);
+            if (take < item.getAmount()) {
+                ItemStack split = item.clone();
+                split.setAmount(item.getAmount() - take);
+                rest.add(split);
+                item.setAmount(take);
             }
-            player.sendMessage(ChatColor.RED + "Transaction failed: Could not receive payment.");
-            plugin.getLogger().warning("Deposit failed for player " + player.getName() + ": " + depositResponse.errorMessage);
-            return;
+            kept += take;
         }
+        List<ItemStack> tail = escrow.subList(i, escrow.size());
+        rest.addAll(tail);
+        tail.clear();
+        return rest;
+    }
 
-        // Log transaction
-        String taxInfo = taxAmount > 0 ? " (tax: $" + formatPrice(taxAmount) + ")" : "";
-        plugin.getLogger().info("[Transaction] " + player.getName() + " sold " + shop.getAmount() + "x " +
-                shop.getItem().name() + " to " + shop.getOwnerName() + " for $" + formatPrice(playerReceives) + taxInfo);
+    /**
+     * Put escrowed items in the shop chest; anything that no longer fits
+     * (or a missing chest) is dropped at the chest. Returns the shop with its
+     * stock updated.
+     */
+    private Shop returnToChest(Shop shop, List<ItemStack> items) {
+        Inventory chestInventory = chestInventory(shop);
+        int returned = 0;
+        boolean dropped = false;
+        for (ItemStack item : items) {
+            Collection<ItemStack> leftover = chestInventory != null
+                    ? chestInventory.addItem(item).values()
+                    : List.of(item);
+            returned += item.getAmount();
+            for (ItemStack left : leftover) {
+                dropItem(shop.getChestLocation(), left);
+                dropped = true;
+            }
+        }
+        if (chestInventory == null || dropped) {
+            plugin.getShopManager().forgetStock(shop);
+            return shop;
+        }
+        return plugin.getShopManager().tradeStock(shop, chestInventory, returned);
+    }
 
-        player.sendMessage(plugin.getMessage("sale-success",
-                "{amount}", String.valueOf(shop.getAmount()),
-                "{item}", formatItemName(shop.getItem()),
-                "{price}", formatPrice(playerReceives)));
+    /**
+     * Give escrowed items to a player; dropped where they stood if they left
+     * or their inventory filled up meanwhile. Returns true if anything was
+     * dropped.
+     */
+    private boolean returnToPlayer(Player player, Location fallback, List<ItemStack> items) {
+        boolean dropped = false;
+        for (ItemStack item : items) {
+            Collection<ItemStack> leftover = player != null
+                    ? player.getInventory().addItem(item).values()
+                    : List.of(item);
+            for (ItemStack left : leftover) {
+                dropItem(player != null ? player.getLocation() : fallback, left);
+                dropped = true;
+            }
+        }
+        return dropped;
+    }
 
-        // Check money levels and send alerts (chest might be full after sale)
-        if (plugin.isAlertsEnabled()) {
-            checkMoneyAlerts(shop, economy);
-            checkChestFullAlert(shop, chestInventory);
+    private void dropItem(Location location, ItemStack item) {
+        if (location.getWorld() != null) {
+            location.getWorld().dropItemNaturally(location, item);
+        } else {
+            plugin.getLogger().warning("Lost " + item.getAmount() + "x " + item.getType().name()
+                    + " returning trade items: world is not loaded");
         }
     }
 
+    /**
+     * The shop's chest inventory as it is now, or null if the chest is gone
+     */
+    private Inventory chestInventory(Shop shop) {
+        Block chestBlock = shop.getChestBlock();
+        return chestBlock != null && chestBlock.getState() instanceof Chest chest ? chest.getInventory() : null;
+    }
+
     // Helper to get OfflinePlayer for economy transactions
     private org.bukkit.OfflinePlayer Bukkit(java.util.UUID uuid) {
         return org.bukkit.Bukkit.getOfflinePlayer(uuid);
@@ -613,7 +686,7 @@ public class ShopListener implements Listener {
 
         // Check if breaking a shop sign
         if (isSign(block.getType())) {
-            Shop shop = plugin.getShopManager().getShop(block.getLocation());
+            Shop shop = plugin.getShopManager().getShop(block);
             if (shop != null) {
                 // Creative mode doesn't bypass protection unless admin
                 boolean isOwner = player.getUniqueId().equals(shop.getOwnerUUID());
@@ -641,7 +714,7 @@ public class ShopListener implements Listener {
 
         // Check if breaking a shop chest
         if (block.getType() == Material.CHEST || block.getType() == Material.TRAPPED_CHEST) {
-            Shop shop = plugin.getShopManager().getShopByChest(block.getLocation());
+            Shop shop = plugin.getShopManager().getShopByChest(block);
             if (shop != null) {
                 boolean isOwner = player.getUniqueId().equals(shop.getOwnerUUID());
                 boolean isAdmin = player.hasPermission("chestshop.admin");
@@ -656,15 +729,18 @@ public class ShopListener implements Listener {
                         plugin.getHologramManager().removeHologram(shop);
                     }
                     // Also remove the sign
-                    Location signLoc = shop.getSignLocation();
-                    Block signBlock = signLoc.getBlock();
-                    if (isSign(signBlock.getType())) {
+                    Block signBlock = shop.getSignBlock();
+                    if (signBlock != null && isSign(signBlock.getType())) {
                         signBlock.setType(Material.AIR);
                     }
-                    plugin.getShopManager().removeShop(signLoc);
+                    plugin.getShopManager().removeShop(shop.getSignLocation());
                     player.sendMessage(plugin.getMessage("shop-removed"));
                 }
             }
+            if (!event.isCancelled()) {
+                // Breaking half of a double chest shrinks a neighbouring shop chest
+                plugin.getShopManager().chestChanged(block);
+            }
         }
     }
 
@@ -674,8 +750,9 @@ public class ShopListener implements Listener {
     @EventHandler(priority = EventPriority.HIGH)
     public void onBlockBurn(BlockBurnEvent event) {
         Block block = event.getBlock();
+        if (!plugin.getShopManager().hasShopsInChunk(block)) return;
         if (isSign(block.getType())) {
-            if (plugin.getShopManager().getShop(block.getLocation()) != null) {
+            if (plugin.getShopManager().getShop(block) != null) {
                 event.setCancelled(true);
             }
         }
@@ -715,10 +792,11 @@ public class ShopListener implements Listener {
         Iterator<Block> iterator = blocks.iterator();
         while (iterator.hasNext()) {
             Block block = iterator.next();
+            if (!plugin.getShopManager().hasShopsInChunk(block)) continue;
 
             // Protect shop signs
             if (isSign(block.getType())) {
-                Shop shop = plugin.getShopManager().getShop(block.getLocation());
+                Shop shop = plugin.getShopManager().getShop(block);
                 if (shop != null) {
                     iterator.remove();
                     continue;
@@ -727,7 +805,7 @@ public class ShopListener implements Listener {
 
             // Protect shop chests
             if (block.getType() == Material.CHEST || block.getType() == Material.TRAPPED_CHEST) {
-                Shop shop = plugin.getShopManager().getShopByChest(block.getLocation());
+                Shop shop = plugin.getShopManager().getShopByChest(block);
                 if (shop != null) {
                     iterator.remove();
                 }
@@ -748,48 +826,33 @@ public class ShopListener implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGH)
     public void onInventoryMoveItem(InventoryMoveItemEvent event) {
-        InventoryHolder sourceHolder = event.getSource().getHolder();
-
-        // Check if source is a shop chest (items being pulled out)
-        if (sourceHolder instanceof Chest chest) {
-            if (plugin.getShopManager().getShopByChest(chest.getLocation()) != null) {
-                event.setCancelled(true);
-                return;
-            }
+        // Cached per container - the usual non-shop hopper costs a map probe, no BlockState snapshots
+        if (plugin.getShopManager().isShopInventory(event.getSource())
+                || plugin.getShopManager().isShopInventory(event.getDestination())) {
+            event.setCancelled(true);
         }
+    }
 
-        // Check double chests
-        if (sourceHolder instanceof DoubleChest doubleChest) {
-            Chest leftChest = (Chest) doubleChest.getLeftSide();
-            Chest rightChest = (Chest) doubleChest.getRightSide();
-            if (leftChest != null && plugin.getShopManager().getShopByChest(leftChest.getLocation()) != null) {
-                event.setCancelled(true);
-                return;
-            }
-            if (rightChest != null && plugin.getShopManager().getShopByChest(rightChest.getLocation()) != null) {
-                event.setCancelled(true);
-                return;
-            }
+    /**
+     * Recount a shop chest when someone closes it, so items added or taken by
+     * hand show up in the stock cache
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        Inventory inventory = event.getInventory();
+        if (inventory.getType() == InventoryType.CHEST && plugin.getShopManager().isShopInventory(inventory)) {
+            plugin.getShopManager().reconcileStock(inventory);
         }
+    }
 
-        // Also prevent items being pushed INTO shop chests by hoppers (could overflow)
-        InventoryHolder destHolder = event.getDestination().getHolder();
-        if (destHolder instanceof Chest chest) {
-            if (plugin.getShopManager().getShopByChest(chest.getLocation()) != null) {
-                event.setCancelled(true);
-                return;
-            }
-        }
-        if (destHolder instanceof DoubleChest doubleChest) {
-            Chest leftChest = (Chest) doubleChest.getLeftSide();
-            Chest rightChest = (Chest) doubleChest.getRightSide();
-            if (leftChest != null && plugin.getShopManager().getShopByChest(leftChest.getLocation()) != null) {
-                event.setCancelled(true);
-                return;
-            }
-            if (rightChest != null && plugin.getShopManager().getShopByChest(rightChest.getLocation()) != null) {
-                event.setCancelled(true);
-            }
+    /**
+     * A chest placed next to a shop chest turns it into a double chest - recount it
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        Block block = event.getBlockPlaced();
+        if (block.getType() == Material.CHEST || block.getType() == Material.TRAPPED_CHEST) {
+            plugin.getShopManager().chestChanged(block);
         }
     }
 
@@ -825,9 +888,10 @@ public class ShopListener implements Listener {
     @EventHandler(priority = EventPriority.HIGH)
     public void onBlockFromTo(BlockFromToEvent event) {
         Block toBlock = event.getToBlock();
+        if (!plugin.getShopManager().hasShopsInChunk(toBlock)) return;
         // Check if water/lava is flowing into a shop sign
         if (isSign(toBlock.getType())) {
-            if (plugin.getShopManager().getShop(toBlock.getLocation()) != null) {
+            if (plugin.getShopManager().getShop(toBlock) != null) {
                 event.setCancelled(true);
             }
         }
@@ -839,9 +903,10 @@ public class ShopListener implements Listener {
     @EventHandler(priority = EventPriority.HIGH)
     public void onBlockPhysics(BlockPhysicsEvent event) {
         Block block = event.getBlock();
+        if (!plugin.getShopManager().hasShopsInChunk(block)) return;
         // Check if this is a shop sign that's about to be detached
         if (isSign(block.getType())) {
-            Shop shop = plugin.getShopManager().getShop(block.getLocation());
+            Shop shop = plugin.getShopManager().getShop(block);
             if (shop != null) {
                 // Check if the sign would fall (no longer has valid attachment)
                 Block attachedChest = getAttachedChest(block);
@@ -861,11 +926,14 @@ public class ShopListener implements Listener {
      * Check if a block is part of a shop (sign or chest)
      */
     private boolean isShopBlock(Block block) {
+        if (!plugin.getShopManager().hasShopsInChunk(block)) {
+            return false;
+        }
         if (isSign(block.getType())) {
-            return plugin.getShopManager().getShop(block.getLocation()) != null;
+            return plugin.getShopManager().getShop(block) != null;
         }
         if (block.getType() == Material.CHEST || block.getType() == Material.TRAPPED_CHEST) {
-            return plugin.getShopManager().getShopByChest(block.getLocation()) != null;
+            return plugin.getShopManager().getShopByChest(block) != null;
         }
         return false;
     }
@@ -940,36 +1008,33 @@ public class ShopListener implements Listener {
         return collected;
     }
 
-    private boolean canStackItem(Inventory inventory, ItemStack item) {
-        int remaining = item.getAmount();
-        int maxStack = item.getMaxStackSize();
-
-        for (ItemStack stack : inventory.getContents()) {
-            if (stack != null && stack.getType() == item.getType()) {
-                int spaceInStack = maxStack - stack.getAmount();
-                remaining -= spaceInStack;
-                if (remaining <= 0) {
-                    return true;
-                }
+    /**
+     * How many more items of a type fit in the inventory (one pass, ignores metadata)
+     */
+    private int roomFor(Inventory inventory, Material material) {
+        int maxStack = material.getMaxStackSize();
+        int room = 0;
+        for (ItemStack stack : inventory.getStorageContents()) {
+            if (stack == null || stack.getType().isAir()) {
+                room += maxStack;
+            } else if (stack.getType() == material) {
+                room += Math.max(0, maxStack - stack.getAmount());
             }
         }
-        return false;
+        return room;
     }
 
     /**
-     * Check if inventory has enough of a specific item type (ignores metadata)
+     * How many items of a type the inventory holds (ignores metadata)
      */
-    private boolean hasEnoughItems(Inventory inventory, Material material, int amount) {
+    private int countItems(Inventory inventory, Material material) {
         int count = 0;
         for (ItemStack stack : inventory.getContents()) {
             if (stack != null && stack.getType() == material) {
                 count += stack.getAmount();
-                if (count >= amount) {
-                    return true;
-                }
             }
         }
-        return false;
+        return count;
     }
 
     /**
@@ -1032,7 +1097,7 @@ public class ShopListener implements Listener {
         }
 
         // Check if this exact chest already has a shop
-        if (plugin.getShopManager().getShopByChest(chestBlock.getLocation()) != null) {
+        if (plugin.getShopManager().getShopByChest(chestBlock) != null) {
             return true;
         }
 
@@ -1072,96 +1137,4 @@ public class ShopListener implements Listener {
         // If the event was cancelled, the player doesn't have access
         return !testEvent.isCancelled();
     }
-
-    /**
-     * Check stock levels and send alerts to shop owner
-     */
-    private void checkStockAlerts(Shop shop, Inventory chestInventory) {
-        int remaining = countItems(chestInventory, shop.getItem());
-        int threshold = plugin.getLowStockThreshold();
-        String itemName = formatItemName(shop.getItem());
-        String location = formatLocation(shop.getSignLocation());
-
-        if (remaining == 0) {
-            plugin.getAlertManager().sendOutOfStockAlert(
-                    shop.getOwnerUUID(),
-                    shop.getOwnerName(),
-                    itemName,
-                    location
-            );
-        } else if (remaining <= threshold) {
-            plugin.getAlertManager().sendLowStockAlert(
-                    shop.getOwnerUUID(),
-                    shop.getOwnerName(),
-                    itemName,
-                    remaining,
-                    location
-            );
-        }
-    }
-
-    /**
-     * Check owner's balance and send alerts for buy-back shops
-     */
-    private void checkMoneyAlerts(Shop shop, Economy economy) {
-        if (!shop.canSell()) {
-            return; // Only alert for shops that buy items
-        }
-
-        double ownerBalance = economy.getBalance(Bukkit(shop.getOwnerUUID()));
-        double threshold = plugin.getLowMoneyThreshold();
-        String itemName = formatItemName(shop.getItem());
-        String location = formatLocation(shop.getSignLocation());
-
-        if (ownerBalance < threshold) {
-            plugin.getAlertManager().sendLowMoneyAlert(
-                    shop.getOwnerUUID(),
-                    shop.getOwnerName(),
-                    itemName,
-                    ownerBalance,
-                    location
-            );
-        }
-    }
-
-    /**
-     * Check if chest is full and send alert
-     */
-    private void checkChestFullAlert(Shop shop, Inventory chestInventory) {
-        if (chestInventory.firstEmpty() == -1) {
-            // Chest is full - check if it can stack the shop item
-            ItemStack testItem = new ItemStack(shop.getItem(), 1);
-            if (!canStackItem(chestInventory, testItem)) {
-                String itemName = formatItemName(shop.getItem());
-                String location = formatLocation(shop.getSignLocation());
-                plugin.getAlertManager().sendShopFullAlert(
-                        shop.getOwnerUUID(),
-                        shop.getOwnerName(),
-                        itemName,
-                        location
-                );
-            }
-        }
-    }
-
-    /**
-     * Count items of a specific material in an inventory
-     */
-    private int countItems(Inventory inventory, Material material) {
-        int count = 0;
-        for (ItemStack stack : inventory.getContents()) {
-            if (stack != null && stack.getType() == material) {
-                count += stack.getAmount();
-            }
-        }
-        return count;
-    }
-
-    /**
-     * Format location for display in alerts
-     */
-    private String formatLocation(Location loc) {
-        String worldName = loc.getWorld() != null ? loc.getWorld().getName() : "unknown";
-        return worldName + " " + loc.getBlockX() + ", " + loc.getBlockY() + ", " + loc.getBlockZ();
-    }
 }
@@ -0,0 +1,190 @@
+package com.chestshop.managers;
+
+import com.chestshop.ChestShopPlugin;
+import com.chestshop.economy.EconomyGateway;
+import com.chestshop.economy.TransactionEngine;
+import com.chestshop.models.AlertType;
+import com.chestshop.models.Shop;
+import com.chestshop.models.TradeSide;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Checks alert thresholds after trades, off the trade path.
+ *
+ * A completed trade only appends its updated shop handle to a list (main
+ * thread). Once a second that list is handed to the economy thread, which
+ * keeps the latest state of each traded shop, looks up each owner's balance
+ * once for shops that buy, and works out which alerts are due. Only those
+ * come back to the main thread, where {@link AlertManager} applies cooldowns
+ * and delivers them. While a batch is out, new trades wait for the next one.
+ */
+public class AlertEvaluator {
+
+    private static final long INTERVAL_TICKS = 20;
+
+    // A completed trade. owner is only set for sales (whose owner paid)
+    private record TradeEvent(Shop shop, TradeSide side, OfflinePlayer owner) {}
+
+    // An alert that is due
+    private record Due(Shop shop, AlertType type, double value) {}
+
+    // Every trade on one shop in a batch, merged (economy thread)
+    private static final class ShopTrades {
+        Shop shop;
+        boolean bought;
+        OfflinePlayer payingOwner; // Set if anything was sold
+    }
+
+    private final ChestShopPlugin plugin;
+    private List<TradeEvent> pending = new ArrayList<>();
+    private boolean evaluating; // A batch is out on the economy thread
+    private int taskId = -1;
+
+    public AlertEvaluator(ChestShopPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        if (taskId == -1) {
+            taskId = Bukkit.getScheduler().runTaskTimer(plugin, this::dispatch, INTERVAL_TICKS, INTERVAL_TICKS).getTaskId();
+        }
+    }
+
+    /**
+     * A player bought from the shop (main thread). shop is its handle after the trade.
+     */
+    public void bought(Shop shop) {
+        pending.add(new TradeEvent(shop, TradeSide.BUY, null));
+    }
+
+    /**
+     * A player sold to the shop, paid by owner (main thread). shop is its handle after the trade.
+     */
+    public void sold(Shop shop, OfflinePlayer owner) {
+        pending.add(new TradeEvent(shop, TradeSide.SELL, owner));
+    }
+
+    /**
+     * Stop the timer and evaluate the last trades inline (main thread, on
+     * disable, after the economy thread has finished)
+     */
+    public void shutdown() {
+        if (taskId != -1) {
+            Bukkit.getScheduler().cancelTask(taskId);
+            taskId = -1;
+        }
+        if (!pending.isEmpty()) {
+            List<TradeEvent> batch = pending;
+            pending = new ArrayList<>();
+            deliver(evaluate(batch, plugin.getTransactionEngine().getEconomy(),
+                    plugin.getLowStockThreshold(), plugin.getLowMoneyThreshold()));
+        }
+    }
+
+    /**
+     * Hand the trades since the last batch to the economy thread
+     */
+    private void dispatch() {
+        if (evaluating || pending.isEmpty()) {
+            return;
+        }
+        List<TradeEvent> batch = pending;
+        pending = new ArrayList<>();
+        evaluating = true;
+        TransactionEngine engine = plugin.getTransactionEngine();
+        int lowStock = plugin.getLowStockThreshold();
+        double lowMoney = plugin.getLowMoneyThreshold();
+        engine.submit(() -> evaluate(batch, engine.getEconomy(), lowStock, lowMoney), due -> {
+            try {
+                if (due != null) { // Null if evaluating threw - that batch is dropped
+                    deliver(due);
+                }
+            } finally {
+                evaluating = false;
+            }
+        });
+    }
+
+    /**
+     * Work out the alerts due for a batch (economy thread). A shop traded on
+     * several times is checked once, on its latest state, and each owner's
+     * balance is looked up once.
+     */
+    private List<Due> evaluate(List<TradeEvent> batch, EconomyGateway economy, int lowStock, double lowMoney) {
+        Map<Integer, ShopTrades> byShop = new LinkedHashMap<>();
+        for (TradeEvent trade : batch) {
+            ShopTrades merged = byShop.computeIfAbsent(trade.shop().getId(), k -> new ShopTrades());
+            merged.shop = trade.shop();
+            if (trade.side() == TradeSide.BUY) {
+                merged.bought = true;
+            } else {
+                merged.payingOwner = trade.owner();
+            }
+        }
+
+        List<Due> due = new ArrayList<>();
+        Map<UUID, Double> balances = new HashMap<>();
+        for (ShopTrades trades : byShop.values()) {
+            Shop shop = trades.shop;
+            if (trades.bought && shop.getStock() >= 0) { // Not counted if the shop was removed mid-trade
+                if (shop.getStock() == 0) {
+                    due.add(new Due(shop, AlertType.OUT_OF_STOCK, 0));
+                } else if (shop.getStock() <= lowStock) {
+                    due.add(new Due(shop, AlertType.LOW_STOCK, shop.getStock()));
+                }
+            }
+            if (trades.payingOwner == null) {
+                continue;
+            }
+            if (shop.canSell()) {
+                double balance = balances.computeIfAbsent(shop.getOwnerUUID(), k -> balance(economy, trades.payingOwner));
+                if (balance < lowMoney) {
+                    due.add(new Due(shop, AlertType.LOW_MONEY, balance));
+                }
+            }
+            // Full once the chest can't take a single item: no empty slot and no stack with room
+            if (shop.getSpace() == 0) {
+                due.add(new Due(shop, AlertType.SHOP_FULL, 0));
+            }
+        }
+        return due;
+    }
+
+    private double balance(EconomyGateway economy, OfflinePlayer owner) {
+        try {
+            return economy.getBalance(owner);
+        } catch (RuntimeException e) {
+            plugin.getLogger().warning("Balance lookup for alerts failed: " + e.getMessage());
+            return Double.NaN; // Never below the threshold
+        }
+    }
+
+    /**
+     * Send the alerts that are due (main thread), unless their shop is gone or changed since
+     */
+    private void deliver(List<Due> due) {
+        AlertManager alerts = plugin.getAlertManager();
+        for (Due alert : due) {
+            Shop shop = plugin.getShopManager().getShopById(alert.shop().getId());
+            if (shop == null || shop.getItem() != alert.shop().getItem()
+                    || !shop.getOwnerUUID().equals(alert.shop().getOwnerUUID())) {
+                continue;
+            }
+            switch (alert.type()) {
+                case LOW_STOCK -> alerts.sendLowStockAlert(shop, (int) alert.value());
+                case OUT_OF_STOCK -> alerts.sendOutOfStockAlert(shop);
+                case SHOP_FULL -> alerts.sendShopFullAlert(shop);
+                case LOW_MONEY -> alerts.sendLowMoneyAlert(shop, alert.value());
+                case MESSAGE -> { } // Not raised by trades
+            }
+        }
+    }
+}
@@ -1,167 +1,151 @@
 package com.chestshop.managers;
 
 import com.chestshop.ChestShopPlugin;
+import com.chestshop.models.AlertType;
+import com.chestshop.models.Shop;
+import com.chestshop.models.ShopAlert;
+import com.chestshop.storage.AlertLog;
+import com.chestshop.storage.PendingAlerts;
+import com.chestshop.util.ExpiringLongSet;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.JoinConfiguration;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.Material;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Manages stock and money alerts for shop owners
+ * Manages stock and money alerts for shop owners.
+ *
+ * Alerts for offline owners are kept as {@link ShopAlert} records, at most
+ * one per shop and alert type and at most alerts.max-pending-per-owner per
+ * owner, and only turned into chat text when the owner logs in. They are
+ * persisted through an {@link AlertLog}, which appends each change off the
+ * main thread. In digest mode, alerts for online owners are also held for a
+ * window and then sent as one summary.
  */
 public class AlertManager {
 
     private final ChestShopPlugin plugin;
-    private final File alertsFile;
-    private FileConfiguration alertsConfig;
+    private final AlertLog alertLog;
 
-    // In-memory cache of pending alerts for offline players
-    private final Map<UUID, List<String>> pendingAlerts = new HashMap<>();
+    // Pending alerts for offline players (one per shop and type, capped per owner)
+    private final PendingAlerts pendingAlerts;
+    private final Map<Material, String> itemNameCache = new HashMap<>();
 
-    // Cooldown tracking to prevent alert spam (shop location -> last alert time)
-    private final Map<String, Long> alertCooldowns = new HashMap<>();
+    // Digest mode: alerts held for online owners until their window ends
+    private final PendingAlerts digestAlerts = new PendingAlerts(Integer.MAX_VALUE);
+    private static final int DIGEST_HOVER_LINES = 20;
+
+    // Cooldown tracking to prevent alert spam (shop id and alert type, expiring on their own)
     private static final long ALERT_COOLDOWN_MS = 5 * 60 * 1000L; // 5 minutes
+    private final ExpiringLongSet alertCooldowns = new ExpiringLongSet(TimeUnit.MILLISECONDS.toNanos(ALERT_COOLDOWN_MS));
 
     public AlertManager(ChestShopPlugin plugin) {
         this.plugin = plugin;
-        this.alertsFile = new File(plugin.getDataFolder(), "alerts.yml");
+        this.pendingAlerts = new PendingAlerts(plugin.getMaxPendingAlerts());
+        this.alertLog = new AlertLog(new File(plugin.getDataFolder(), "alerts.log"), plugin.getLogger(), plugin.getMaxPendingAlerts());
         loadAlerts();
+        alertLog.start();
     }
 
     /**
-     * Check if an alert is on cooldown for a specific shop
+     * Send a low stock alert to the shop owner
      */
-    private boolean isOnCooldown(String shopKey) {
-        // Periodically clean up expired entries to prevent memory leak
-        if (alertCooldowns.size() > 100) {
-            cleanupExpiredCooldowns();
-        }
-
-        Long lastAlert = alertCooldowns.get(shopKey);
-        if (lastAlert == null) {
-            return false;
-        }
-        return (System.currentTimeMillis() - lastAlert) < ALERT_COOLDOWN_MS;
+    public void sendLowStockAlert(Shop shop, int remaining) {
+        sendAlert(shop, AlertType.LOW_STOCK, remaining);
     }
 
     /**
-     * Mark an alert as sent for cooldown tracking
+     * Send a low money alert to the shop owner (for buy shops)
      */
-    private void markAlertSent(String shopKey) {
-        alertCooldowns.put(shopKey, System.currentTimeMillis());
+    public void sendLowMoneyAlert(Shop shop, double balance) {
+        sendAlert(shop, AlertType.LOW_MONEY, balance);
     }
 
     /**
-     * Remove expired cooldown entries to prevent memory leak
+     * Send an out of stock alert
      */
-    private void cleanupExpiredCooldowns() {
-        long now = System.currentTimeMillis();
-        alertCooldowns.entrySet().removeIf(entry ->
-                (now - entry.getValue()) >= ALERT_COOLDOWN_MS);
+    public void sendOutOfStockAlert(Shop shop) {
+        sendAlert(shop, AlertType.OUT_OF_STOCK, 0);
     }
 
     /**
-     * Send a low stock alert to the shop owner
+     * Send a shop full alert (can't accept more items)
      */
-    public void sendLowStockAlert(UUID ownerUUID, String ownerName, String itemName, int remaining, String shopLocation) {
-        String cooldownKey = "stock:" + shopLocation;
-        if (isOnCooldown(cooldownKey)) {
-            return; // Skip - already alerted recently
-        }
-
-        String message = ChatColor.YELLOW + "⚠ " + ChatColor.GOLD + "Low Stock Alert: " +
-                ChatColor.WHITE + "Your " + ChatColor.AQUA + itemName + ChatColor.WHITE +
-                " shop only has " + ChatColor.RED + remaining + ChatColor.WHITE + " items left!" +
-                ChatColor.GRAY + " (" + shopLocation + ")";
-
-        sendAlert(ownerUUID, message);
-        markAlertSent(cooldownKey);
+    public void sendShopFullAlert(Shop shop) {
+        sendAlert(shop, AlertType.SHOP_FULL, 0);
     }
 
     /**
-     * Send a low money alert to the shop owner (for buy shops)
+     * Send an alert - immediately if online, or save for later
      */
-    public void sendLowMoneyAlert(UUID ownerUUID, String ownerName, String itemName, double balance, String shopLocation) {
-        String cooldownKey = "money:" + shopLocation;
-        if (isOnCooldown(cooldownKey)) {
+    private void sendAlert(Shop shop, AlertType type, double value) {
+        if (!alertCooldowns.add(ShopAlert.key(type, shop.getId()), System.nanoTime())) {
             return; // Skip - already alerted recently
         }
 
-        String message = ChatColor.YELLOW + "⚠ " + ChatColor.GOLD + "Low Funds Alert: " +
-                ChatColor.WHITE + "You only have " + ChatColor.RED + "$" + String.format("%.2f", balance) +
-                ChatColor.WHITE + " to buy items at your " + ChatColor.AQUA + itemName + ChatColor.WHITE + " shop!" +
-                ChatColor.GRAY + " (" + shopLocation + ")";
-
-        sendAlert(ownerUUID, message);
-        markAlertSent(cooldownKey);
-    }
-
-    /**
-     * Send an out of stock alert
-     */
-    public void sendOutOfStockAlert(UUID ownerUUID, String ownerName, String itemName, String shopLocation) {
-        String cooldownKey = "outofstock:" + shopLocation;
-        if (isOnCooldown(cooldownKey)) {
-            return; // Skip - already alerted recently
+        ShopAlert alert = ShopAlert.of(type, shop, value);
+        Player owner = Bukkit.getPlayer(shop.getOwnerUUID());
+        if (owner != null && owner.isOnline()) {
+            if (plugin.isAlertDigestEnabled()) {
+                queueDigest(owner.getUniqueId(), alert); // Sent with the others when the window ends
+            } else {
+                owner.sendMessage(render(alert, shop)); // Owner is online - send immediately
+            }
+        } else {
+            // Owner is offline - save for later (replacing an older alert of this type for the shop)
+            pendingAlerts.add(shop.getOwnerUUID(), alert);
+            alertLog.append(shop.getOwnerUUID(), alert);
         }
-
-        String message = ChatColor.RED + "⚠ " + ChatColor.DARK_RED + "Out of Stock: " +
-                ChatColor.WHITE + "Your " + ChatColor.AQUA + itemName + ChatColor.WHITE +
-                " shop is now " + ChatColor.RED + "OUT OF STOCK" + ChatColor.WHITE + "!" +
-                ChatColor.GRAY + " (" + shopLocation + ")";
-
-        sendAlert(ownerUUID, message);
-        markAlertSent(cooldownKey);
     }
 
     /**
-     * Send a shop full alert (can't accept more items)
+     * Hold an alert for the owner's next digest, starting its window if this is the first
      */
-    public void sendShopFullAlert(UUID ownerUUID, String ownerName, String itemName, String shopLocation) {
-        String cooldownKey = "full:" + shopLocation;
-        if (isOnCooldown(cooldownKey)) {
-            return; // Skip - already alerted recently
+    private void queueDigest(UUID ownerUUID, ShopAlert alert) {
+        boolean first = digestAlerts.count(ownerUUID) == 0;
+        digestAlerts.add(ownerUUID, alert);
+        if (first) {
+            Bukkit.getScheduler().runTaskLater(plugin, () -> flushDigest(ownerUUID),
+                    plugin.getAlertDigestSeconds() * 20L);
         }
-
-        String message = ChatColor.YELLOW + "⚠ " + ChatColor.GOLD + "Shop Full: " +
-                ChatColor.WHITE + "Your " + ChatColor.AQUA + itemName + ChatColor.WHITE +
-                " shop chest is " + ChatColor.YELLOW + "FULL" + ChatColor.WHITE + " and can't accept more items!" +
-                ChatColor.GRAY + " (" + shopLocation + ")";
-
-        sendAlert(ownerUUID, message);
-        markAlertSent(cooldownKey);
     }
 
     /**
-     * Send an alert - immediately if online, or save for later
+     * End an owner's digest window: send the summary, or keep the alerts for
+     * the next login if they left in the meantime
      */
-    private void sendAlert(UUID ownerUUID, String message) {
+    private void flushDigest(UUID ownerUUID) {
+        List<ShopAlert> alerts = digestAlerts.remove(ownerUUID);
+        if (alerts == null) {
+            return;
+        }
         Player owner = Bukkit.getPlayer(ownerUUID);
-
         if (owner != null && owner.isOnline()) {
-            // Owner is online - send immediately
-            owner.sendMessage(message);
+            sendDigest(owner, alerts);
         } else {
-            // Owner is offline - save for later
-            saveAlertForLater(ownerUUID, message);
+            saveForLater(ownerUUID, alerts);
         }
     }
 
-    /**
-     * Save an alert for when the player logs in
-     */
-    private void saveAlertForLater(UUID playerUUID, String message) {
-        pendingAlerts.computeIfAbsent(playerUUID, k -> new ArrayList<>()).add(message);
-        saveAlerts();
+    private void saveForLater(UUID ownerUUID, List<ShopAlert> alerts) {
+        for (ShopAlert alert : alerts) {
+            pendingAlerts.add(ownerUUID, alert);
+            alertLog.append(ownerUUID, alert);
+        }
     }
 
     /**
@@ -169,79 +153,217 @@ public class AlertManager {
      */
     public void showPendingAlerts(Player player) {
         UUID playerUUID = player.getUniqueId();
-        List<String> alerts = pendingAlerts.remove(playerUUID);
+        List<ShopAlert> alerts = pendingAlerts.remove(playerUUID);
 
         if (alerts != null && !alerts.isEmpty()) {
             // Delay slightly so other login messages appear first
             Bukkit.getScheduler().runTaskLater(plugin, () -> {
+                if (plugin.isAlertDigestEnabled()) {
+                    sendDigest(player, alerts);
+                    return;
+                }
+                List<String> messages = new ArrayList<>(alerts.size());
+                for (ShopAlert alert : alerts) {
+                    String message = renderIfCurrent(playerUUID, alert);
+                    if (message != null) {
+                        messages.add(message);
+                    }
+                }
+                if (messages.isEmpty()) {
+                    return; // Every alert was for a shop that is gone
+                }
                 player.sendMessage("");
                 player.sendMessage(ChatColor.GOLD + "╔════════════════════════════════════╗");
-                player.sendMessage(ChatColor.GOLD + "║ " + ChatColor.YELLOW + "       📦 Shop Alerts (" + alerts.size() + ")" + ChatColor.GOLD + "         ║");
+                player.sendMessage(ChatColor.GOLD + "║ " + ChatColor.YELLOW + "       📦 Shop Alerts (" + messages.size() + ")" + ChatColor.GOLD + "         ║");
                 player.sendMessage(ChatColor.GOLD + "╚════════════════════════════════════╝");
 
-                for (String alert : alerts) {
-                    player.sendMessage(alert);
+                for (String message : messages) {
+                    player.sendMessage(message);
                 }
 
                 player.sendMessage("");
             }, 20L); // 1 second delay
 
-            saveAlerts();
+            alertLog.clear(playerUUID);
+        }
+    }
+
+    /**
+     * One summary line per batch of alerts ("7 shops low on stock, 3 out of
+     * stock") with every alert listed in its hover text
+     */
+    private void sendDigest(Player player, List<ShopAlert> alerts) {
+        int[] counts = new int[AlertType.values().length];
+        List<Component> details = new ArrayList<>();
+        int shown = 0;
+        for (ShopAlert alert : alerts) {
+            String message = renderIfCurrent(player.getUniqueId(), alert);
+            if (message == null) {
+                continue;
+            }
+            counts[alert.type().ordinal()]++;
+            shown++;
+            if (details.size() < DIGEST_HOVER_LINES) {
+                details.add(LegacyComponentSerializer.legacySection().deserialize(message));
+            }
+        }
+        if (shown == 0) {
+            return; // Every alert was for a shop that is gone
+        }
+        if (shown > details.size()) {
+            details.add(Component.text("... and " + (shown - details.size()) + " more", NamedTextColor.GRAY));
+        }
+
+        Component summary = Component.text("⚠ ", NamedTextColor.YELLOW)
+                .append(Component.text("Shop Alerts: ", NamedTextColor.GOLD))
+                .append(Component.text(summarize(counts), NamedTextColor.WHITE))
+                .append(Component.text(" (hover for details)", NamedTextColor.GRAY))
+                .hoverEvent(HoverEvent.showText(Component.join(JoinConfiguration.newlines(), details)));
+        plugin.getAdventure().player(player).sendMessage(summary);
+    }
+
+    private static String summarize(int[] counts) {
+        StringBuilder text = new StringBuilder();
+        for (AlertType type : AlertType.values()) {
+            int count = counts[type.ordinal()];
+            if (count == 0) {
+                continue;
+            }
+            String noun = type == AlertType.MESSAGE || !text.isEmpty() ? "" : (count == 1 ? " shop" : " shops");
+            if (!text.isEmpty()) {
+                text.append(", ");
+            }
+            text.append(count).append(noun).append(switch (type) {
+                case LOW_STOCK -> " low on stock";
+                case OUT_OF_STOCK -> " out of stock";
+                case SHOP_FULL -> " full";
+                case LOW_MONEY -> " low on funds";
+                case MESSAGE -> count == 1 ? " older alert" : " older alerts";
+            });
         }
+        return text.toString();
+    }
+
+    /**
+     * Render a saved alert, or null if its shop was removed or replaced since
+     */
+    private String renderIfCurrent(UUID ownerUUID, ShopAlert alert) {
+        if (alert.type() == AlertType.MESSAGE) {
+            return alert.message();
+        }
+        Shop shop = plugin.getShopManager().getShopById(alert.shopId());
+        if (shop == null || shop.getItem() != alert.item() || !shop.getOwnerUUID().equals(ownerUUID)) {
+            return null;
+        }
+        return render(alert, shop);
+    }
+
+    private String render(ShopAlert alert, Shop shop) {
+        String itemName = formatItemName(alert.item());
+        String shopLocation = formatLocation(shop);
+        return switch (alert.type()) {
+            case LOW_STOCK -> ChatColor.YELLOW + "⚠ " + ChatColor.GOLD + "Low Stock Alert: " +
+                    ChatColor.WHITE + "Your " + ChatColor.AQUA + itemName + ChatColor.WHITE +
+                    " shop only has " + ChatColor.RED + (int) alert.value() + ChatColor.WHITE + " items left!" +
+                    ChatColor.GRAY + " (" + shopLocation + ")";
+            case LOW_MONEY -> ChatColor.YELLOW + "⚠ " + ChatColor.GOLD + "Low Funds Alert: " +
+                    ChatColor.WHITE + "You only have " + ChatColor.RED + "$" + String.format("%.2f", alert.value()) +
+                    ChatColor.WHITE + " to buy items at your " + ChatColor.AQUA + itemName + ChatColor.WHITE + " shop!" +
+                    ChatColor.GRAY + " (" + shopLocation + ")";
+            case OUT_OF_STOCK -> ChatColor.RED + "⚠ " + ChatColor.DARK_RED + "Out of Stock: " +
+                    ChatColor.WHITE + "Your " + ChatColor.AQUA + itemName + ChatColor.WHITE +
+                    " shop is now " + ChatColor.RED + "OUT OF STOCK" + ChatColor.WHITE + "!" +
+                    ChatColor.GRAY + " (" + shopLocation + ")";
+            case SHOP_FULL -> ChatColor.YELLOW + "⚠ " + ChatColor.GOLD + "Shop Full: " +
+                    ChatColor.WHITE + "Your " + ChatColor.AQUA + itemName + ChatColor.WHITE +
+                    " shop chest is " + ChatColor.YELLOW + "FULL" + ChatColor.WHITE + " and can't accept more items!" +
+                    ChatColor.GRAY + " (" + shopLocation + ")";
+            case MESSAGE -> alert.message();
+        };
+    }
+
+    private String formatLocation(Shop shop) {
+        return shop.getSignWorldName() + " " + shop.getSignX() + ", " + shop.getSignY() + ", " + shop.getSignZ();
+    }
+
+    private String formatItemName(Material material) {
+        return itemNameCache.computeIfAbsent(material, m -> {
+            String name = m.name().toLowerCase().replace("_", " ");
+            String[] words = name.split(" ");
+            StringBuilder result = new StringBuilder();
+            for (String word : words) {
+                if (!word.isEmpty()) {
+                    result.append(Character.toUpperCase(word.charAt(0)))
+                            .append(word.substring(1)).append(" ");
+                }
+            }
+            return result.toString().trim();
+        });
     }
 
     /**
      * Check if a player has pending alerts
      */
     public boolean hasPendingAlerts(UUID playerUUID) {
-        List<String> alerts = pendingAlerts.get(playerUUID);
-        return alerts != null && !alerts.isEmpty();
+        return pendingAlerts.count(playerUUID) > 0;
     }
 
     /**
      * Get the count of pending alerts for a player
      */
     public int getPendingAlertCount(UUID playerUUID) {
-        List<String> alerts = pendingAlerts.get(playerUUID);
-        return alerts != null ? alerts.size() : 0;
+        return pendingAlerts.count(playerUUID);
     }
 
     /**
      * Clear all alerts for a player
      */
     public void clearAlerts(UUID playerUUID) {
-        pendingAlerts.remove(playerUUID);
-        saveAlerts();
+        if (pendingAlerts.remove(playerUUID) != null) {
+            alertLog.clear(playerUUID);
+        }
     }
 
     /**
-     * Save alerts to file
+     * Write out queued alert changes and stop the writer (on disable)
      */
     public void saveAlerts() {
-        alertsConfig = new YamlConfiguration();
+        // Undelivered digests are shown at the next login instead
+        digestAlerts.forEach((owner, alert) -> {
+            pendingAlerts.add(owner, alert);
+            alertLog.append(owner, alert);
+        });
+        alertLog.close();
+    }
 
-        for (Map.Entry<UUID, List<String>> entry : pendingAlerts.entrySet()) {
-            String path = "alerts." + entry.getKey().toString();
-            alertsConfig.set(path, entry.getValue());
+    /**
+     * Load pending alerts from the log, or from alerts.yml the first time
+     */
+    private void loadAlerts() {
+        boolean logExisted = new File(plugin.getDataFolder(), "alerts.log").exists();
+        alertLog.load(pendingAlerts);
+
+        // A leftover alerts.yml next to an existing log was already imported
+        File legacyFile = new File(plugin.getDataFolder(), "alerts.yml");
+        if (legacyFile.exists()) {
+            PendingAlerts legacy = new PendingAlerts(plugin.getMaxPendingAlerts());
+            if (!logExisted) {
+                loadLegacyAlerts(legacyFile, legacy);
+            }
+            pendingAlerts.addAll(legacy);
+            alertLog.importAlerts(legacy, legacyFile);
         }
 
-        try {
-            plugin.getDataFolder().mkdirs();
-            alertsConfig.save(alertsFile);
-        } catch (IOException e) {
-            plugin.getLogger().warning("Failed to save alerts: " + e.getMessage());
+        if (!pendingAlerts.isEmpty()) {
+            plugin.getLogger().info("Loaded " + pendingAlerts.size() + " pending alerts for " + pendingAlerts.owners() + " shop owners.");
         }
     }
 
     /**
-     * Load alerts from file
+     * Read alerts.yml from before the alert log (text alerts; repeats collapse into one)
      */
-    public void loadAlerts() {
-        if (!alertsFile.exists()) {
-            return;
-        }
-
-        alertsConfig = YamlConfiguration.loadConfiguration(alertsFile);
+    private void loadLegacyAlerts(File legacyFile, PendingAlerts alerts) {
+        YamlConfiguration alertsConfig = YamlConfiguration.loadConfiguration(legacyFile);
 
         if (alertsConfig.getConfigurationSection("alerts") == null) {
             return;
@@ -250,15 +372,12 @@ public class AlertManager {
         for (String uuidString : alertsConfig.getConfigurationSection("alerts").getKeys(false)) {
             try {
                 UUID playerUUID = UUID.fromString(uuidString);
-                List<String> alerts = alertsConfig.getStringList("alerts." + uuidString);
-                if (!alerts.isEmpty()) {
-                    pendingAlerts.put(playerUUID, new ArrayList<>(alerts));
+                for (String message : alertsConfig.getStringList("alerts." + uuidString)) {
+                    alerts.add(playerUUID, ShopAlert.message(message, 0));
                 }
             } catch (IllegalArgumentException e) {
                 plugin.getLogger().warning("Invalid UUID in alerts file: " + uuidString);
             }
         }
-
-        plugin.getLogger().info("Loaded " + pendingAlerts.size() + " pending alert queues.");
     }
 }
@@ -0,0 +1,151 @@
+package com.chestshop.managers;
+
+import com.chestshop.ChestShopPlugin;
+import com.chestshop.storage.SnapshotFile;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Items already paid for whose buyer logged off before the payment came back
+ * from the economy thread. They are held here (deliveries.yml) and handed
+ * over at the buyer's next login, so a completed payment never has to be
+ * reversed. Changes are serialized on the main thread and written by a
+ * writer thread; the file is small and only changes in that rare case.
+ */
+public class DeliveryManager {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final ChestShopPlugin plugin;
+    private final SnapshotFile file;
+    private final Map<UUID, List<ItemStack>> held = new LinkedHashMap<>();
+    private final ExecutorService writer;
+
+    public DeliveryManager(ChestShopPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new SnapshotFile(new File(plugin.getDataFolder(), "deliveries.yml"), SnapshotFile.Format.TEXT, 1);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ChestShop-Deliveries-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        load();
+    }
+
+    /**
+     * Keep paid-for items until the buyer next logs in (main thread)
+     */
+    public void hold(UUID buyer, Collection<ItemStack> items) {
+        List<ItemStack> pending = held.computeIfAbsent(buyer, k -> new ArrayList<>());
+        for (ItemStack item : items) {
+            pending.add(item.clone());
+        }
+        save();
+    }
+
+    /**
+     * Hand over anything held for a player who just logged in. Whatever
+     * doesn't fit is dropped at their feet.
+     */
+    public void deliver(Player player) {
+        List<ItemStack> items = held.remove(player.getUniqueId());
+        if (items == null) {
+            return;
+        }
+        save();
+        int amount = 0;
+        boolean dropped = false;
+        Location location = player.getLocation();
+        for (ItemStack item : items) {
+            amount += item.getAmount();
+            for (ItemStack left : player.getInventory().addItem(item).values()) {
+                if (location.getWorld() != null) {
+                    location.getWorld().dropItemNaturally(location, left);
+                }
+                dropped = true;
+            }
+        }
+        player.sendMessage(ChatColor.GREEN + "You received " + amount + " items you bought just before logging off."
+                + (dropped ? ChatColor.YELLOW + " Your inventory was full - the rest is at your feet." : ""));
+    }
+
+    /**
+     * Write outstanding changes and stop the writer (main thread, on disable)
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Delivery writer did not finish in time - held items may be lost!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void save() {
+        YamlConfiguration config = new YamlConfiguration();
+        held.forEach((buyer, items) -> config.set(buyer.toString(), new ArrayList<>(items)));
+        String yaml = config.saveToString();
+        if (writer.isShutdown()) {
+            write(yaml); // During shutdown, e.g. trades completed by TransactionEngine.shutdown
+        } else {
+            writer.execute(() -> write(yaml));
+        }
+    }
+
+    private void write(String yaml) {
+        try {
+            file.write(yaml.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to save held deliveries: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        try {
+            YamlConfiguration config = file.read(data -> {
+                YamlConfiguration yaml = new YamlConfiguration();
+                try {
+                    yaml.loadFromString(StandardCharsets.UTF_8.decode(data).toString());
+                } catch (InvalidConfigurationException e) {
+                    throw new IOException("invalid YAML: " + e.getMessage(), e);
+                }
+                return yaml;
+            }, plugin.getLogger());
+            if (config == null) {
+                return;
+            }
+            for (String key : config.getKeys(false)) {
+                List<ItemStack> items = new ArrayList<>();
+                for (Object item : config.getList(key, List.of())) {
+                    if (item instanceof ItemStack stack) {
+                        items.add(stack);
+                    }
+                }
+                if (!items.isEmpty()) {
+                    held.put(UUID.fromString(key), items);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            plugin.getLogger().severe("Failed to load held deliveries: " + e.getMessage());
+        }
+    }
+}
@@ -64,10 +64,8 @@ public class HologramManager {
 
         try {
             String hologramId = getHologramId(shop);
-            Location chestLoc = shop.getChestLocation();
-
             // Position hologram above the chest (centered, 2.5 blocks up)
-            Location holoLoc = chestLoc.clone().add(0.5, 2.5, 0.5);
+            Location holoLoc = shop.getChestLocation().add(0.5, 2.5, 0.5);
 
             // Build hologram lines
             java.util.List<String> lines = new java.util.ArrayList<>();
@@ -192,7 +190,7 @@ public class HologramManager {
      * Generate a unique ID for a shop hologram
      */
     private String getHologramId(Shop shop) {
-        return locationToId(shop.getSignLocation());
+        return "chestshop_" + shop.getSignWorldName() + "_" + shop.getSignX() + "_" + shop.getSignY() + "_" + shop.getSignZ();
     }
 
     private String locationToId(Location loc) {
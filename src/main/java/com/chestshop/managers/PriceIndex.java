@@ -0,0 +1,230 @@
+package com.chestshop.managers;
+
+import com.chestshop.models.Shop;
+import com.chestshop.models.TradeSide;
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shop ids per item, kept sorted by price: cheapest buy price first, and
+ * highest sell price first. Each order is kept for all worlds and per world.
+ *
+ * Lists are updated in place on add/remove (binary search + array shift). A
+ * list filled by a bulk load is only sorted once, on its first query. Pages
+ * are read by offset, so a page costs O(pageSize). Each item has a version
+ * that changes whenever its lists do. Main thread only.
+ */
+final class PriceIndex {
+
+    private final ShopTable table;
+    private final Map<Material, ItemPrices> items = new EnumMap<>(Material.class);
+    private final long[] versions = new long[Material.values().length];
+    private long versionCounter;
+
+    /**
+     * Sorted lists for one item: [side] for all worlds, and per world
+     */
+    private final class ItemPrices {
+        final SortedIds[] all = {new SortedIds(TradeSide.BUY), new SortedIds(TradeSide.SELL)};
+        final Map<String, SortedIds[]> byWorld = new HashMap<>();
+
+        SortedIds[] world(String world) {
+            return byWorld.computeIfAbsent(world, k -> new SortedIds[] {new SortedIds(TradeSide.BUY), new SortedIds(TradeSide.SELL)});
+        }
+    }
+
+    PriceIndex(ShopTable table) {
+        this.table = table;
+    }
+
+    void add(int id) {
+        Material item = table.item(id);
+        ItemPrices prices = items.computeIfAbsent(item, k -> new ItemPrices());
+        SortedIds[] world = prices.world(table.signWorld(id));
+        if (table.buyPrice(id) > 0) {
+            prices.all[TradeSide.BUY.ordinal()].add(id);
+            world[TradeSide.BUY.ordinal()].add(id);
+        }
+        if (table.sellPrice(id) > 0) {
+            prices.all[TradeSide.SELL.ordinal()].add(id);
+            world[TradeSide.SELL.ordinal()].add(id);
+        }
+        versions[item.ordinal()] = ++versionCounter;
+    }
+
+    /**
+     * Must run while the id's columns are still in the table
+     */
+    void remove(int id) {
+        Material item = table.item(id);
+        ItemPrices prices = items.get(item);
+        if (prices == null) {
+            return;
+        }
+        String worldName = table.signWorld(id);
+        SortedIds[] world = prices.byWorld.get(worldName);
+        for (TradeSide side : TradeSide.values()) {
+            prices.all[side.ordinal()].remove(id);
+            if (world != null) {
+                world[side.ordinal()].remove(id);
+            }
+        }
+        if (world != null && world[0].size == 0 && world[1].size == 0) {
+            prices.byWorld.remove(worldName);
+        }
+        if (prices.all[0].size == 0 && prices.all[1].size == 0) {
+            items.remove(item);
+        }
+        versions[item.ordinal()] = ++versionCounter;
+    }
+
+    /**
+     * Bump the item's version without changing its lists (e.g. stock counts changed)
+     */
+    void touch(Material item) {
+        versions[item.ordinal()] = ++versionCounter;
+    }
+
+    void clear() {
+        items.clear();
+        Arrays.fill(versions, ++versionCounter);
+    }
+
+    /**
+     * Changes whenever the shops for this item change (never repeats)
+     */
+    long version(Material item) {
+        return versions[item.ordinal()];
+    }
+
+    /**
+     * Number of shops trading the item on this side (world may be null for all worlds)
+     */
+    int count(Material item, TradeSide side, String world) {
+        SortedIds ids = list(item, side, world);
+        return ids != null ? ids.size : 0;
+    }
+
+    /**
+     * One page (1-based, clamped to the last page) in price order
+     */
+    ShopPage page(Material item, TradeSide side, String world, int page, int pageSize) {
+        SortedIds ids = list(item, side, world);
+        int total = ids != null ? ids.size : 0;
+        int pageCount = Math.max(1, (total + pageSize - 1) / pageSize);
+        int current = Math.min(Math.max(1, page), pageCount);
+        List<Shop> shops = new ArrayList<>(pageSize);
+        if (ids != null) {
+            ids.ensureSorted();
+            int end = Math.min(total, current * pageSize);
+            for (int i = (current - 1) * pageSize; i < end; i++) {
+                shops.add(table.get(ids.ids[i]));
+            }
+        }
+        return new ShopPage(shops, current, pageCount, total);
+    }
+
+    private SortedIds list(Material item, TradeSide side, String world) {
+        ItemPrices prices = items.get(item);
+        if (prices == null) {
+            return null;
+        }
+        if (world == null) {
+            return prices.all[side.ordinal()];
+        }
+        SortedIds[] worldLists = prices.byWorld.get(world);
+        return worldLists != null ? worldLists[side.ordinal()] : null;
+    }
+
+    /**
+     * Price order for a side, ties broken by id so every shop has one exact position
+     */
+    private int compare(TradeSide side, int a, int b) {
+        int order = side == TradeSide.BUY
+                ? Double.compare(table.buyPrice(a), table.buyPrice(b))
+                : Double.compare(table.sellPrice(b), table.sellPrice(a));
+        return order != 0 ? order : Integer.compare(a, b);
+    }
+
+    /**
+     * Ids in price order. Appends stay unsorted until the first query.
+     */
+    private final class SortedIds {
+        final TradeSide side;
+        int[] ids = new int[4];
+        int size;
+        boolean sorted = false;
+
+        SortedIds(TradeSide side) {
+            this.side = side;
+        }
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            if (!sorted) {
+                ids[size++] = id;
+                return;
+            }
+            int found = search(id);
+            if (found >= 0) {
+                return; // Already listed
+            }
+            int at = -(found + 1);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            ensureSorted();
+            int at = search(id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                size--;
+            }
+        }
+
+        void ensureSorted() {
+            if (sorted) {
+                return;
+            }
+            Integer[] boxed = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                boxed[i] = ids[i];
+            }
+            Arrays.sort(boxed, (a, b) -> compare(side, a, b));
+            for (int i = 0; i < size; i++) {
+                ids[i] = boxed[i];
+            }
+            sorted = true;
+        }
+
+        /**
+         * Index of the id, or -(insertion point + 1) if absent
+         */
+        private int search(int id) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int order = compare(side, ids[mid], id);
+                if (order < 0) {
+                    low = mid + 1;
+                } else if (order > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
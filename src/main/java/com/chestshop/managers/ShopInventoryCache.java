@@ -0,0 +1,81 @@
+package com.chestshop.managers;
+
+import com.chestshop.util.ChunkOccupancy;
+import com.chestshop.util.LongObjectMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.inventory.Inventory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers whether a block inventory belongs to a shop chest, so repeated
+ * hopper moves cost one map probe instead of a BlockState snapshot.
+ *
+ * Keys use Inventory equality, which Bukkit implements as identity of the
+ * underlying container - a fresh wrapper for the same chest hits the same entry.
+ * Cleared whenever a shop is added or removed; entries for a chunk are dropped
+ * when it unloads (the containers are gone), found through a per-chunk index
+ * rather than a scan. Main thread only.
+ */
+class ShopInventoryCache {
+
+    private static final int MAX_ENTRIES = 8192;
+
+    private final Map<Inventory, Boolean> entries = new HashMap<>();
+    // Cached block inventories per chunk, per world, so an unload touches only its own
+    private final Map<String, LongObjectMap<List<Inventory>>> byChunk = new HashMap<>();
+
+    /**
+     * Cached status, or null if the inventory hasn't been seen since the last invalidation
+     */
+    Boolean get(Inventory inventory) {
+        return entries.get(inventory);
+    }
+
+    void put(Inventory inventory, Location location, boolean shop) {
+        if (entries.size() >= MAX_ENTRIES) {
+            clear(); // Cheaper than LRU bookkeeping - hot hoppers refill it in a tick
+        }
+        if (entries.put(inventory, shop) != null) {
+            return; // Already indexed under its chunk
+        }
+        World world = location == null ? null : location.getWorld();
+        if (world == null) {
+            return; // Not a block inventory - never unloaded with a chunk
+        }
+        long chunk = ChunkOccupancy.chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        LongObjectMap<List<Inventory>> chunks = byChunk.computeIfAbsent(world.getName(), k -> new LongObjectMap<>());
+        List<Inventory> inventories = chunks.get(chunk);
+        if (inventories == null) {
+            inventories = new ArrayList<>(2);
+            chunks.put(chunk, inventories);
+        }
+        inventories.add(inventory);
+    }
+
+    void chunkUnloaded(String world, int chunkX, int chunkZ) {
+        LongObjectMap<List<Inventory>> chunks = byChunk.get(world);
+        if (chunks == null) {
+            return;
+        }
+        List<Inventory> inventories = chunks.remove(ChunkOccupancy.chunkKey(chunkX, chunkZ));
+        if (inventories == null) {
+            return;
+        }
+        for (Inventory inventory : inventories) {
+            entries.remove(inventory);
+        }
+        if (chunks.isEmpty()) {
+            byChunk.remove(world);
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        byChunk.clear();
+    }
+}
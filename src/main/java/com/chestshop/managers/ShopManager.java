@@ -2,341 +2,897 @@ package com.chestshop.managers;
 
 import com.chestshop.ChestShopPlugin;
 import com.chestshop.models.Shop;
+import com.chestshop.models.TradeSide;
+import com.chestshop.storage.FileShopStore;
+import com.chestshop.storage.ParsedShop;
+import com.chestshop.storage.ShopRecord;
+import com.chestshop.storage.ShopStore;
+import com.chestshop.storage.SqliteShopStore;
+import com.chestshop.storage.YamlShopStore;
+import com.chestshop.util.BlockIndex;
+import com.chestshop.util.BlockKey;
+import com.chestshop.util.ChunkOccupancy;
+import com.chestshop.util.IntSet;
+import com.chestshop.util.LongObjectMap;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.DoubleChestInventory;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 public class ShopManager {
 
     private final ChestShopPlugin plugin;
-    private final Map<String, Shop> shops;
-    private final Map<String, Shop> chestIndex; // Secondary index for O(1) chest lookup
-    private final Map<Material, Set<Shop>> itemIndex; // Index for O(1) item lookups
-    private final Map<UUID, Set<Shop>> playerIndex; // Index for O(1) player shop count
-    private final File shopsFile;
-    private final File backupFile;
-    private FileConfiguration shopsConfig;
-    private final Object saveLock = new Object(); // Lock for synchronized saves
-
-    // Async/batch save system
-    private volatile boolean dirty = false; // Flag to track if data needs saving
+    private final ShopTable table = new ShopTable(); // Shop columns, addressed by stable int id
+    private final BlockIndex shops; // Sign block -> shop id, allocation-free lookups
+    private final BlockIndex chestIndex; // Secondary index for O(1) chest lookup
+    private final ChunkOccupancy shopChunks = new ChunkOccupancy(); // Chunks holding any shop sign or chest
+    private final ShopInventoryCache inventoryCache = new ShopInventoryCache(); // Hopper fast path
+    private final Map<Material, IntSet> itemIndex; // Shop ids per item
+    private final PriceIndex priceIndex = new PriceIndex(table); // Shop ids per item, sorted by price
+    private final SpatialIndex spatialIndex = new SpatialIndex(table); // Shop ids by sign position, for nearby queries
+    private final Map<UUID, IntSet> playerIndex; // Shop ids per owner, for O(1) player shop count
+    private final ShopStore store; // Persistence backend chosen by storage.type
+    private List<PendingChange> reloadChanges; // Non-null while an async reload is reading
+
+    // Read-only view for any thread, republished at the end of each tick with changes
+    private volatile ShopSnapshot snapshot = ShopSnapshot.EMPTY;
+    private final ShopPublisher publisher;
+    private boolean snapshotStale = false;
+    private boolean publishScheduled = false;
+
+    // Ids of loaded shops whose blocks haven't been checked yet, also indexed by chunk (world -> chunk key)
+    private final IntSet unverifiedShops = new IntSet();
+    private final Map<String, LongObjectMap<IntSet>> unverifiedChunks = new HashMap<>();
+
+    // Ids whose stock columns match the chest: counted since load, then kept in step by trades
+    private final IntSet countedStock = new IntSet();
+    private final IntSet unsavedStock = new IntSet(); // Stock changes not handed to the store yet
+
+    /**
+     * A shop created (or removed, if shop is null) while a reload was in progress
+     */
+    private record PendingChange(String world, int x, int y, int z, Shop shop) {}
+
+    // Auto-save
     private int autoSaveTaskId = -1;
     private static final long AUTO_SAVE_INTERVAL = 5 * 60 * 20L; // 5 minutes in ticks (20 ticks = 1 second)
+    private static final long SAVE_TIMEOUT_SECONDS = 60;
 
     public ShopManager(ChestShopPlugin plugin) {
         this.plugin = plugin;
-        this.shops = new HashMap<>();
-        this.chestIndex = new HashMap<>();
-        this.itemIndex = new HashMap<>();
+        this.shops = new BlockIndex();
+        this.chestIndex = new BlockIndex();
+        this.itemIndex = new EnumMap<>(Material.class);
+        this.publisher = new ShopPublisher(table, itemIndex);
         this.playerIndex = new HashMap<>();
-        this.shopsFile = new File(plugin.getDataFolder(), "shops.yml");
-        this.backupFile = new File(plugin.getDataFolder(), "shops.yml.backup");
+        this.store = createStore(plugin.getConfig().getString("storage.type", "binary"));
         loadShops();
+        migrateShops(plugin.getConfig().getString("storage.migrate-from", ""));
+        store.start();
         startAutoSave();
     }
 
-    private String locationToKey(Location location) {
-        if (location == null) {
-            return "null:0:0:0";
+    /**
+     * Create the storage backend for the given storage.type (binary, yaml or sqlite)
+     */
+    private ShopStore createStore(String type) {
+        int backups = plugin.getConfig().getInt("storage.backups", 3);
+        switch (type.toLowerCase()) {
+            case "yaml":
+                return new YamlShopStore(plugin.getLogger(), plugin.getDataFolder(), backups);
+            case "sqlite":
+                if (SqliteShopStore.isAvailable()) {
+                    return new SqliteShopStore(plugin.getLogger(), plugin.getDataFolder());
+                }
+                plugin.getLogger().warning("SQLite driver not found on this server, using binary storage instead.");
+                return new FileShopStore(plugin.getLogger(), plugin.getDataFolder(), backups);
+            case "binary":
+                return new FileShopStore(plugin.getLogger(), plugin.getDataFolder(), backups);
+            default:
+                plugin.getLogger().warning("Unknown storage type '" + type + "', using binary storage.");
+                return new FileShopStore(plugin.getLogger(), plugin.getDataFolder(), backups);
         }
+    }
+
+    private static String worldName(Location location) {
         World world = location.getWorld();
-        String worldName = world != null ? world.getName() : "unknown";
-        return worldName + ":" +
-               location.getBlockX() + ":" +
-               location.getBlockY() + ":" +
-               location.getBlockZ();
+        return world != null ? world.getName() : "unknown";
     }
 
-    public void addShop(Shop shop) {
-        String signKey = locationToKey(shop.getSignLocation());
-        String chestKey = locationToKey(shop.getChestLocation());
-        shops.put(signKey, shop);
-        chestIndex.put(chestKey, shop);
-        // Add to item index
-        itemIndex.computeIfAbsent(shop.getItem(), k -> new HashSet<>()).add(shop);
-        // Add to player index
-        playerIndex.computeIfAbsent(shop.getOwnerUUID(), k -> new HashSet<>()).add(shop);
-        markDirty(); // Mark for saving instead of saving immediately
+    /**
+     * Register a shop. Returns it with its assigned id.
+     */
+    public Shop addShop(Shop shop) {
+        Shop registered = indexShop(shop);
+        store.shopAdded(registered); // Durable once the writer thread commits it
+        if (reloadChanges != null) {
+            reloadChanges.add(new PendingChange(registered.getSignWorldName(),
+                    registered.getSignX(), registered.getSignY(), registered.getSignZ(), registered));
+        }
+        return registered;
     }
 
     public void removeShop(Location signLocation) {
-        String signKey = locationToKey(signLocation);
-        Shop shop = shops.remove(signKey);
+        removeShop(worldName(signLocation), signLocation.getBlockX(), signLocation.getBlockY(), signLocation.getBlockZ());
+    }
+
+    private void removeShop(String world, int x, int y, int z) {
+        Shop shop = unindexShop(world, x, y, z);
+        if (reloadChanges != null) {
+            reloadChanges.add(new PendingChange(world, x, y, z, null));
+        }
         if (shop != null) {
-            chestIndex.remove(locationToKey(shop.getChestLocation()));
-            // Remove from item index
-            Set<Shop> itemShops = itemIndex.get(shop.getItem());
-            if (itemShops != null) {
-                itemShops.remove(shop);
-                if (itemShops.isEmpty()) {
-                    itemIndex.remove(shop.getItem());
-                }
-            }
-            // Remove from player index
-            Set<Shop> playerShops = playerIndex.get(shop.getOwnerUUID());
-            if (playerShops != null) {
-                playerShops.remove(shop);
-                if (playerShops.isEmpty()) {
-                    playerIndex.remove(shop.getOwnerUUID());
-                }
-            }
+            store.shopRemoved(world, x, y, z);
         }
-        markDirty(); // Mark for saving instead of saving immediately
     }
 
     /**
-     * Mark data as changed - will be saved on next auto-save cycle
+     * Add a shop to the table and all in-memory indexes (replacing any shop on
+     * the same sign). Returns the stored shop, which carries its id.
      */
-    private void markDirty() {
-        this.dirty = true;
+    private Shop indexShop(Shop shop) {
+        String signWorld = shop.getSignWorldName();
+        String chestWorld = shop.getChestWorldName();
+        unindexShop(signWorld, shop.getSignX(), shop.getSignY(), shop.getSignZ());
+        int id = table.add(shop);
+        priceIndex.add(id);
+        spatialIndex.add(id);
+        shops.put(signWorld, shop.getSignX(), shop.getSignY(), shop.getSignZ(), id);
+        chestIndex.put(chestWorld, shop.getChestX(), shop.getChestY(), shop.getChestZ(), id);
+        shopChunks.increment(signWorld, shop.getSignX() >> 4, shop.getSignZ() >> 4);
+        shopChunks.increment(chestWorld, shop.getChestX() >> 4, shop.getChestZ() >> 4);
+        inventoryCache.clear();
+        markChanged(id, shop.getItem());
+        itemIndex.computeIfAbsent(shop.getItem(), k -> new IntSet()).add(id);
+        playerIndex.computeIfAbsent(shop.getOwnerUUID(), k -> new IntSet()).add(id);
+        return table.get(id);
+    }
+
+    /**
+     * Remove the shop on the given sign block from all in-memory indexes and free its id
+     */
+    private Shop unindexShop(String world, int x, int y, int z) {
+        int id = shops.remove(world, x, y, z);
+        if (id == ShopTable.NO_SHOP) {
+            return null;
+        }
+        markVerified(id);
+        countedStock.remove(id);
+        unsavedStock.remove(id);
+        Material item = table.item(id);
+        String chestWorld = table.chestWorld(id);
+        long chest = table.chestPos(id);
+        markChanged(id, item);
+        chestIndex.remove(chestWorld, BlockKey.x(chest), BlockKey.y(chest), BlockKey.z(chest));
+        shopChunks.decrement(world, x >> 4, z >> 4);
+        shopChunks.decrement(chestWorld, BlockKey.x(chest) >> 4, BlockKey.z(chest) >> 4);
+        inventoryCache.clear();
+        removeId(itemIndex, item, id);
+        removeId(playerIndex, table.owner(id), id);
+        priceIndex.remove(id);
+        spatialIndex.remove(id);
+        return table.remove(id);
+    }
+
+    private static <K> void removeId(Map<K, IntSet> index, K key, int id) {
+        IntSet ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
     }
 
     public Shop getShop(Location signLocation) {
-        return shops.get(locationToKey(signLocation));
+        World world = signLocation.getWorld();
+        if (world == null) {
+            return null;
+        }
+        return getShop(world, signLocation.getBlockX(), signLocation.getBlockY(), signLocation.getBlockZ());
+    }
+
+    /**
+     * Look up a shop by its sign block without creating a Location
+     */
+    public Shop getShop(Block signBlock) {
+        return getShop(signBlock.getWorld(), signBlock.getX(), signBlock.getY(), signBlock.getZ());
+    }
+
+    public Shop getShop(World world, int x, int y, int z) {
+        return verifyOnAccess(shops.get(world.getName(), x, y, z));
+    }
+
+    /**
+     * Look up a shop by its id (ids are kept across restarts). Returns null if
+     * no shop has that id now.
+     */
+    public Shop getShopById(int id) {
+        Shop shop = table.get(id);
+        return shop != null ? verifyOnAccess(id) : null;
     }
 
     public Shop getShopByChest(Location chestLocation) {
+        World world = chestLocation.getWorld();
+        if (world == null) {
+            return null;
+        }
+        return getShopByChest(world, chestLocation.getBlockX(), chestLocation.getBlockY(), chestLocation.getBlockZ());
+    }
+
+    /**
+     * Look up a shop by its chest block without creating a Location
+     */
+    public Shop getShopByChest(Block chestBlock) {
+        return getShopByChest(chestBlock.getWorld(), chestBlock.getX(), chestBlock.getY(), chestBlock.getZ());
+    }
+
+    public Shop getShopByChest(World world, int x, int y, int z) {
         // O(1) lookup using secondary index
-        return chestIndex.get(locationToKey(chestLocation));
+        return verifyOnAccess(chestIndex.get(world.getName(), x, y, z));
+    }
+
+    /**
+     * Cheap pre-check for hot events: false means no shop sign or chest is in this block's chunk
+     */
+    public boolean hasShopsInChunk(Block block) {
+        return shopChunks.isOccupied(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    /**
+     * Check if an inventory is (half of) a shop chest, without taking a BlockState snapshot.
+     * Results are cached per container, so repeated hopper moves cost one map probe.
+     */
+    public boolean isShopInventory(Inventory inventory) {
+        if (inventory instanceof DoubleChestInventory doubleChest) {
+            // The combined inventory is rebuilt on every access - cache the halves instead
+            return isShopInventory(doubleChest.getLeftSide()) || isShopInventory(doubleChest.getRightSide());
+        }
+        Boolean cached = inventoryCache.get(inventory);
+        if (cached != null) {
+            return cached;
+        }
+        Location location = inventory.getLocation();
+        boolean shop = location != null && location.getWorld() != null && getShopByChest(location) != null;
+        inventoryCache.put(inventory, location, shop);
+        return shop;
+    }
+
+    /**
+     * Forget cached inventories in an unloaded chunk (their containers are discarded)
+     */
+    public void chunkUnloaded(World world, int chunkX, int chunkZ) {
+        inventoryCache.chunkUnloaded(world.getName(), chunkX, chunkZ);
     }
 
     public boolean isShopSign(Location location) {
-        return shops.containsKey(locationToKey(location));
+        return getShop(location) != null;
     }
 
     public boolean isShopChest(Location location) {
         return getShopByChest(location) != null;
     }
 
+    /**
+     * All shops, as of the latest snapshot (read-only, safe from any thread)
+     */
     public Collection<Shop> getAllShops() {
-        // Return a copy to prevent ConcurrentModificationException and external modification
-        return new ArrayList<>(shops.values());
+        return getSnapshot().getShops();
     }
 
+    /**
+     * Shops trading an item, as of the latest snapshot (read-only, safe from any thread)
+     */
     public List<Shop> getShopsByItem(Material item) {
-        // O(1) lookup using item index
-        Set<Shop> itemShops = itemIndex.get(item);
-        if (itemShops == null || itemShops.isEmpty()) {
-            return new ArrayList<>();
+        return getSnapshot().getShopsByItem(item);
+    }
+
+    /**
+     * A page of the shops trading an item, best price first: lowest buy price
+     * for BUY, highest sell price for SELL. World may be null for all worlds.
+     */
+    public ShopPage findShops(Material item, TradeSide side, String world, int page, int pageSize) {
+        return priceIndex.page(item, side, world, page, pageSize);
+    }
+
+    public int countShops(Material item, TradeSide side) {
+        return priceIndex.count(item, side, null);
+    }
+
+    /**
+     * Up to limit shops whose sign is within radius blocks of the location,
+     * nearest first. Item may be null for any item.
+     */
+    public List<Shop> findNearest(Location location, Material item, int radius, int limit) {
+        World world = location.getWorld();
+        if (world == null) {
+            return List.of();
+        }
+        int[] ids = spatialIndex.nearest(world.getName(), location.getBlockX(), location.getBlockY(), location.getBlockZ(),
+                radius, limit, id -> item == null || table.item(id) == item);
+        List<Shop> nearest = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            nearest.add(table.get(id));
+        }
+        return nearest;
+    }
+
+    /**
+     * All shops whose sign lies in the block area (corners in any order, all heights)
+     */
+    public List<Shop> findInArea(String world, int x1, int z1, int x2, int z2) {
+        List<Shop> found = new ArrayList<>();
+        spatialIndex.forEachInArea(world, Math.min(x1, x2), Math.min(z1, z2), Math.max(x1, x2), Math.max(z1, z2),
+                id -> found.add(table.get(id)));
+        return found;
+    }
+
+    /**
+     * Changes whenever a shop trading this item is added, removed or restocked, so pages
+     * rendered from {@link #findShops} can be cached until then
+     */
+    public long getItemVersion(Material item) {
+        return priceIndex.version(item);
+    }
+
+    /**
+     * Consistent read-only view of every shop. On the main thread this always
+     * includes the latest changes; other threads see the last published version.
+     */
+    public ShopSnapshot getSnapshot() {
+        if (snapshotStale && Bukkit.isPrimaryThread()) {
+            publishSnapshot();
         }
-        return new ArrayList<>(itemShops);
+        return snapshot;
+    }
+
+    /**
+     * Record a change to a shop and publish a new snapshot at the end of this tick
+     */
+    private void markChanged(int id, Material item) {
+        publisher.changed(id, item);
+        snapshotStale = true;
+        if (!publishScheduled && plugin.isEnabled()) {
+            publishScheduled = true;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                publishScheduled = false;
+                if (snapshotStale) {
+                    publishSnapshot();
+                }
+            });
+        }
+    }
+
+    private void publishSnapshot() {
+        snapshot = publisher.publish(snapshot);
+        snapshotStale = false;
     }
 
     /**
      * Get the number of shops owned by a player - O(1) lookup
      */
     public int getPlayerShopCount(UUID playerUUID) {
-        Set<Shop> playerShops = playerIndex.get(playerUUID);
+        IntSet playerShops = playerIndex.get(playerUUID);
         return playerShops != null ? playerShops.size() : 0;
     }
 
-    public void reloadShops() {
-        shops.clear();
-        chestIndex.clear();
-        itemIndex.clear();
-        playerIndex.clear();
-        loadShops();
+    /**
+     * Re-read all shops without blocking the server: reading and parsing run off
+     * the main thread, then the indexes are swapped on the main thread and
+     * onComplete runs. Returns false if a reload is already in progress.
+     */
+    public boolean reloadShops(Runnable onComplete) {
+        if (reloadChanges != null) {
+            return false;
+        }
+        reloadChanges = new ArrayList<>();
+        saveStock(); // The reload reads these back
+
+        long start = System.nanoTime();
+        store.reload()
+                .exceptionally(e -> {
+                    plugin.getLogger().severe("Failed to load shops from " + store.getName() + " storage: " + e.getMessage());
+                    return null;
+                })
+                .thenAcceptAsync(records -> {
+                    long readNs = System.nanoTime() - start;
+                    long parseStart = System.nanoTime();
+                    List<ParsedShop> parsed = records != null ? ParsedShop.parseAll(records, plugin.getLogger()) : null;
+                    long parseNs = System.nanoTime() - parseStart;
+
+                    if (!plugin.isEnabled()) {
+                        return;
+                    }
+                    Bukkit.getScheduler().runTask(plugin, () -> {
+                        if (parsed != null) {
+                            publishShops(records.size(), parsed, readNs, parseNs);
+                        } else {
+                            reloadChanges = null; // Read failed - keep the shops we have
+                        }
+                        onComplete.run();
+                    });
+                });
+        return true;
     }
 
+    /**
+     * Write every shop to the store and wait for it to finish
+     */
     public void saveShops() {
-        synchronized (saveLock) {
-            shopsConfig = new YamlConfiguration();
-
-            int index = 0;
-            for (Shop shop : shops.values()) {
-                String path = "shops." + index;
-                shopsConfig.set(path + ".owner-uuid", shop.getOwnerUUID().toString());
-                shopsConfig.set(path + ".owner-name", shop.getOwnerName());
-
-                // Safe world name retrieval
-                Location signLoc = shop.getSignLocation();
-                Location chestLoc = shop.getChestLocation();
-                String signWorld = signLoc.getWorld() != null ? signLoc.getWorld().getName() : "world";
-                String chestWorld = chestLoc.getWorld() != null ? chestLoc.getWorld().getName() : "world";
-
-                shopsConfig.set(path + ".sign-world", signWorld);
-                shopsConfig.set(path + ".sign-x", signLoc.getBlockX());
-                shopsConfig.set(path + ".sign-y", signLoc.getBlockY());
-                shopsConfig.set(path + ".sign-z", signLoc.getBlockZ());
-                shopsConfig.set(path + ".chest-world", chestWorld);
-                shopsConfig.set(path + ".chest-x", chestLoc.getBlockX());
-                shopsConfig.set(path + ".chest-y", chestLoc.getBlockY());
-                shopsConfig.set(path + ".chest-z", chestLoc.getBlockZ());
-                shopsConfig.set(path + ".item", shop.getItem().name());
-                shopsConfig.set(path + ".amount", shop.getAmount());
-                shopsConfig.set(path + ".buy-price", shop.getBuyPrice());
-                shopsConfig.set(path + ".sell-price", shop.getSellPrice());
-                index++;
-            }
+        saveStock();
+        try {
+            store.checkpoint(getSnapshot().getShops()).get(SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            plugin.getLogger().severe("Timed out waiting for shop save: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load all shops during startup (before the store's writer runs). Parsing
+     * still runs in parallel; only index publication happens on this thread.
+     */
+    private void loadShops() {
+        long start = System.nanoTime();
+        List<ShopRecord> records;
+        try {
+            records = store.load();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to load shops from " + store.getName() + " storage: " + e.getMessage());
+            records = new ArrayList<>();
+        }
+        long readNs = System.nanoTime() - start;
+
+        long parseStart = System.nanoTime();
+        List<ParsedShop> parsed = ParsedShop.parseAll(records, plugin.getLogger());
+        publishShops(records.size(), parsed, readNs, System.nanoTime() - parseStart);
 
-            try {
-                // Create backup before saving
-                if (shopsFile.exists()) {
-                    Files.copy(shopsFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        // e.g. a shops.yml conversion - written once the writer thread runs
+        if (store.needsCheckpoint(shops.size())) {
+            saveShopsAsync();
+        }
+    }
+
+    /**
+     * Replace the in-memory indexes with freshly loaded shops (main thread).
+     * Shops created or removed while a reload was reading are applied on top.
+     */
+    private void publishShops(int recordCount, List<ParsedShop> parsed, long readNs, long parseNs) {
+        long indexStart = System.nanoTime();
+        table.clear(recordCount + (reloadChanges != null ? reloadChanges.size() : 0));
+        publisher.changedAll(); // Items that no longer have any shops too
+        snapshotStale = true;
+        priceIndex.clear();
+        spatialIndex.clear();
+        shops.clear();
+        chestIndex.clear();
+        shopChunks.clear();
+        inventoryCache.clear();
+        itemIndex.clear();
+        playerIndex.clear();
+        unverifiedShops.clear();
+        unverifiedChunks.clear();
+        countedStock.clear();
+        unsavedStock.clear();
+
+        // Shops with a stored id go first, so a newly assigned id never takes one still to come
+        int assignedIds = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (ParsedShop parsedShop : parsed) {
+                if ((parsedShop.id() >= 0) != (pass == 0)) {
+                    continue;
                 }
+                Shop shop = createShop(parsedShop);
+                if (shop != null) {
+                    // Add to all indexes - blocks are checked once their chunk loads
+                    Shop registered = indexShop(shop);
+                    markUnverified(registered.getId());
+                    if (registered.getId() != shop.getId()) {
+                        store.shopAdded(registered); // Saved before ids existed, a duplicate or an out-of-range id
+                        assignedIds++;
+                    }
+                }
+            }
+        }
+        if (assignedIds > 0) {
+            plugin.getLogger().info("Assigned new ids to " + assignedIds + " shops.");
+        }
 
-                // Ensure data folder exists
-                plugin.getDataFolder().mkdirs();
-
-                // Save the file
-                shopsConfig.save(shopsFile);
-            } catch (IOException e) {
-                plugin.getLogger().severe("Failed to save shops: " + e.getMessage());
-                // Try to restore from backup
-                if (backupFile.exists()) {
-                    plugin.getLogger().warning("Attempting to restore from backup...");
-                    try {
-                        Files.copy(backupFile.toPath(), shopsFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                    } catch (IOException ex) {
-                        plugin.getLogger().severe("Failed to restore backup: " + ex.getMessage());
+        if (reloadChanges != null) {
+            for (PendingChange change : reloadChanges) {
+                if (change.shop() != null) {
+                    Shop registered = indexShop(change.shop());
+                    if (registered.getId() != change.shop().getId()) {
+                        store.shopAdded(registered);
                     }
+                } else {
+                    unindexShop(change.world(), change.x(), change.y(), change.z());
                 }
             }
+            reloadChanges = null;
+        }
+        table.pruneOwners(); // Owners of shops that are gone, or under an old name
+        long indexNs = System.nanoTime() - indexStart;
+
+        int skippedShops = recordCount - shops.size();
+        if (skippedShops > 0) {
+            plugin.getLogger().warning("Skipped " + skippedShops + " shops due to errors.");
         }
+        plugin.getLogger().info("Loaded " + shops.size() + " shops from " + store.getName() + " storage in "
+                + (readNs + parseNs + indexNs) / 1_000_000 + "ms (read " + readNs / 1_000_000
+                + "ms, parse " + parseNs / 1_000_000 + "ms, index " + indexNs / 1_000_000 + "ms on main thread).");
+
+        // Chunks that are already loaded won't fire ChunkLoadEvent - check those shops now
+        verifyLoadedShops();
     }
 
-    public void loadShops() {
-        if (!shopsFile.exists()) {
-            plugin.getDataFolder().mkdirs();
+    /**
+     * Copy shops from another backend into an empty store (storage.migrate-from)
+     */
+    private void migrateShops(String sourceType) {
+        if (sourceType == null || sourceType.isEmpty() || shops.size() > 0) {
+            return;
+        }
+        ShopStore source = createStore(sourceType);
+        if (source.getName().equals(store.getName())) {
             return;
         }
 
-        shopsConfig = YamlConfiguration.loadConfiguration(shopsFile);
-        ConfigurationSection shopsSection = shopsConfig.getConfigurationSection("shops");
+        try {
+            List<ShopRecord> records = source.load();
+            for (ParsedShop parsedShop : ParsedShop.parseAll(records, plugin.getLogger())) {
+                Shop shop = createShop(parsedShop);
+                if (shop != null) {
+                    markUnverified(indexShop(shop).getId());
+                }
+            }
+            int skippedShops = records.size() - shops.size();
+            plugin.getLogger().info("Migrating " + shops.size() + " shops from " + source.getName()
+                    + " to " + store.getName() + " storage" + (skippedShops > 0 ? " (" + skippedShops + " skipped)" : "") + ".");
+            if (shops.size() > 0) {
+                store.invalidate(); // None of these shops went through shopAdded
+                saveShopsAsync();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to migrate shops from " + source.getName() + " storage: " + e.getMessage());
+        }
+    }
 
-        if (shopsSection == null) {
-            return;
+    /**
+     * Resolve a parsed shop against the loaded worlds (main thread).
+     * Returns null (after logging why) if the world is missing.
+     */
+    private Shop createShop(ParsedShop parsed) {
+        String key = parsed.key();
+        World signWorld = Bukkit.getWorld(parsed.signWorld());
+        World chestWorld = Bukkit.getWorld(parsed.chestWorld());
+
+        // Skip shops in unloaded/deleted worlds
+        if (signWorld == null) {
+            plugin.getLogger().warning("Skipping shop " + key + ": world '" + parsed.signWorld() + "' not found");
+            return null;
+        }
+        if (chestWorld == null) {
+            plugin.getLogger().warning("Skipping shop " + key + ": world '" + parsed.chestWorld() + "' not found");
+            return null;
         }
 
-        int skippedShops = 0;
-        for (String key : shopsSection.getKeys(false)) {
-            String path = "shops." + key;
+        // Blocks aren't checked here - that would load every shop's chunk
+        return new Shop(parsed.id(), parsed.ownerUUID(), parsed.ownerName(),
+                parsed.signWorld(), parsed.signX(), parsed.signY(), parsed.signZ(),
+                parsed.chestWorld(), parsed.chestX(), parsed.chestY(), parsed.chestZ(),
+                parsed.item(), parsed.amount(), parsed.buyPrice(), parsed.sellPrice(),
+                parsed.stock(), parsed.space());
+    }
 
-            try {
-                // Safe null checks for all string values
-                String uuidString = shopsConfig.getString(path + ".owner-uuid");
-                if (uuidString == null || uuidString.isEmpty()) {
-                    plugin.getLogger().warning("Skipping shop " + key + ": missing owner-uuid");
-                    skippedShops++;
-                    continue;
-                }
-                UUID ownerUUID = UUID.fromString(uuidString);
+    // ===== Stock cache =====
 
-                String ownerName = shopsConfig.getString(path + ".owner-name", "Unknown");
+    /**
+     * The shop with stock counts that match its chest. The inventory is only
+     * scanned if it hasn't been counted since load; after that trades and
+     * {@link #reconcileStock} keep the counts current.
+     */
+    public Shop countStock(Shop shop, Inventory chestInventory) {
+        int id = liveId(shop);
+        if (id == ShopTable.NO_SHOP) {
+            return shop;
+        }
+        if (!countedStock.contains(id)) {
+            count(id, chestInventory);
+        }
+        return table.get(id);
+    }
 
-                // Get world names and validate they exist
-                String signWorldName = shopsConfig.getString(path + ".sign-world");
-                String chestWorldName = shopsConfig.getString(path + ".chest-world");
+    /**
+     * Record a completed trade that moved delta shop items into (positive) or
+     * out of (negative) the chest. Returns the shop with its new counts.
+     */
+    public Shop tradeStock(Shop shop, Inventory chestInventory, int delta) {
+        int id = liveId(shop);
+        if (id == ShopTable.NO_SHOP) {
+            return shop;
+        }
+        // Another shop on the same double chest has different free space now
+        forEachShopIn(chestInventory, other -> {
+            if (other != id) {
+                countedStock.remove(other);
+            }
+        });
+        if (countedStock.contains(id)) {
+            setStock(id, Math.max(0, table.stock(id) + delta), Math.max(0, table.space(id) - delta));
+        }
+        return table.get(id);
+    }
 
-                if (signWorldName == null || chestWorldName == null) {
-                    plugin.getLogger().warning("Skipping shop " + key + ": missing world name");
-                    skippedShops++;
-                    continue;
-                }
+    /**
+     * Stop trusting the cached counts (e.g. a trade was rolled back); the next
+     * trade scans the chest again
+     */
+    public void forgetStock(Shop shop) {
+        int id = liveId(shop);
+        if (id != ShopTable.NO_SHOP) {
+            countedStock.remove(id);
+        }
+    }
 
-                World signWorld = Bukkit.getWorld(signWorldName);
-                World chestWorld = Bukkit.getWorld(chestWorldName);
+    /**
+     * Recount every shop stocked from this inventory (InventoryCloseEvent),
+     * picking up items the owner added or took by hand
+     */
+    public void reconcileStock(Inventory inventory) {
+        forEachShopIn(inventory, id -> count(id, inventory));
+    }
 
-                // Skip shops in unloaded/deleted worlds
-                if (signWorld == null) {
-                    plugin.getLogger().warning("Skipping shop " + key + ": world '" + signWorldName + "' not found");
-                    skippedShops++;
-                    continue;
-                }
-                if (chestWorld == null) {
-                    plugin.getLogger().warning("Skipping shop " + key + ": world '" + chestWorldName + "' not found");
-                    skippedShops++;
-                    continue;
-                }
+    /**
+     * A chest was placed or broken next to this block: a shop chest may have
+     * become a single or double chest, so its counts are no longer trusted
+     */
+    public void chestChanged(Block block) {
+        String world = block.getWorld().getName();
+        int x = block.getX(), y = block.getY(), z = block.getZ();
+        forgetStock(chestIndex.get(world, x, y, z));
+        forgetStock(chestIndex.get(world, x + 1, y, z));
+        forgetStock(chestIndex.get(world, x - 1, y, z));
+        forgetStock(chestIndex.get(world, x, y, z + 1));
+        forgetStock(chestIndex.get(world, x, y, z - 1));
+    }
 
-                Location signLocation = new Location(
-                        signWorld,
-                        shopsConfig.getInt(path + ".sign-x"),
-                        shopsConfig.getInt(path + ".sign-y"),
-                        shopsConfig.getInt(path + ".sign-z")
-                );
-
-                Location chestLocation = new Location(
-                        chestWorld,
-                        shopsConfig.getInt(path + ".chest-x"),
-                        shopsConfig.getInt(path + ".chest-y"),
-                        shopsConfig.getInt(path + ".chest-z")
-                );
-
-                // Verify blocks still exist (optional integrity check)
-                Block signBlock = signLocation.getBlock();
-                Block chestBlock = chestLocation.getBlock();
-
-                if (!isSign(signBlock.getType())) {
-                    plugin.getLogger().warning("Skipping shop " + key + ": sign block no longer exists at " + signLocation);
-                    skippedShops++;
-                    continue;
-                }
+    private void forgetStock(int id) {
+        if (id != ShopTable.NO_SHOP) {
+            countedStock.remove(id);
+        }
+    }
 
-                if (chestBlock.getType() != Material.CHEST && chestBlock.getType() != Material.TRAPPED_CHEST) {
-                    plugin.getLogger().warning("Skipping shop " + key + ": chest block no longer exists at " + chestLocation);
-                    skippedShops++;
-                    continue;
-                }
+    /**
+     * The shop's id if that id still belongs to this shop (a handle may outlive its shop)
+     */
+    private int liveId(Shop shop) {
+        Shop current = table.get(shop.getId());
+        return current != null && current.getSignKey() == shop.getSignKey()
+                && current.getSignWorldName().equals(shop.getSignWorldName()) ? shop.getId() : ShopTable.NO_SHOP;
+    }
 
-                // Safe Material parsing with fallback
-                String itemName = shopsConfig.getString(path + ".item");
-                Material item;
-                try {
-                    item = Material.valueOf(itemName);
-                } catch (IllegalArgumentException | NullPointerException e) {
-                    plugin.getLogger().warning("Skipping shop " + key + ": invalid item '" + itemName + "'");
-                    skippedShops++;
-                    continue;
-                }
+    /**
+     * Visit the ids of shops whose chest is (half of) this inventory
+     */
+    private void forEachShopIn(Inventory inventory, IntConsumer action) {
+        if (inventory instanceof DoubleChestInventory doubleChest) {
+            forEachShopIn(doubleChest.getLeftSide(), action);
+            forEachShopIn(doubleChest.getRightSide(), action);
+            return;
+        }
+        Location location = inventory.getLocation();
+        if (location == null || location.getWorld() == null) {
+            return;
+        }
+        int id = chestIndex.get(location.getWorld().getName(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        if (id != ShopTable.NO_SHOP) {
+            action.accept(id);
+        }
+    }
+
+    /**
+     * One pass over the chest: shop items held, and how many more would fit
+     * (matched by material, like the trade checks)
+     */
+    private void count(int id, Inventory inventory) {
+        Material item = table.item(id);
+        int maxStack = item.getMaxStackSize();
+        int stock = 0;
+        int space = 0;
+        for (ItemStack stack : inventory.getStorageContents()) {
+            if (stack == null || stack.getType().isAir()) {
+                space += maxStack;
+            } else if (stack.getType() == item) {
+                stock += stack.getAmount();
+                space += Math.max(0, maxStack - stack.getAmount());
+            }
+        }
+        countedStock.add(id);
+        setStock(id, stock, space);
+    }
 
-                int amount = shopsConfig.getInt(path + ".amount", 1);
-                double buyPrice = shopsConfig.getDouble(path + ".buy-price", 0);
-                double sellPrice = shopsConfig.getDouble(path + ".sell-price", 0);
+    private void setStock(int id, int stock, int space) {
+        if (table.stock(id) == stock && table.space(id) == space) {
+            return;
+        }
+        table.setStock(id, stock, space);
+        unsavedStock.add(id);
+        priceIndex.touch(table.item(id));
+        markChanged(id, table.item(id));
+    }
 
-                // Validate loaded prices (in case file was manually edited)
-                if (buyPrice < 0) buyPrice = 0;
-                if (sellPrice < 0) sellPrice = 0;
-                if (amount <= 0 || amount > 64) amount = 1;
+    /**
+     * Hand changed stock counts to the store. Batched with the auto-save (and
+     * before saves and reloads) rather than written on every trade - after a
+     * crash the counts are only a hint until the chest is counted again.
+     */
+    private void saveStock() {
+        if (unsavedStock.isEmpty()) {
+            return;
+        }
+        unsavedStock.forEach(id -> store.stockChanged(table.get(id)));
+        unsavedStock.clear();
+    }
+
+    // ===== Lazy block verification =====
+
+    /**
+     * Remember a loaded shop so its blocks get checked once they're loaded
+     */
+    private void markUnverified(int id) {
+        if (!unverifiedShops.add(id)) {
+            return;
+        }
+        String signWorld = table.signWorld(id);
+        String chestWorld = table.chestWorld(id);
+        long signChunk = chunkOf(table.signPos(id));
+        long chestChunk = chunkOf(table.chestPos(id));
+        unverifiedIds(signWorld, signChunk).add(id);
+        if (chestChunk != signChunk || !chestWorld.equals(signWorld)) {
+            unverifiedIds(chestWorld, chestChunk).add(id);
+        }
+    }
 
-                Shop shop = new Shop(ownerUUID, ownerName, signLocation, chestLocation,
-                        item, amount, buyPrice, sellPrice);
+    private IntSet unverifiedIds(String worldName, long chunkKey) {
+        LongObjectMap<IntSet> chunks = unverifiedChunks.computeIfAbsent(worldName, k -> new LongObjectMap<>());
+        IntSet ids = chunks.get(chunkKey);
+        if (ids == null) {
+            ids = new IntSet();
+            chunks.put(chunkKey, ids);
+        }
+        return ids;
+    }
 
-                // Add to all indexes
-                shops.put(locationToKey(signLocation), shop);
-                chestIndex.put(locationToKey(chestLocation), shop);
-                itemIndex.computeIfAbsent(item, k -> new HashSet<>()).add(shop);
-                playerIndex.computeIfAbsent(ownerUUID, k -> new HashSet<>()).add(shop);
+    private void markVerified(int id) {
+        if (!unverifiedShops.remove(id)) {
+            return;
+        }
+        removeUnverified(table.signWorld(id), chunkOf(table.signPos(id)), id);
+        removeUnverified(table.chestWorld(id), chunkOf(table.chestPos(id)), id);
+    }
 
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to load shop " + key + ": " + e.getMessage());
-                skippedShops++;
+    private void removeUnverified(String worldName, long chunkKey, int id) {
+        LongObjectMap<IntSet> chunks = unverifiedChunks.get(worldName);
+        if (chunks == null) {
+            return;
+        }
+        IntSet chunkIds = chunks.get(chunkKey);
+        if (chunkIds != null) {
+            chunkIds.remove(id);
+            if (chunkIds.isEmpty()) {
+                chunks.remove(chunkKey);
+                if (chunks.isEmpty()) {
+                    unverifiedChunks.remove(worldName);
+                }
             }
         }
+    }
 
-        if (skippedShops > 0) {
-            plugin.getLogger().warning("Skipped " + skippedShops + " shops due to errors.");
+    private static long chunkOf(long blockKey) {
+        return ChunkOccupancy.chunkKey(BlockKey.x(blockKey) >> 4, BlockKey.z(blockKey) >> 4);
+    }
+
+    /**
+     * Check the unverified shops in a chunk that just loaded (ChunkLoadEvent)
+     */
+    public void verifyChunk(World world, int chunkX, int chunkZ) {
+        LongObjectMap<IntSet> chunks = unverifiedChunks.get(world.getName());
+        if (chunks == null) {
+            return;
+        }
+        IntSet chunkIds = chunks.get(ChunkOccupancy.chunkKey(chunkX, chunkZ));
+        if (chunkIds == null) {
+            return;
         }
+        for (int id : chunkIds.toArray()) {
+            verifyShop(id);
+        }
+    }
 
-        plugin.getLogger().info("Loaded " + shops.size() + " shops.");
+    /**
+     * Check every unverified shop whose chunks are already loaded (e.g. spawn
+     * chunks, which never fire a ChunkLoadEvent after the plugin enables)
+     */
+    public void verifyLoadedShops() {
+        int removed = 0;
+        for (int id : unverifiedShops.toArray()) {
+            if (!verifyShop(id)) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            plugin.getLogger().info("Removed " + removed + " shops whose sign or chest no longer exists.");
+        }
+    }
+
+    /**
+     * Verify a shop on first use if it hasn't been checked yet. Returns null if
+     * there is no shop or it was stale.
+     */
+    private Shop verifyOnAccess(int id) {
+        if (id == ShopTable.NO_SHOP) {
+            return null;
+        }
+        if (!unverifiedShops.isEmpty() && unverifiedShops.contains(id) && !verifyShop(id)) {
+            return null;
+        }
+        return table.get(id);
+    }
+
+    /**
+     * Check a shop's sign and chest if both chunks are loaded (never loads a chunk).
+     * A stale shop is removed. Returns false only if the shop was removed.
+     */
+    private boolean verifyShop(int id) {
+        String signWorldName = table.signWorld(id);
+        String chestWorldName = table.chestWorld(id);
+        World signWorld = Bukkit.getWorld(signWorldName);
+        World chestWorld = Bukkit.getWorld(chestWorldName);
+        long sign = table.signPos(id);
+        long chest = table.chestPos(id);
+        int signX = BlockKey.x(sign), signY = BlockKey.y(sign), signZ = BlockKey.z(sign);
+        int chestX = BlockKey.x(chest), chestY = BlockKey.y(chest), chestZ = BlockKey.z(chest);
+        if (signWorld == null || chestWorld == null
+                || !signWorld.isChunkLoaded(signX >> 4, signZ >> 4)
+                || !chestWorld.isChunkLoaded(chestX >> 4, chestZ >> 4)) {
+            return true; // Checked when the other chunk loads
+        }
+        markVerified(id);
+
+        Material signType = signWorld.getBlockAt(signX, signY, signZ).getType();
+        Material chestType = chestWorld.getBlockAt(chestX, chestY, chestZ).getType();
+
+        String reason = null;
+        if (!isSign(signType)) {
+            reason = "sign block no longer exists";
+        } else if (chestType != Material.CHEST && chestType != Material.TRAPPED_CHEST) {
+            reason = "chest block no longer exists at " + chestWorldName + ":" + chestX + ":" + chestY + ":" + chestZ;
+        }
+        if (reason == null) {
+            return true;
+        }
+
+        plugin.getLogger().warning("Removing shop " + signWorldName + ":" + signX + ":" + signY + ":" + signZ + ": " + reason);
+        if (plugin.isHologramsEnabled() && plugin.getHologramManager() != null) {
+            plugin.getHologramManager().removeHologram(table.get(id));
+        }
+        removeShop(signWorldName, signX, signY, signZ);
+        return false;
     }
 
     /**
@@ -350,20 +906,23 @@ public class ShopManager {
     }
 
     /**
-     * Start the auto-save task that runs every 5 minutes
+     * Start the auto-save task that runs every 5 minutes.
+     * Only stores with unsaved changes (or an oversized journal) are checkpointed.
      */
     public void startAutoSave() {
         if (autoSaveTaskId != -1) {
             return; // Already running
         }
 
-        autoSaveTaskId = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
-            if (dirty) {
+        // Runs on the main thread so the shop list is captured consistently
+        autoSaveTaskId = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+            saveStock();
+            if (store.needsCheckpoint(shops.size())) {
                 saveShopsAsync();
             }
         }, AUTO_SAVE_INTERVAL, AUTO_SAVE_INTERVAL).getTaskId();
 
-        plugin.getLogger().info("Auto-save started (every 5 minutes)");
+        plugin.getLogger().info("Auto-save started (" + store.getName() + " storage, checked every 5 minutes)");
     }
 
     /**
@@ -377,66 +936,29 @@ public class ShopManager {
     }
 
     /**
-     * Save shops asynchronously (doesn't freeze the server)
+     * Write every shop to the store in the background (doesn't freeze the server)
      */
     public void saveShopsAsync() {
-        // Take a snapshot of the data on the main thread context
-        final List<Shop> shopSnapshot = new ArrayList<>(shops.values());
-        dirty = false; // Reset flag before saving
-
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            synchronized (saveLock) {
-                YamlConfiguration config = new YamlConfiguration();
-
-                int index = 0;
-                for (Shop shop : shopSnapshot) {
-                    String path = "shops." + index;
-                    config.set(path + ".owner-uuid", shop.getOwnerUUID().toString());
-                    config.set(path + ".owner-name", shop.getOwnerName());
-
-                    Location signLoc = shop.getSignLocation();
-                    Location chestLoc = shop.getChestLocation();
-                    String signWorld = signLoc.getWorld() != null ? signLoc.getWorld().getName() : "world";
-                    String chestWorld = chestLoc.getWorld() != null ? chestLoc.getWorld().getName() : "world";
-
-                    config.set(path + ".sign-world", signWorld);
-                    config.set(path + ".sign-x", signLoc.getBlockX());
-                    config.set(path + ".sign-y", signLoc.getBlockY());
-                    config.set(path + ".sign-z", signLoc.getBlockZ());
-                    config.set(path + ".chest-world", chestWorld);
-                    config.set(path + ".chest-x", chestLoc.getBlockX());
-                    config.set(path + ".chest-y", chestLoc.getBlockY());
-                    config.set(path + ".chest-z", chestLoc.getBlockZ());
-                    config.set(path + ".item", shop.getItem().name());
-                    config.set(path + ".amount", shop.getAmount());
-                    config.set(path + ".buy-price", shop.getBuyPrice());
-                    config.set(path + ".sell-price", shop.getSellPrice());
-                    index++;
-                }
-
-                try {
-                    if (shopsFile.exists()) {
-                        Files.copy(shopsFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                    }
-                    plugin.getDataFolder().mkdirs();
-                    config.save(shopsFile);
-                    plugin.getLogger().info("Auto-saved " + shopSnapshot.size() + " shops.");
-                } catch (IOException e) {
-                    plugin.getLogger().severe("Failed to auto-save shops: " + e.getMessage());
-                    dirty = true; // Mark dirty again so we retry next cycle
-                }
+        saveStock();
+        // Immutable snapshot - no copy needed, and later changes can't affect it
+        final List<Shop> shopSnapshot = getSnapshot().getShops();
+        store.checkpoint(shopSnapshot).thenAccept(success -> {
+            if (success) {
+                plugin.getLogger().info("Saved " + shopSnapshot.size() + " shops to " + store.getName() + " storage.");
             }
         });
     }
 
     /**
-     * Force an immediate save (used on shutdown)
+     * Flush pending changes and stop the writer (used on shutdown)
      */
     public void saveNow() {
         stopAutoSave();
-        if (dirty || !shops.isEmpty()) {
-            saveShops(); // Synchronous save
-            plugin.getLogger().info("Shops saved on shutdown.");
+        saveStock();
+        if (store.needsCheckpoint(shops.size())) {
+            saveShops();
         }
+        store.close();
+        plugin.getLogger().info("Shops saved on shutdown.");
     }
 }
@@ -0,0 +1,11 @@
+package com.chestshop.managers;
+
+import com.chestshop.models.Shop;
+
+import java.util.List;
+
+/**
+ * One page of a price-sorted shop listing (pages are 1-based)
+ */
+public record ShopPage(List<Shop> shops, int page, int pageCount, int total) {
+}
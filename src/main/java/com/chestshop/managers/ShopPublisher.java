@@ -0,0 +1,152 @@
+package com.chestshop.managers;
+
+import com.chestshop.models.Shop;
+import com.chestshop.util.IntSet;
+import org.bukkit.Material;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Builds the {@link ShopSnapshot}s published from a {@link ShopTable}.
+ *
+ * The list of all shops is made of immutable segments of 1024 ids each,
+ * shared between snapshots. A change only rebuilds the segment holding its
+ * id, so a trade costs one segment rather than a copy of every shop. Per-item
+ * lists are rebuilt for the items that changed. Main thread only, like the
+ * table.
+ */
+final class ShopPublisher {
+
+    private static final int SEGMENT_SHIFT = 10; // 1024 ids per segment
+    private static final Shop[] NO_SHOPS = new Shop[0];
+
+    private final ShopTable table;
+    private final Map<Material, IntSet> itemIndex;
+    private final Set<Material> changedItems = EnumSet.noneOf(Material.class);
+    private final BitSet dirtySegments = new BitSet();
+    private Shop[][] segments = new Shop[0][];
+    private boolean rebuildAll = false;
+
+    ShopPublisher(ShopTable table, Map<Material, IntSet> itemIndex) {
+        this.table = table;
+        this.itemIndex = itemIndex;
+    }
+
+    /**
+     * Record that the shop with this id, trading item, was added, removed or
+     * updated since the last publish
+     */
+    void changed(int id, Material item) {
+        changedItems.add(item);
+        dirtySegments.set(id >>> SEGMENT_SHIFT);
+    }
+
+    /**
+     * Rebuild everything on the next publish (after the table was cleared)
+     */
+    void changedAll() {
+        rebuildAll = true;
+    }
+
+    /**
+     * The snapshot following previous, with every change recorded since the last publish
+     */
+    ShopSnapshot publish(ShopSnapshot previous) {
+        int segmentCount = (table.highWater() + (1 << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT;
+        if (segmentCount != segments.length) {
+            int kept = segments.length;
+            segments = Arrays.copyOf(segments, segmentCount);
+            if (segmentCount > kept) {
+                dirtySegments.set(kept, segmentCount);
+            }
+        }
+        if (rebuildAll) {
+            dirtySegments.set(0, segmentCount);
+        }
+        for (int segment = dirtySegments.nextSetBit(0); segment >= 0 && segment < segmentCount;
+             segment = dirtySegments.nextSetBit(segment + 1)) {
+            segments[segment] = buildSegment(segment);
+        }
+        dirtySegments.clear();
+
+        Iterable<Material> items = rebuildAll ? Arrays.asList(Material.values()) : changedItems;
+        ShopSnapshot next = previous.next(new SegmentedList(segments.clone()), this::shopsWithItem, items);
+        changedItems.clear();
+        rebuildAll = false;
+        return next;
+    }
+
+    private Shop[] buildSegment(int segment) {
+        int first = segment << SEGMENT_SHIFT;
+        List<Shop> shops = new ArrayList<>();
+        for (int id = first; id < first + (1 << SEGMENT_SHIFT); id++) {
+            Shop shop = table.get(id);
+            if (shop != null) {
+                shops.add(shop);
+            }
+        }
+        return shops.isEmpty() ? NO_SHOPS : shops.toArray(NO_SHOPS);
+    }
+
+    private List<Shop> shopsWithItem(Material item) {
+        IntSet ids = itemIndex.get(item);
+        if (ids == null) {
+            return List.of();
+        }
+        List<Shop> itemShops = new ArrayList<>(ids.size());
+        ids.forEach(id -> itemShops.add(table.get(id)));
+        return Collections.unmodifiableList(itemShops);
+    }
+
+    /**
+     * Read-only list over segments that are never modified once built
+     */
+    private static final class SegmentedList extends AbstractList<Shop> implements RandomAccess {
+
+        private final Shop[][] segments;
+        private final int[] starts; // Index of each segment's first shop
+        private final int size;
+
+        SegmentedList(Shop[][] segments) {
+            this.segments = segments;
+            this.starts = new int[segments.length];
+            int total = 0;
+            for (int i = 0; i < segments.length; i++) {
+                starts[i] = total;
+                total += segments[i].length;
+            }
+            this.size = total;
+        }
+
+        @Override
+        public Shop get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            int segment = Arrays.binarySearch(starts, index);
+            if (segment < 0) {
+                segment = -segment - 2; // Last segment starting before index
+            } else {
+                // Empty segments share a start with the next one - skip to the one holding it
+                while (segments[segment].length == 0) {
+                    segment++;
+                }
+            }
+            return segments[segment][index - starts[segment]];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
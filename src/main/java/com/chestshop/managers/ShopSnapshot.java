@@ -0,0 +1,70 @@
+package com.chestshop.managers;
+
+import com.chestshop.models.Shop;
+import org.bukkit.Material;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable, versioned view of all shops, safe to read from any thread.
+ *
+ * Published by {@link ShopManager} after each batch of changes (built by
+ * {@link ShopPublisher}). Per-item lists that didn't change, and the parts of
+ * the shop list that didn't, are shared with the previous snapshot.
+ */
+public final class ShopSnapshot {
+
+    static final ShopSnapshot EMPTY = new ShopSnapshot(0, List.of(), new EnumMap<>(Material.class));
+
+    private final long version;
+    private final List<Shop> shops;
+    private final Map<Material, List<Shop>> byItem;
+
+    ShopSnapshot(long version, List<Shop> shops, EnumMap<Material, List<Shop>> byItem) {
+        this.version = version;
+        this.shops = shops;
+        this.byItem = Collections.unmodifiableMap(byItem);
+    }
+
+    /**
+     * Incremented on every publish - equal versions mean identical contents
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Shop> getShops() {
+        return shops;
+    }
+
+    public List<Shop> getShopsByItem(Material item) {
+        return byItem.getOrDefault(item, List.of());
+    }
+
+    public int size() {
+        return shops.size();
+    }
+
+    /**
+     * Build the next snapshot, rebuilding only the item lists that changed
+     * (itemShops must return lists the caller won't modify later)
+     */
+    ShopSnapshot next(List<Shop> allShops, Function<Material, List<Shop>> itemShops,
+                      Iterable<Material> changedItems) {
+        EnumMap<Material, List<Shop>> items = new EnumMap<>(Material.class);
+        items.putAll(byItem);
+        for (Material item : changedItems) {
+            List<Shop> shops = itemShops.apply(item);
+            if (shops.isEmpty()) {
+                items.remove(item);
+            } else {
+                items.put(item, shops);
+            }
+        }
+        return new ShopSnapshot(version + 1, allShops, items);
+    }
+}
@@ -0,0 +1,205 @@
+package com.chestshop.managers;
+
+import com.chestshop.models.Shop;
+import com.chestshop.models.ShopOwner;
+import com.chestshop.util.LongIntMap;
+import org.bukkit.Material;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+/**
+ * Shops addressed by a dense int id.
+ *
+ * Ids are stable: they are saved with each shop and claimed again on load.
+ * Removed ids go on a free list and are reused. The secondary indexes in
+ * {@link ShopManager} hold ids. Each id maps to one immutable {@link Shop},
+ * which is both the stored record and the handle handed to the API and the
+ * published snapshots - positions are already packed and worlds and owners
+ * interned there, so separate primitive columns would only store every shop
+ * twice. Main thread only.
+ */
+final class ShopTable {
+
+    static final int NO_SHOP = LongIntMap.MISSING;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MIN_ID_LIMIT = 1024;
+
+    private Shop[] handles = new Shop[INITIAL_CAPACITY]; // Null marks a free slot
+
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int highWater; // One past the highest id ever claimed
+    private int size;
+    private int idLimit = MIN_ID_LIMIT; // Preferred ids at or above this get a fresh one instead
+
+    /**
+     * Store a shop, keeping its id if it has a free one. Returns the id used;
+     * {@link #get} returns the shop with that id.
+     */
+    int add(Shop shop) {
+        int id = claim(shop.getId());
+        handles[id] = shop.getId() == id ? shop : shop.withId(id);
+        size++;
+        return id;
+    }
+
+    /**
+     * Free an id. Returns the shop that held it, or null.
+     */
+    Shop remove(int id) {
+        Shop shop = get(id);
+        if (shop == null) {
+            return null;
+        }
+        handles[id] = null;
+        pushFree(id);
+        size--;
+        return shop;
+    }
+
+    /**
+     * Replace the stock counts of a live id. Shops are immutable, so this swaps
+     * in an updated copy; snapshots holding the old one are unaffected.
+     */
+    void setStock(int id, int stock, int space) {
+        handles[id] = handles[id].withStock(stock, space);
+    }
+
+    Shop get(int id) {
+        return id >= 0 && id < highWater ? handles[id] : null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * One past the highest id claimed since the last clear
+     */
+    int highWater() {
+        return highWater;
+    }
+
+    /**
+     * Drop every shop before loading expectedShops stored ones. Stored ids are
+     * only kept below twice that, so one corrupt id can't make the table and
+     * free list allocate millions of slots.
+     */
+    void clear(int expectedShops) {
+        idLimit = Math.max(MIN_ID_LIMIT, 2 * expectedShops);
+        Arrays.fill(handles, 0, highWater, null);
+        highWater = 0;
+        freeCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Drop interned owners no stored shop uses, so the intern table doesn't
+     * keep every owner (and every name they ever had) seen since startup
+     */
+    void pruneOwners() {
+        Set<ShopOwner> inUse = new HashSet<>();
+        forEach(id -> inUse.add(handles[id].getOwner()));
+        ShopOwner.retainOnly(inUse);
+    }
+
+    /**
+     * Visit every live id in ascending order
+     */
+    void forEach(IntConsumer action) {
+        for (int id = 0; id < highWater; id++) {
+            if (handles[id] != null) {
+                action.accept(id);
+            }
+        }
+    }
+
+    // ===== Fields of a live id =====
+
+    String signWorld(int id) {
+        return handles[id].getSignWorldName();
+    }
+
+    long signPos(int id) {
+        return handles[id].getSignKey();
+    }
+
+    String chestWorld(int id) {
+        return handles[id].getChestWorldName();
+    }
+
+    long chestPos(int id) {
+        return handles[id].getChestKey();
+    }
+
+    UUID owner(int id) {
+        return handles[id].getOwnerUUID();
+    }
+
+    Material item(int id) {
+        return handles[id].getItem();
+    }
+
+    double buyPrice(int id) {
+        return handles[id].getBuyPrice();
+    }
+
+    double sellPrice(int id) {
+        return handles[id].getSellPrice();
+    }
+
+    int stock(int id) {
+        return handles[id].getStock();
+    }
+
+    int space(int id) {
+        return handles[id].getSpace();
+    }
+
+    // ===== Helpers =====
+
+    /**
+     * Use the preferred id if it's free, otherwise a recycled or new one
+     */
+    private int claim(int preferred) {
+        if (preferred >= 0 && preferred < idLimit && (preferred >= highWater || handles[preferred] == null)) {
+            if (preferred >= highWater) {
+                ensureCapacity(preferred + 1);
+                // Skipped ids become free for later shops
+                for (int id = highWater; id < preferred; id++) {
+                    pushFree(id);
+                }
+                highWater = preferred + 1;
+            }
+            return preferred;
+        }
+        // The free list may hold ids claimed by preference since - skip those
+        while (freeCount > 0) {
+            int id = freeIds[--freeCount];
+            if (id < highWater && handles[id] == null) {
+                return id;
+            }
+        }
+        ensureCapacity(highWater + 1);
+        return highWater++;
+    }
+
+    private void pushFree(int id) {
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= handles.length) {
+            return;
+        }
+        handles = Arrays.copyOf(handles, Math.max(capacity, handles.length + (handles.length >> 1)));
+    }
+}
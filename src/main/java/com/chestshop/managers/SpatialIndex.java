@@ -0,0 +1,191 @@
+package com.chestshop.managers;
+
+import com.chestshop.util.BlockKey;
+import com.chestshop.util.ChunkOccupancy;
+import com.chestshop.util.IntSet;
+import com.chestshop.util.LongObjectMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Uniform grid over shop sign positions: per world, 64x64-block cells
+ * (keyed like chunks) holding shop ids.
+ *
+ * Nearest-shop queries scan rings of cells outward from the query point and
+ * stop once no closer shop can exist, so the cost depends on how many cells
+ * are near the player, not on the total shop count. Main thread only.
+ */
+final class SpatialIndex {
+
+    private static final int CELL_SHIFT = 6;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+    private final ShopTable table;
+    private final Map<String, LongObjectMap<IntSet>> worlds = new HashMap<>();
+
+    SpatialIndex(ShopTable table) {
+        this.table = table;
+    }
+
+    void add(int id) {
+        long sign = table.signPos(id);
+        long cell = ChunkOccupancy.chunkKey(BlockKey.x(sign) >> CELL_SHIFT, BlockKey.z(sign) >> CELL_SHIFT);
+        LongObjectMap<IntSet> cells = worlds.computeIfAbsent(table.signWorld(id), k -> new LongObjectMap<>());
+        IntSet ids = cells.get(cell);
+        if (ids == null) {
+            ids = new IntSet();
+            cells.put(cell, ids);
+        }
+        ids.add(id);
+    }
+
+    /**
+     * Must run while the id's columns are still in the table
+     */
+    void remove(int id) {
+        String world = table.signWorld(id);
+        LongObjectMap<IntSet> cells = worlds.get(world);
+        if (cells == null) {
+            return;
+        }
+        long sign = table.signPos(id);
+        long cell = ChunkOccupancy.chunkKey(BlockKey.x(sign) >> CELL_SHIFT, BlockKey.z(sign) >> CELL_SHIFT);
+        IntSet ids = cells.get(cell);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            cells.remove(cell);
+            if (cells.isEmpty()) {
+                worlds.remove(world);
+            }
+        }
+    }
+
+    void clear() {
+        worlds.clear();
+    }
+
+    /**
+     * Up to limit shop ids within radius blocks of the point that match the
+     * filter, nearest first
+     */
+    int[] nearest(String world, int x, int y, int z, int radius, int limit, IntPredicate filter) {
+        LongObjectMap<IntSet> cells = worlds.get(world);
+        if (cells == null || limit <= 0) {
+            return new int[0];
+        }
+        Nearest found = new Nearest(limit, (long) radius * radius);
+        IntConsumer offer = id -> {
+            if (filter.test(id)) {
+                long sign = table.signPos(id);
+                long dx = BlockKey.x(sign) - x;
+                long dy = BlockKey.y(sign) - y;
+                long dz = BlockKey.z(sign) - z;
+                found.offer(id, dx * dx + dy * dy + dz * dz);
+            }
+        };
+
+        int cellX = x >> CELL_SHIFT;
+        int cellZ = z >> CELL_SHIFT;
+        int maxRing = (radius >> CELL_SHIFT) + 1;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Every block in this ring is at least (ring - 1) cells away
+            long minDistance = (long) Math.max(0, ring - 1) * CELL_SIZE;
+            if (minDistance * minDistance > found.worstDistance()) {
+                break;
+            }
+            if (ring == 0) {
+                visit(cells, cellX, cellZ, offer);
+                continue;
+            }
+            for (int d = -ring; d <= ring; d++) {
+                visit(cells, cellX + d, cellZ - ring, offer);
+                visit(cells, cellX + d, cellZ + ring, offer);
+            }
+            for (int d = -ring + 1; d < ring; d++) {
+                visit(cells, cellX - ring, cellZ + d, offer);
+                visit(cells, cellX + ring, cellZ + d, offer);
+            }
+        }
+        return found.ids();
+    }
+
+    /**
+     * Visit every shop id with its sign inside the block box (inclusive)
+     */
+    void forEachInArea(String world, int minX, int minZ, int maxX, int maxZ, IntConsumer action) {
+        LongObjectMap<IntSet> cells = worlds.get(world);
+        if (cells == null) {
+            return;
+        }
+        IntConsumer inBox = id -> {
+            long sign = table.signPos(id);
+            int x = BlockKey.x(sign);
+            int z = BlockKey.z(sign);
+            if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+                action.accept(id);
+            }
+        };
+        long cellCount = ((long) (maxX >> CELL_SHIFT) - (minX >> CELL_SHIFT) + 1) * ((maxZ >> CELL_SHIFT) - (minZ >> CELL_SHIFT) + 1);
+        if (cellCount > cells.size()) {
+            // Box covers more cells than are occupied - walk the occupied ones instead
+            cells.forEachValue(ids -> ids.forEach(inBox));
+            return;
+        }
+        for (int cellX = minX >> CELL_SHIFT; cellX <= maxX >> CELL_SHIFT; cellX++) {
+            for (int cellZ = minZ >> CELL_SHIFT; cellZ <= maxZ >> CELL_SHIFT; cellZ++) {
+                visit(cells, cellX, cellZ, inBox);
+            }
+        }
+    }
+
+    private static void visit(LongObjectMap<IntSet> cells, int cellX, int cellZ, IntConsumer action) {
+        IntSet ids = cells.get(ChunkOccupancy.chunkKey(cellX, cellZ));
+        if (ids != null) {
+            ids.forEach(action);
+        }
+    }
+
+    /**
+     * The closest ids seen so far, sorted by distance (small limits, so insertion sort)
+     */
+    private static final class Nearest {
+        private final int[] ids;
+        private final long[] distances;
+        private final long maxDistance;
+        private int size;
+
+        Nearest(int limit, long maxDistance) {
+            this.ids = new int[limit];
+            this.distances = new long[limit];
+            this.maxDistance = maxDistance;
+        }
+
+        /**
+         * Distance a new id must beat to be kept
+         */
+        long worstDistance() {
+            return size < ids.length ? maxDistance : distances[size - 1];
+        }
+
+        void offer(int id, long distance) {
+            if (distance > worstDistance() || (size == ids.length && distance == distances[size - 1])) {
+                return;
+            }
+            int at = size < ids.length ? size++ : size - 1;
+            while (at > 0 && distances[at - 1] > distance) {
+                ids[at] = ids[at - 1];
+                distances[at] = distances[at - 1];
+                at--;
+            }
+            ids[at] = id;
+            distances[at] = distance;
+        }
+
+        int[] ids() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
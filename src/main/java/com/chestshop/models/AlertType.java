@@ -0,0 +1,18 @@
+package com.chestshop.models;
+
+/**
+ * Kinds of alerts sent to shop owners. The order is part of the alert log
+ * format - add new types at the end.
+ */
+public enum AlertType {
+    /** Stock at or below the low stock threshold (value: items left) */
+    LOW_STOCK,
+    /** No stock left */
+    OUT_OF_STOCK,
+    /** Chest can't take another sale */
+    SHOP_FULL,
+    /** Owner's balance below the low funds threshold (value: balance) */
+    LOW_MONEY,
+    /** Ready-made text from before alerts were typed */
+    MESSAGE
+}
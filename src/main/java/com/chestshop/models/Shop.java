@@ -1,51 +1,203 @@
 package com.chestshop.models;
 
+import com.chestshop.util.BlockKey;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 
 import java.util.UUID;
 
+/**
+ * Immutable shop. Block positions are stored packed ({@link BlockKey}) with
+ * interned worlds and owners, so the coordinate getters don't allocate;
+ * Locations are only built when asked for.
+ */
 public class Shop {
 
-    private final UUID ownerUUID;
-    private final String ownerName;
-    private final Location signLocation;
-    private final Location chestLocation;
+    private final int id; // Dense shop table id, -1 until the shop is registered
+    private final ShopOwner owner;
+    private final WorldRef signWorld;
+    private final WorldRef chestWorld;
+    private final long signPos;
+    private final long chestPos;
     private final Material item;
     private final int amount;
     private final double buyPrice;  // Price for players to buy (0 = not for sale)
     private final double sellPrice; // Price for players to sell (0 = not buying)
+    private final int stock; // Shop items in the chest, -1 until counted
+    private final int space; // Shop items that still fit in the chest, -1 until counted
 
     public Shop(UUID ownerUUID, String ownerName, Location signLocation, Location chestLocation,
                 Material item, int amount, double buyPrice, double sellPrice) {
-        this.ownerUUID = ownerUUID;
-        this.ownerName = ownerName;
-        this.signLocation = signLocation;
-        this.chestLocation = chestLocation;
+        this(-1, ShopOwner.of(ownerUUID, ownerName),
+                WorldRef.of(signLocation.getWorld()), pack(signLocation),
+                WorldRef.of(chestLocation.getWorld()), pack(chestLocation),
+                item, amount, buyPrice, sellPrice, -1, -1);
+    }
+
+    public Shop(int id, UUID ownerUUID, String ownerName,
+                String signWorld, int signX, int signY, int signZ,
+                String chestWorld, int chestX, int chestY, int chestZ,
+                Material item, int amount, double buyPrice, double sellPrice, int stock, int space) {
+        this(id, ShopOwner.of(ownerUUID, ownerName),
+                WorldRef.of(signWorld), BlockKey.pack(signX, signY, signZ),
+                WorldRef.of(chestWorld), BlockKey.pack(chestX, chestY, chestZ),
+                item, amount, buyPrice, sellPrice, stock, space);
+    }
+
+    private Shop(int id, ShopOwner owner, WorldRef signWorld, long signPos, WorldRef chestWorld, long chestPos,
+                 Material item, int amount, double buyPrice, double sellPrice, int stock, int space) {
+        this.id = id;
+        this.owner = owner;
+        this.signWorld = signWorld;
+        this.signPos = signPos;
+        this.chestWorld = chestWorld;
+        this.chestPos = chestPos;
         this.item = item;
         this.amount = amount;
         this.buyPrice = buyPrice;
         this.sellPrice = sellPrice;
+        this.stock = stock;
+        this.space = space;
+    }
+
+    private static long pack(Location location) {
+        return BlockKey.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Stable id assigned by the ShopManager (kept across restarts), or -1 if not registered
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Copy of this shop with a different id
+     */
+    public Shop withId(int id) {
+        return new Shop(id, owner, signWorld, signPos, chestWorld, chestPos, item, amount, buyPrice, sellPrice, stock, space);
+    }
+
+    /**
+     * Copy of this shop with different stock counts
+     */
+    public Shop withStock(int stock, int space) {
+        return new Shop(id, owner, signWorld, signPos, chestWorld, chestPos, item, amount, buyPrice, sellPrice, stock, space);
+    }
+
+    /**
+     * The interned owner record, shared by all shops loaded for this owner
+     */
+    public ShopOwner getOwner() {
+        return owner;
     }
 
     public UUID getOwnerUUID() {
-        return ownerUUID;
+        return owner.uuid();
     }
 
     public String getOwnerName() {
-        return ownerName;
+        return owner.name();
+    }
+
+    // ===== Sign =====
+
+    public String getSignWorldName() {
+        return signWorld.getName();
+    }
+
+    /**
+     * The sign's world, or null if it isn't loaded
+     */
+    public World getSignWorld() {
+        return signWorld.getWorld();
+    }
+
+    public int getSignX() {
+        return BlockKey.x(signPos);
+    }
+
+    public int getSignY() {
+        return BlockKey.y(signPos);
+    }
+
+    public int getSignZ() {
+        return BlockKey.z(signPos);
     }
 
+    /**
+     * Packed sign position (see {@link BlockKey})
+     */
+    public long getSignKey() {
+        return signPos;
+    }
+
+    /**
+     * The sign block, or null if its world isn't loaded
+     */
+    public Block getSignBlock() {
+        World world = signWorld.getWorld();
+        return world != null ? world.getBlockAt(getSignX(), getSignY(), getSignZ()) : null;
+    }
+
+    /**
+     * A new Location for the sign - prefer the coordinate getters where possible
+     */
     public Location getSignLocation() {
-        // Return a clone to prevent external modification
-        return signLocation.clone();
+        return new Location(signWorld.getWorld(), getSignX(), getSignY(), getSignZ());
+    }
+
+    // ===== Chest =====
+
+    public String getChestWorldName() {
+        return chestWorld.getName();
+    }
+
+    /**
+     * The chest's world, or null if it isn't loaded
+     */
+    public World getChestWorld() {
+        return chestWorld.getWorld();
+    }
+
+    public int getChestX() {
+        return BlockKey.x(chestPos);
+    }
+
+    public int getChestY() {
+        return BlockKey.y(chestPos);
     }
 
+    public int getChestZ() {
+        return BlockKey.z(chestPos);
+    }
+
+    /**
+     * Packed chest position (see {@link BlockKey})
+     */
+    public long getChestKey() {
+        return chestPos;
+    }
+
+    /**
+     * The chest block, or null if its world isn't loaded
+     */
+    public Block getChestBlock() {
+        World world = chestWorld.getWorld();
+        return world != null ? world.getBlockAt(getChestX(), getChestY(), getChestZ()) : null;
+    }
+
+    /**
+     * A new Location for the chest - prefer the coordinate getters where possible
+     */
     public Location getChestLocation() {
-        // Return a clone to prevent external modification
-        return chestLocation.clone();
+        return new Location(chestWorld.getWorld(), getChestX(), getChestY(), getChestZ());
     }
 
+    // ===== Trade =====
+
     public Material getItem() {
         return item;
     }
@@ -62,6 +214,24 @@ public class Shop {
         return sellPrice;
     }
 
+    // ===== Stock =====
+
+    /**
+     * Shop items in the chest as last counted, or -1 if never counted.
+     * Kept up to date by trades and when the chest is closed; may be stale
+     * right after a restart.
+     */
+    public int getStock() {
+        return stock;
+    }
+
+    /**
+     * How many more shop items fit in the chest as last counted, or -1 if never counted
+     */
+    public int getSpace() {
+        return space;
+    }
+
     public boolean canBuy() {
         return buyPrice > 0;
     }
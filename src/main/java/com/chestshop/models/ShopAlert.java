@@ -0,0 +1,32 @@
+package com.chestshop.models;
+
+import org.bukkit.Material;
+
+/**
+ * One alert for a shop owner, kept as data and turned into text only when
+ * it is shown. item is the shop's item when the alert was raised, so an
+ * alert whose shop was since replaced can be dropped. message is only set
+ * for {@link AlertType#MESSAGE} alerts.
+ */
+public record ShopAlert(AlertType type, int shopId, Material item, double value, long time, String message) {
+
+    public static ShopAlert of(AlertType type, Shop shop, double value) {
+        return new ShopAlert(type, shop.getId(), shop.getItem(), value, System.currentTimeMillis(), null);
+    }
+
+    public static ShopAlert message(String message, long time) {
+        return new ShopAlert(AlertType.MESSAGE, -1, null, 0, time, message);
+    }
+
+    /**
+     * Alerts with equal keys replace each other: one per shop and type. A
+     * message is keyed by its text, so only identical messages count as one.
+     */
+    public Object key() {
+        return type == AlertType.MESSAGE ? message : Long.valueOf(key(type, shopId));
+    }
+
+    public static long key(AlertType type, int shopId) {
+        return ((long) shopId << 8) | type.ordinal();
+    }
+}
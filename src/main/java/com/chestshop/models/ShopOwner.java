@@ -0,0 +1,37 @@
+package com.chestshop.models;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Owner UUID and name as stored on a shop. Interned, so all shops of an owner
+ * share one instance (and one copy of the name).
+ */
+public record ShopOwner(UUID uuid, String name) {
+
+    private static final ConcurrentMap<ShopOwner, ShopOwner> OWNERS = new ConcurrentHashMap<>();
+
+    public static ShopOwner of(UUID uuid, String name) {
+        ShopOwner owner = new ShopOwner(uuid, name);
+        ShopOwner existing = OWNERS.putIfAbsent(owner, owner);
+        return existing != null ? existing : owner;
+    }
+
+    /**
+     * Forget interned owners that aren't in use, e.g. those of removed shops or
+     * under an old name. Shops still holding a forgotten owner keep working;
+     * they just no longer share it with new shops.
+     */
+    public static void retainOnly(Collection<ShopOwner> inUse) {
+        OWNERS.keySet().retainAll(inUse);
+    }
+
+    /**
+     * Number of interned owners
+     */
+    public static int internedCount() {
+        return OWNERS.size();
+    }
+}
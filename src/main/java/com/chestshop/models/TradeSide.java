@@ -0,0 +1,11 @@
+package com.chestshop.models;
+
+/**
+ * Which side of a shop a player trades with
+ */
+public enum TradeSide {
+    /** Player buys from the shop (shop's buy price) */
+    BUY,
+    /** Player sells to the shop (shop's sell price) */
+    SELL
+}
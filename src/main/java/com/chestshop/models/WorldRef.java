@@ -0,0 +1,63 @@
+package com.chestshop.models;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interned reference to a world by name - one instance per world, shared by
+ * every shop in it. The World itself is held weakly (like Bukkit's Location)
+ * so an unloaded world can be collected; it is looked up again on next use.
+ */
+public final class WorldRef {
+
+    private static final ConcurrentMap<String, WorldRef> REFS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private volatile WeakReference<World> world = new WeakReference<>(null);
+
+    private WorldRef(String name) {
+        this.name = name;
+    }
+
+    public static WorldRef of(String name) {
+        return REFS.computeIfAbsent(name, WorldRef::new);
+    }
+
+    public static WorldRef of(World world) {
+        if (world == null) {
+            return of("unknown");
+        }
+        WorldRef ref = of(world.getName());
+        if (ref.world.get() != world) {
+            ref.world = new WeakReference<>(world);
+        }
+        return ref;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The loaded world, or null if it isn't loaded
+     */
+    public World getWorld() {
+        World loaded = world.get();
+        if (loaded == null) {
+            loaded = Bukkit.getWorld(name);
+            if (loaded != null) {
+                world = new WeakReference<>(loaded);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,405 @@
+package com.chestshop.storage;
+
+import com.chestshop.models.AlertType;
+import com.chestshop.models.ShopAlert;
+import org.bukkit.Material;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store for alerts waiting for offline shop owners (alerts.log).
+ * Records are typed alerts ({@link ShopAlert}) of a few dozen bytes; replay
+ * applies the same replace-and-cap rules as {@link PendingAlerts}, so a
+ * superseded alert is dropped at the next compaction.
+ *
+ * The main thread only queues appends and clears; a writer thread appends
+ * each batch with one write. Cleared alerts stay in the file until a
+ * compaction rewrites it with just the pending ones, once the file holds
+ * COMPACT_RATIO times more records than are pending. The writer keeps its
+ * own copy of the pending alerts for that, so compaction never touches the
+ * main thread.
+ *
+ * Framing is the same as the shop journal: [int length][int crc32][payload].
+ * A torn or corrupt tail is cut off on load. Intact records of an unknown
+ * kind (written by a newer version) are skipped, not treated as damage.
+ */
+public class AlertLog {
+
+    private static final byte OP_ADD = 1; // Text alert (also the only kind written by older versions)
+    private static final byte OP_CLEAR = 2;
+    private static final byte OP_ALERT = 3;
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    private static final int COMPACT_RATIO = 2;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    // Queue entries, consumed in order by the writer thread
+    private sealed interface Entry permits Append, Clear, Shutdown {}
+    private record Append(UUID player, ShopAlert alert) implements Entry {}
+    private record Clear(UUID player) implements Entry {}
+    private record Shutdown() implements Entry {}
+
+    private final File file;
+    private final Logger logger;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private Thread writerThread;
+
+    // Writer thread only once started
+    private final PendingAlerts pending;
+    private int fileRecords;
+    private FileChannel channel;
+    private boolean compactNow;
+    private File migratedFrom; // Renamed once its alerts are in the log
+
+    public AlertLog(File file, Logger logger, int maxPerOwner) {
+        this.file = file;
+        this.logger = logger;
+        this.pending = new PendingAlerts(maxPerOwner);
+    }
+
+    /**
+     * Replay the log (before {@link #start}) into the given alerts
+     */
+    public void load(PendingAlerts into) {
+        if (file.exists()) {
+            replay();
+        }
+        into.addAll(pending);
+    }
+
+    /**
+     * Add alerts read from an older format (before {@link #start}). They are
+     * written by a compaction as soon as the writer starts, and the old file
+     * is then renamed to .old.
+     */
+    public void importAlerts(PendingAlerts alerts, File legacyFile) {
+        pending.addAll(alerts);
+        compactNow = true;
+        migratedFrom = legacyFile;
+    }
+
+    public void start() {
+        if (writerThread != null) {
+            return;
+        }
+        try {
+            file.getParentFile().mkdirs();
+            channel = openChannel();
+        } catch (IOException e) {
+            logger.severe("Failed to open alert log: " + e.getMessage());
+        }
+        writerThread = new Thread(this::runWriter, "ChestShop-Alerts-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public void append(UUID player, ShopAlert alert) {
+        queue.add(new Append(player, alert));
+    }
+
+    public void clear(UUID player) {
+        queue.add(new Clear(player));
+    }
+
+    /**
+     * Write everything queued and stop the writer (main thread, on disable)
+     */
+    public void close() {
+        if (writerThread == null) {
+            return;
+        }
+        queue.add(new Shutdown());
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            logger.severe("Alert log writer did not finish in time - recent alerts may be lost!");
+        }
+        writerThread = null;
+    }
+
+    // ===== Writer thread =====
+
+    private void runWriter() {
+        if (compactNow) {
+            compact();
+        }
+        List<Entry> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+            running = write(batch);
+            batch.clear();
+            if (compactNow || (fileRecords >= COMPACT_MIN_RECORDS && fileRecords > COMPACT_RATIO * pending.size())) {
+                compact();
+            }
+        }
+        closeChannel();
+    }
+
+    /**
+     * Append one batch and apply it to the pending copy. Returns false on shutdown.
+     */
+    private boolean write(List<Entry> batch) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        boolean running = true;
+        int records = 0;
+        try {
+            for (Entry entry : batch) {
+                switch (entry) {
+                    case Append append -> {
+                        frame(buffer, encode(append.player(), append.alert()));
+                        pending.add(append.player(), append.alert());
+                        records++;
+                    }
+                    case Clear clear -> {
+                        if (pending.remove(clear.player()) != null) {
+                            frame(buffer, encodeClear(clear.player()));
+                            records++;
+                        }
+                    }
+                    case Shutdown shutdown -> running = false;
+                }
+            }
+            if (records > 0) {
+                if (channel == null) {
+                    throw new IOException("alert log is not open");
+                }
+                ByteBuffer data = ByteBuffer.wrap(buffer.toByteArray());
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(false);
+                fileRecords += records;
+            }
+        } catch (IOException e) {
+            // The pending copy is still right - rewrite the file from it
+            logger.warning("Failed to write alert log: " + e.getMessage());
+            compactNow = true;
+        }
+        return running;
+    }
+
+    /**
+     * Rewrite the log with only the pending alerts (temp file, then atomic replace)
+     */
+    private void compact() {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            pending.forEach((player, alert) -> {
+                try {
+                    frame(buffer, encode(player, alert));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // In-memory streams don't throw
+                }
+            });
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer data = ByteBuffer.wrap(buffer.toByteArray());
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+                out.force(true);
+            }
+            closeChannel();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            fileRecords = pending.size();
+            compactNow = false;
+            if (migratedFrom != null) {
+                File old = new File(migratedFrom.getParentFile(), migratedFrom.getName() + ".old");
+                if (migratedFrom.renameTo(old)) {
+                    logger.info("Moved pending alerts to " + file.getName() + " (old file kept as " + old.getName() + ")");
+                }
+                migratedFrom = null;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warning("Failed to compact alert log: " + e.getMessage());
+        } finally {
+            try {
+                if (channel == null) {
+                    channel = openChannel();
+                }
+            } catch (IOException e) {
+                logger.severe("Failed to reopen alert log: " + e.getMessage());
+            }
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to close alert log: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    // ===== Encoding =====
+
+    private static byte[] encode(UUID player, ShopAlert alert) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (alert.type() == AlertType.MESSAGE) {
+            out.writeByte(OP_ADD);
+            out.writeLong(player.getMostSignificantBits());
+            out.writeLong(player.getLeastSignificantBits());
+            out.writeUTF(alert.message());
+            out.writeLong(alert.time()); // Trailing, so older versions still read the record
+            return bytes.toByteArray();
+        }
+        out.writeByte(OP_ALERT);
+        out.writeLong(player.getMostSignificantBits());
+        out.writeLong(player.getLeastSignificantBits());
+        out.writeByte(alert.type().ordinal());
+        out.writeInt(alert.shopId());
+        out.writeUTF(alert.item().name());
+        out.writeDouble(alert.value());
+        out.writeLong(alert.time());
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeClear(UUID player) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(17);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_CLEAR);
+        out.writeLong(player.getMostSignificantBits());
+        out.writeLong(player.getLeastSignificantBits());
+        return bytes.toByteArray();
+    }
+
+    private static void frame(ByteArrayOutputStream buffer, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream frame = new DataOutputStream(buffer);
+        frame.writeInt(payload.length);
+        frame.writeInt((int) crc.getValue());
+        frame.write(payload);
+    }
+
+    /**
+     * Replay all intact records into the pending copy
+     */
+    private void replay() {
+        long validLength = 0;
+        int skipped = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break; // Clean end of log
+                }
+                int checksum = in.readInt();
+                if (length <= 0 || length > 1 << 20) {
+                    throw new IOException("invalid record length " + length);
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException("checksum mismatch");
+                }
+
+                if (!apply(payload)) {
+                    skipped++;
+                }
+                validLength += 8 + length;
+                fileRecords++;
+            }
+        } catch (IOException e) {
+            // Torn or corrupt tail (crash mid-write) - keep everything before it
+            String reason = e instanceof EOFException ? "incomplete record" : e.getMessage();
+            logger.warning("Alert log damaged after " + fileRecords + " records (" + reason + "), discarding the rest.");
+            try (FileChannel truncate = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                truncate.truncate(validLength);
+            } catch (IOException ex) {
+                logger.severe("Failed to trim alert log: " + ex.getMessage());
+            }
+        }
+        if (skipped > 0) {
+            logger.warning("Skipped " + skipped + " alert log records of an unknown kind (written by a newer version?).");
+        }
+    }
+
+    /**
+     * Apply one intact record. Returns false if it was skipped: an unknown
+     * record or alert type, or a payload too short for its type.
+     */
+    private boolean apply(byte[] payload) {
+        try {
+            return applyRecord(payload);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean applyRecord(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        UUID player = new UUID(in.readLong(), in.readLong());
+        switch (op) {
+            case OP_ADD -> {
+                String message = in.readUTF();
+                long time = in.available() >= 8 ? in.readLong() : 0; // Absent in logs from before message times
+                pending.add(player, ShopAlert.message(message, time));
+            }
+            case OP_CLEAR -> pending.remove(player);
+            case OP_ALERT -> {
+                int type = in.readByte();
+                int shopId = in.readInt();
+                Material item = Material.matchMaterial(in.readUTF());
+                double value = in.readDouble();
+                long time = in.readLong();
+                AlertType[] types = AlertType.values();
+                if (type < 0 || type >= types.length) {
+                    return false;
+                }
+                if (item != null) { // Item gone after an update - the alert is moot
+                    pending.add(player, new ShopAlert(types[type], shopId, item, value, time, null));
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package com.chestshop.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Versioned binary snapshot of a set of shops (one region shard, or the old shops.dat).
+ *
+ * Layout (big-endian):
+ *   header   int magic, int version, int stringCount, int recordCount
+ *   strings  stringCount x [short length][UTF-8 bytes]  (worlds, owner names, item names)
+ *   records  recordCount x fixed-width RECORD_SIZE entries, strings stored as table indexes
+ *
+ * Version 2 starts each record with the shop's int id; version 3 appends the
+ * cached stock and space counts. Older files are still read, with missing
+ * values set to -1.
+ *
+ * Records are decoded straight from one buffer of the file's bytes, with no
+ * intermediate tree.
+ * Checksums and backups are handled by {@link SnapshotFile}.
+ */
+public final class BinarySnapshot {
+
+    private static final int MAGIC = 0x43534850; // "CSHP"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 16;
+
+    // id (version 2+), owner msb/lsb, owner name, sign world+xyz, chest world+xyz, item, amount, buy, sell,
+    // stock, space (version 3+)
+    private static final int RECORD_SIZE_V1 = 8 + 8 + 4 + 16 + 16 + 4 + 4 + 8 + 8;
+    private static final int RECORD_SIZE_V2 = 4 + RECORD_SIZE_V1;
+    private static final int RECORD_SIZE = RECORD_SIZE_V2 + 4 + 4;
+
+    private BinarySnapshot() {
+    }
+
+    public static byte[] encode(List<ShopRecord> records) throws IOException {
+        // Build the string table first so records can reference it by index
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (ShopRecord record : records) {
+            strings.putIfAbsent(record.ownerName(), strings.size());
+            strings.putIfAbsent(record.signWorld(), strings.size());
+            strings.putIfAbsent(record.chestWorld(), strings.size());
+            strings.putIfAbsent(record.item(), strings.size());
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(HEADER_SIZE + records.size() * RECORD_SIZE + strings.size() * 16);
+        try (DataOutputStream out = new DataOutputStream(output)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(strings.size());
+            out.writeInt(records.size());
+
+            for (String value : strings.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+
+            for (ShopRecord record : records) {
+                out.writeInt(record.id());
+                out.writeLong(record.ownerUUID().getMostSignificantBits());
+                out.writeLong(record.ownerUUID().getLeastSignificantBits());
+                out.writeInt(strings.get(record.ownerName()));
+                out.writeInt(strings.get(record.signWorld()));
+                out.writeInt(record.signX());
+                out.writeInt(record.signY());
+                out.writeInt(record.signZ());
+                out.writeInt(strings.get(record.chestWorld()));
+                out.writeInt(record.chestX());
+                out.writeInt(record.chestY());
+                out.writeInt(record.chestZ());
+                out.writeInt(strings.get(record.item()));
+                out.writeInt(record.amount());
+                out.writeDouble(record.buyPrice());
+                out.writeDouble(record.sellPrice());
+                out.writeInt(record.stock());
+                out.writeInt(record.space());
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Read a snapshot file without a checksum footer (the pre-shard shops.dat).
+     * Not mapped - the file is renamed once migrated, which a live mapping blocks on Windows.
+     */
+    public static List<ShopRecord> read(File file) throws IOException {
+        return decode(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    public static List<ShopRecord> decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("not a shop snapshot");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            int stringCount = buffer.getInt();
+            int recordCount = buffer.getInt();
+
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                strings[i] = bytes.length == 0 ? "" : new String(bytes, StandardCharsets.UTF_8).intern();
+            }
+
+            int base = buffer.position();
+            int recordSize = version == 1 ? RECORD_SIZE_V1 : version == 2 ? RECORD_SIZE_V2 : RECORD_SIZE;
+            int idSize = version == 1 ? 0 : 4;
+            if ((long) recordCount * recordSize > buffer.limit() - base) {
+                throw new IOException("snapshot is truncated");
+            }
+
+            List<ShopRecord> records = new ArrayList<>(recordCount);
+            for (int i = 0; i < recordCount; i++) {
+                int start = base + i * recordSize;
+                int id = version == 1 ? -1 : buffer.getInt(start);
+                int at = start + idSize;
+                boolean counted = version >= 3;
+                records.add(new ShopRecord(id,
+                        new UUID(buffer.getLong(at), buffer.getLong(at + 8)),
+                        strings[buffer.getInt(at + 16)],
+                        strings[buffer.getInt(at + 20)],
+                        buffer.getInt(at + 24), buffer.getInt(at + 28), buffer.getInt(at + 32),
+                        strings[buffer.getInt(at + 36)],
+                        buffer.getInt(at + 40), buffer.getInt(at + 44), buffer.getInt(at + 48),
+                        strings[buffer.getInt(at + 52)],
+                        buffer.getInt(at + 56),
+                        buffer.getDouble(at + 60),
+                        buffer.getDouble(at + 68),
+                        counted ? buffer.getInt(at + 76) : -1,
+                        counted ? buffer.getInt(at + 80) : -1));
+            }
+            return records;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("snapshot is corrupt", e);
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package com.chestshop.storage;
+
+import com.chestshop.models.Shop;
+import org.bukkit.Location;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Default store: binary snapshots sharded by region (shops/<world>/r.<x>.<z>.dat,
+ * 512x512 blocks like Minecraft's own region files) plus an append-only
+ * write-ahead journal (shops.journal) of changes since the last checkpoint.
+ *
+ * Each batch of changes is appended with one write + fsync. Every change also
+ * marks its region dirty; a checkpoint rewrites only the dirty regions (in
+ * parallel) and then truncates the journal. Regions are loaded in parallel too,
+ * and a corrupt region file falls back to its own backups (see {@link SnapshotFile})
+ * without affecting any other region.
+ *
+ * Journal framing: [int length][int crc32][payload]. A torn or corrupt tail is
+ * detected on replay and cut off, so a crash loses at most the last batch.
+ * Additions are written as OP_ADD_ID (with the shop id); OP_ADD records from
+ * older journals are still replayed. Stock count updates are small OP_STOCK
+ * records keyed by sign position.
+ */
+public class FileShopStore extends QueuedShopStore {
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_ADD_ID = 3;
+    private static final byte OP_STOCK = 4;
+    private static final int REGION_SHIFT = 9; // 512 blocks per region, as in the world's .mca files
+    private static final int MAX_THREADS = 4; // Parallel shard reads/writes
+
+    /**
+     * One region shard file
+     */
+    private record Shard(String world, int regionX, int regionZ) {
+        static Shard of(String world, int x, int z) {
+            return new Shard(world, x >> REGION_SHIFT, z >> REGION_SHIFT);
+        }
+    }
+
+    /**
+     * Shards to write for one queued checkpoint (captured when it was queued)
+     */
+    private record PendingCheckpoint(Set<Shard> shards, boolean all) {}
+
+    private final File dataFolder;
+    private final File journalFile;
+    private final File shardFolder;
+    private final File legacySnapshot; // Pre-shard shops.dat, migrated on the first checkpoint
+    private final File legacySnapshotBackup;
+    private final File legacyFile; // Pre-binary shops.yml, migrated on the first checkpoint
+    private final int backups; // Compressed generations kept per shard
+    private FileChannel channel; // Only touched by the writer thread once started
+
+    // Dirty tracking - marked on the main thread, handed to the writer with each checkpoint
+    private volatile Set<Shard> dirtyShards = ConcurrentHashMap.newKeySet();
+    private volatile boolean rewriteAll = false; // Loaded from a legacy file or migrated - every shard must be written
+    private final Queue<PendingCheckpoint> pendingCheckpoints = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean failed = false; // A write failed - next checkpoint must rewrite everything
+
+    public FileShopStore(Logger logger, File dataFolder, int backups) {
+        super(logger);
+        this.dataFolder = dataFolder;
+        this.backups = backups;
+        this.journalFile = new File(dataFolder, "shops.journal");
+        this.shardFolder = new File(dataFolder, "shops");
+        this.legacySnapshot = new File(dataFolder, "shops.dat");
+        this.legacySnapshotBackup = new File(dataFolder, "shops.dat.backup");
+        this.legacyFile = new File(dataFolder, "shops.yml");
+    }
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public List<ShopRecord> load() {
+        // Keyed by sign location so journal entries can replace/remove snapshot entries
+        Map<String, ShopRecord> shops = new LinkedHashMap<>();
+        for (ShopRecord record : readSnapshot()) {
+            shops.put(key(record.signWorld(), record.signX(), record.signY(), record.signZ()), record);
+        }
+
+        // Apply everything that changed since the snapshot was written
+        replayJournal(shops);
+        return new ArrayList<>(shops.values());
+    }
+
+    @Override
+    public void shopAdded(Shop shop) {
+        dirtyShards.add(Shard.of(shop.getSignWorldName(), shop.getSignX(), shop.getSignZ()));
+        super.shopAdded(shop);
+    }
+
+    @Override
+    public void shopRemoved(String world, int x, int y, int z) {
+        dirtyShards.add(Shard.of(world, x, z));
+        super.shopRemoved(world, x, y, z);
+    }
+
+    @Override
+    public void stockChanged(Shop shop) {
+        dirtyShards.add(Shard.of(shop.getSignWorldName(), shop.getSignX(), shop.getSignZ()));
+        super.stockChanged(shop);
+    }
+
+    @Override
+    public void invalidate() {
+        rewriteAll = true;
+    }
+
+    /**
+     * Checkpoint whenever a region changed - only those regions are rewritten
+     */
+    @Override
+    public boolean needsCheckpoint(int shopCount) {
+        return failed || rewriteAll || !dirtyShards.isEmpty();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> checkpoint(Collection<Shop> shops) {
+        // Hand the dirty set to this checkpoint; later changes start a fresh one
+        Set<Shard> shards = dirtyShards;
+        dirtyShards = ConcurrentHashMap.newKeySet();
+        pendingCheckpoints.add(new PendingCheckpoint(shards, rewriteAll || failed));
+        rewriteAll = false;
+        return super.checkpoint(shops);
+    }
+
+    @Override
+    protected void open() throws IOException {
+        dataFolder.mkdirs();
+        channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    protected void writeFailed() {
+        failed = true;
+    }
+
+    @Override
+    protected void checkpointed() {
+        failed = false;
+    }
+
+    @Override
+    protected void closeResources() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to close shop journal: " + e.getMessage());
+        }
+    }
+
+    // ===== Snapshot =====
+
+    /**
+     * Read all region shards, or a legacy shops.dat / shops.yml if there are none yet
+     */
+    private List<ShopRecord> readSnapshot() {
+        List<File> shardFiles = listShardFiles();
+        if (!shardFiles.isEmpty()) {
+            return readShards(shardFiles);
+        }
+
+        if (legacySnapshot.exists()) {
+            logger.info("Converting shops.dat to per-region shard files...");
+            rewriteAll = true;
+            try {
+                return BinarySnapshot.read(legacySnapshot);
+            } catch (IOException e) {
+                logger.severe("Failed to read shops.dat: " + e.getMessage());
+                if (legacySnapshotBackup.exists()) {
+                    logger.warning("Attempting to restore from backup...");
+                    try {
+                        return BinarySnapshot.read(legacySnapshotBackup);
+                    } catch (IOException ex) {
+                        logger.severe("Failed to read backup: " + ex.getMessage());
+                    }
+                }
+                return new ArrayList<>();
+            }
+        }
+
+        if (legacyFile.exists()) {
+            logger.info("Converting shops.yml to the binary shard format...");
+            rewriteAll = true;
+            return YamlSnapshot.read(legacyFile, logger);
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     * Read shard files in parallel. A shard that can't be read (or restored from
+     * one of its backups) is skipped on its own.
+     */
+    private List<ShopRecord> readShards(List<File> shardFiles) {
+        List<Callable<List<ShopRecord>>> tasks = new ArrayList<>(shardFiles.size());
+        for (File file : shardFiles) {
+            tasks.add(() -> readShard(file));
+        }
+
+        List<ShopRecord> records = new ArrayList<>();
+        try {
+            for (List<ShopRecord> shard : runParallel(tasks)) {
+                records.addAll(shard);
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to read shop shards: " + e.getMessage());
+        }
+        return records;
+    }
+
+    private List<ShopRecord> readShard(File file) {
+        try {
+            List<ShopRecord> records = shardSnapshot(file).read(BinarySnapshot::decode, logger);
+            return records != null ? records : new ArrayList<>();
+        } catch (IOException e) {
+            String name = shardFolder.toPath().relativize(file.toPath()).toString();
+            logger.severe("Failed to read shop shard " + name + ", its shops were not loaded: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Rewrite the regions changed since the previous checkpoint (all of them after
+     * a migration or failed write), then start a fresh journal
+     */
+    @Override
+    protected void writeSnapshot(List<ShopRecord> records) throws IOException {
+        PendingCheckpoint pending = pendingCheckpoints.poll();
+        boolean all = pending == null || pending.all();
+        Set<Shard> dirty = pending != null ? pending.shards() : Set.of();
+
+        // Group the shops of each region being written
+        Map<Shard, List<ShopRecord>> shards = new HashMap<>();
+        if (!all) {
+            for (Shard shard : dirty) {
+                shards.put(shard, new ArrayList<>());
+            }
+        }
+        for (ShopRecord record : records) {
+            Shard shard = Shard.of(record.signWorld(), record.signX(), record.signZ());
+            List<ShopRecord> shardRecords = all ? shards.computeIfAbsent(shard, k -> new ArrayList<>()) : shards.get(shard);
+            if (shardRecords != null) {
+                shardRecords.add(record);
+            }
+        }
+
+        // Full rewrite: regions that no longer have shops must go too
+        if (all) {
+            for (File file : listShardFiles()) {
+                Shard shard = shardOf(file);
+                if (shard != null) {
+                    shards.putIfAbsent(shard, new ArrayList<>());
+                }
+            }
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(shards.size());
+        for (Map.Entry<Shard, List<ShopRecord>> entry : shards.entrySet()) {
+            tasks.add(() -> {
+                writeShard(entry.getKey(), entry.getValue());
+                return null;
+            });
+        }
+        try {
+            runParallel(tasks);
+        } catch (IOException e) {
+            // Journal still holds these changes - retry the same regions next time
+            dirtyShards.addAll(dirty);
+            if (all) {
+                failed = true;
+            }
+            throw e;
+        }
+
+        // Shards now hold everything - start a fresh journal
+        if (channel != null) {
+            channel.truncate(0);
+            channel.force(true);
+        }
+
+        // The shards now hold everything - retire the old single-file snapshots
+        retire(legacySnapshot, "shops.dat.migrated");
+        retire(legacyFile, "shops.yml.migrated");
+    }
+
+    /**
+     * Write (or delete, if empty) one shard file, rotating its backups
+     */
+    private void writeShard(Shard shard, List<ShopRecord> records) throws IOException {
+        SnapshotFile snapshot = shardSnapshot(shardFile(shard));
+        if (records.isEmpty()) {
+            snapshot.delete();
+            return;
+        }
+        snapshot.write(BinarySnapshot.encode(records));
+    }
+
+    private SnapshotFile shardSnapshot(File file) {
+        return new SnapshotFile(file, SnapshotFile.Format.BINARY, backups);
+    }
+
+    private void retire(File file, String migratedName) throws IOException {
+        if (file.exists()) {
+            Files.move(file.toPath(), new File(dataFolder, migratedName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            logger.info("Migrated " + file.getName() + " to per-region shards (old file kept as " + migratedName + ").");
+        }
+    }
+
+    private File shardFile(Shard shard) {
+        return new File(new File(shardFolder, shard.world()), "r." + shard.regionX() + "." + shard.regionZ() + ".dat");
+    }
+
+    /**
+     * Parse a shard back from its file (shops/<world>/r.<x>.<z>.dat)
+     */
+    private Shard shardOf(File file) {
+        String[] parts = file.getName().split("\\.");
+        if (parts.length != 4 || !parts[0].equals("r") || !parts[3].equals("dat")) {
+            return null;
+        }
+        try {
+            return new Shard(file.getParentFile().getName(), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private List<File> listShardFiles() {
+        Set<File> files = new TreeSet<>(); // Stable load order
+        File[] worlds = shardFolder.listFiles(File::isDirectory);
+        if (worlds == null) {
+            return new ArrayList<>(files);
+        }
+        for (File world : worlds) {
+            // A shard caught mid-rotation by a crash only has its .prev file
+            File[] shards = world.listFiles((dir, name) -> name.startsWith("r.")
+                    && (name.endsWith(".dat") || name.endsWith(".dat.prev")));
+            if (shards != null) {
+                for (File shard : shards) {
+                    File file = shard.getName().endsWith(".prev")
+                            ? new File(world, shard.getName().substring(0, shard.getName().length() - 5))
+                            : shard;
+                    if (shardOf(file) != null) {
+                        files.add(file);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Run independent shard tasks on a short-lived pool, returning results in task order
+     */
+    private <T> List<T> runParallel(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.isEmpty()) {
+            return results;
+        }
+        int threads = Math.min(tasks.size(), Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ChestShop-Shard-IO");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            IOException failure = null;
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (failure == null) {
+                        failure = cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // ===== Journal =====
+
+    @Override
+    protected void writeChanges(List<Change> changes) throws IOException {
+        if (channel == null) {
+            throw new IOException("journal is not open");
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (Change change : changes) {
+            encode(buffer, change);
+        }
+        ByteBuffer data = ByteBuffer.wrap(buffer.toByteArray());
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        channel.force(false);
+    }
+
+    private void encode(ByteArrayOutputStream buffer, Change change) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        switch (change) {
+            case Added added -> {
+                ShopRecord r = added.record();
+                out.writeByte(OP_ADD_ID);
+                out.writeInt(r.id());
+                out.writeLong(r.ownerUUID().getMostSignificantBits());
+                out.writeLong(r.ownerUUID().getLeastSignificantBits());
+                out.writeUTF(r.ownerName());
+                out.writeUTF(r.signWorld());
+                out.writeInt(r.signX());
+                out.writeInt(r.signY());
+                out.writeInt(r.signZ());
+                out.writeUTF(r.chestWorld());
+                out.writeInt(r.chestX());
+                out.writeInt(r.chestY());
+                out.writeInt(r.chestZ());
+                out.writeUTF(r.item());
+                out.writeInt(r.amount());
+                out.writeDouble(r.buyPrice());
+                out.writeDouble(r.sellPrice());
+                out.writeInt(r.stock());
+                out.writeInt(r.space());
+            }
+            case Removed removed -> {
+                out.writeByte(OP_REMOVE);
+                out.writeUTF(removed.world());
+                out.writeInt(removed.x());
+                out.writeInt(removed.y());
+                out.writeInt(removed.z());
+            }
+            case StockChanged changed -> {
+                out.writeByte(OP_STOCK);
+                out.writeUTF(changed.world());
+                out.writeInt(changed.x());
+                out.writeInt(changed.y());
+                out.writeInt(changed.z());
+                out.writeInt(changed.stock());
+                out.writeInt(changed.space());
+            }
+        }
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream frame = new DataOutputStream(buffer);
+        frame.writeInt(payload.length);
+        frame.writeInt((int) crc.getValue());
+        frame.write(payload);
+    }
+
+    /**
+     * Replay all intact journal records in order on top of the snapshot
+     */
+    private void replayJournal(Map<String, ShopRecord> shops) {
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        long validLength = 0;
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break; // Clean end of journal
+                }
+                int checksum = in.readInt();
+                if (length <= 0 || length > 1 << 20) {
+                    throw new IOException("invalid record length " + length);
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException("checksum mismatch");
+                }
+
+                apply(payload, shops);
+                validLength += 8 + length;
+                records++;
+            }
+        } catch (IOException e) {
+            // Torn or corrupt tail (crash mid-write) - keep everything before it
+            String reason = e instanceof EOFException ? "incomplete record" : e.getMessage();
+            logger.warning("Shop journal damaged after " + records + " records (" + reason + "), discarding the rest.");
+            try (FileChannel truncate = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+                truncate.truncate(validLength);
+            } catch (IOException ex) {
+                logger.severe("Failed to trim shop journal: " + ex.getMessage());
+            }
+        }
+
+        if (records > 0) {
+            logger.info("Replayed " + records + " shop journal records.");
+        }
+    }
+
+    private void apply(byte[] payload, Map<String, ShopRecord> shops) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        switch (op) {
+            case OP_ADD, OP_ADD_ID -> {
+                ShopRecord record = new ShopRecord(op == OP_ADD_ID ? in.readInt() : -1,
+                        new UUID(in.readLong(), in.readLong()), in.readUTF(),
+                        in.readUTF(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readUTF(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readUTF(), in.readInt(), in.readDouble(), in.readDouble(),
+                        -1, -1);
+                if (op == OP_ADD_ID && in.available() >= 8) {
+                    record = record.withStock(in.readInt(), in.readInt()); // Absent in journals from before stock counts
+                }
+                String key = key(record.signWorld(), record.signX(), record.signY(), record.signZ());
+                shops.remove(key); // Re-insert at the end, as the live index would
+                shops.put(key, record);
+            }
+            case OP_REMOVE -> shops.remove(key(in.readUTF(), in.readInt(), in.readInt(), in.readInt()));
+            case OP_STOCK -> {
+                String key = key(in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+                int stock = in.readInt();
+                int space = in.readInt();
+                shops.computeIfPresent(key, (k, record) -> record.withStock(stock, space));
+            }
+            default -> throw new IOException("unknown record type " + op);
+        }
+    }
+
+    private static String key(String world, int x, int y, int z) {
+        return world + ":" + x + ":" + y + ":" + z;
+    }
+}
@@ -0,0 +1,74 @@
+package com.chestshop.storage;
+
+import org.bukkit.Material;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * A stored shop that passed validation but isn't bound to a world yet.
+ * Built from a {@link ShopRecord} on worker threads; only resolving worlds and
+ * blocks is left for the main thread.
+ */
+public record ParsedShop(String key, int id, UUID ownerUUID, String ownerName,
+                         String signWorld, int signX, int signY, int signZ,
+                         String chestWorld, int chestX, int chestY, int chestZ,
+                         Material item, int amount, double buyPrice, double sellPrice,
+                         int stock, int space) {
+
+    /**
+     * Validate every record in parallel, keeping the stored order.
+     * Records that can't be restored are logged and left out.
+     */
+    public static List<ParsedShop> parseAll(List<ShopRecord> records, Logger logger) {
+        return records.parallelStream()
+                .map(record -> parse(record, logger))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Validate a stored shop. Returns null (after logging why) if it can't be restored.
+     */
+    public static ParsedShop parse(ShopRecord record, Logger logger) {
+        String key = record.signWorld() + ":" + record.signX() + ":" + record.signY() + ":" + record.signZ();
+
+        // Get world names (resolved later, on the main thread)
+        if (record.signWorld() == null || record.chestWorld() == null) {
+            logger.warning("Skipping shop " + key + ": missing world name");
+            return null;
+        }
+        if (record.ownerUUID() == null) {
+            logger.warning("Skipping shop " + key + ": missing owner-uuid");
+            return null;
+        }
+
+        // Safe Material parsing with fallback
+        String itemName = record.item();
+        Material item;
+        try {
+            item = Material.valueOf(itemName);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            logger.warning("Skipping shop " + key + ": invalid item '" + itemName + "'");
+            return null;
+        }
+
+        int amount = record.amount();
+        double buyPrice = record.buyPrice();
+        double sellPrice = record.sellPrice();
+
+        // Validate loaded prices (in case file was manually edited)
+        if (buyPrice < 0) buyPrice = 0;
+        if (sellPrice < 0) sellPrice = 0;
+        if (amount <= 0 || amount > 64) amount = 1;
+
+        return new ParsedShop(key, record.id() >= 0 ? record.id() : -1, record.ownerUUID(),
+                record.ownerName() != null ? record.ownerName() : "Unknown",
+                record.signWorld(), record.signX(), record.signY(), record.signZ(),
+                record.chestWorld(), record.chestX(), record.chestY(), record.chestZ(),
+                item, amount, buyPrice, sellPrice,
+                Math.max(-1, record.stock()), Math.max(-1, record.space()));
+    }
+}
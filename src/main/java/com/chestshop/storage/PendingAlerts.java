@@ -0,0 +1,85 @@
+package com.chestshop.storage;
+
+import com.chestshop.models.ShopAlert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Alerts waiting for offline owners: per owner, at most one alert per
+ * {@link ShopAlert#key()} (a newer one replaces the older and moves to the
+ * back), and at most maxPerOwner alerts - the oldest is dropped beyond that.
+ * Adding is O(1). Not thread-safe; each thread keeps its own copy.
+ */
+public final class PendingAlerts {
+
+    private final int maxPerOwner;
+    private final Map<UUID, LinkedHashMap<Object, ShopAlert>> byOwner = new HashMap<>();
+    private int size;
+
+    public PendingAlerts(int maxPerOwner) {
+        this.maxPerOwner = Math.max(1, maxPerOwner);
+    }
+
+    public void add(UUID owner, ShopAlert alert) {
+        LinkedHashMap<Object, ShopAlert> queue = byOwner.computeIfAbsent(owner, k -> new LinkedHashMap<>());
+        Object key = alert.key();
+        if (queue.remove(key) == null) {
+            size++;
+        }
+        queue.put(key, alert);
+        if (queue.size() > maxPerOwner) {
+            Iterator<ShopAlert> oldest = queue.values().iterator();
+            oldest.next();
+            oldest.remove();
+            size--;
+        }
+    }
+
+    /**
+     * Take all of an owner's alerts, oldest first (null if there are none)
+     */
+    public List<ShopAlert> remove(UUID owner) {
+        LinkedHashMap<Object, ShopAlert> queue = byOwner.remove(owner);
+        if (queue == null) {
+            return null;
+        }
+        size -= queue.size();
+        return new ArrayList<>(queue.values());
+    }
+
+    public int count(UUID owner) {
+        LinkedHashMap<Object, ShopAlert> queue = byOwner.get(owner);
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * Every pending alert, owner by owner, oldest first
+     */
+    public void forEach(BiConsumer<UUID, ShopAlert> action) {
+        byOwner.forEach((owner, queue) -> queue.values().forEach(alert -> action.accept(owner, alert)));
+    }
+
+    public void addAll(PendingAlerts other) {
+        other.forEach(this::add);
+    }
+
+    /** Total alerts over all owners */
+    public int size() {
+        return size;
+    }
+
+    public int owners() {
+        return byOwner.size();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,236 @@
+package com.chestshop.storage;
+
+import com.chestshop.models.Shop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Base for stores that persist on a single background writer thread.
+ *
+ * Mutations are queued from the main thread. The writer drains everything queued
+ * since its last pass and hands it to {@link #writeChanges(List)} as one batch
+ * (group commit). Checkpoints and reloads are ordered in the same queue, so they
+ * always reflect exactly the mutations queued before them.
+ */
+public abstract class QueuedShopStore implements ShopStore {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    /**
+     * A single mutation handed to {@link #writeChanges(List)}
+     */
+    protected sealed interface Change permits Added, Removed, StockChanged {}
+    protected record Added(ShopRecord record) implements Change {}
+    protected record Removed(String world, int x, int y, int z) implements Change {}
+    protected record StockChanged(String world, int x, int y, int z, int stock, int space) implements Change {}
+
+    // Queue entries, consumed in order by the writer thread
+    private sealed interface Entry permits Mutation, Checkpoint, Reload, Shutdown {}
+    private record Mutation(Change change) implements Entry {}
+    private record Checkpoint(Collection<Shop> shops, CompletableFuture<Boolean> done) implements Entry {}
+    private record Reload(CompletableFuture<List<ShopRecord>> done) implements Entry {}
+    private record Shutdown() implements Entry {}
+
+    protected final Logger logger;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private Thread writerThread;
+
+    protected QueuedShopStore(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Prepare for writing (called on the starting thread before the writer runs)
+     */
+    protected abstract void open() throws IOException;
+
+    /**
+     * Persist one batch of mutations, in order (writer thread)
+     */
+    protected abstract void writeChanges(List<Change> changes) throws IOException;
+
+    /**
+     * Replace everything stored with the given shops (writer thread)
+     */
+    protected abstract void writeSnapshot(List<ShopRecord> records) throws IOException;
+
+    /**
+     * Release resources (writer thread, after the last write)
+     */
+    protected abstract void closeResources();
+
+    @Override
+    public void start() {
+        if (writerThread != null) {
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            logger.severe("Failed to open " + getName() + " shop storage: " + e.getMessage());
+            writeFailed();
+        }
+        writerThread = new Thread(this::runWriter, "ChestShop-" + getName() + "-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void shopAdded(Shop shop) {
+        queue.add(new Mutation(new Added(ShopRecord.of(shop))));
+    }
+
+    @Override
+    public void shopRemoved(String world, int x, int y, int z) {
+        queue.add(new Mutation(new Removed(world, x, y, z)));
+    }
+
+    @Override
+    public void stockChanged(Shop shop) {
+        queue.add(new Mutation(new StockChanged(shop.getSignWorldName(), shop.getSignX(), shop.getSignY(), shop.getSignZ(),
+                shop.getStock(), shop.getSpace())));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> checkpoint(Collection<Shop> shops) {
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        queue.add(new Checkpoint(shops, done));
+        return done;
+    }
+
+    @Override
+    public CompletableFuture<List<ShopRecord>> reload() {
+        CompletableFuture<List<ShopRecord>> done = new CompletableFuture<>();
+        if (writerThread == null || !writerThread.isAlive()) {
+            try {
+                done.complete(load());
+            } catch (IOException e) {
+                done.completeExceptionally(e);
+            }
+            return done;
+        }
+        queue.add(new Reload(done));
+        return done;
+    }
+
+    @Override
+    public void close() {
+        if (writerThread == null) {
+            return;
+        }
+        queue.add(new Shutdown());
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            logger.severe("Shop storage writer did not finish in time - recent changes may be lost!");
+        }
+        writerThread = null;
+    }
+
+    /**
+     * Called when a write fails; the next checkpoint should rewrite everything
+     */
+    protected void writeFailed() {
+    }
+
+    /**
+     * Called after a successful checkpoint
+     */
+    protected void checkpointed() {
+    }
+
+    // ===== Writer thread =====
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+            running = process(batch);
+            batch.clear();
+        }
+        closeResources();
+    }
+
+    /**
+     * Write one batch. Mutations are committed together; checkpoints and reloads
+     * commit everything before them first. Returns false on shutdown.
+     */
+    private boolean process(List<Entry> batch) {
+        List<Change> changes = new ArrayList<>();
+
+        for (Entry entry : batch) {
+            switch (entry) {
+                case Mutation mutation -> changes.add(mutation.change());
+                case Checkpoint checkpoint -> {
+                    commit(changes);
+                    runCheckpoint(checkpoint);
+                }
+                case Reload reload -> {
+                    commit(changes);
+                    runReload(reload);
+                }
+                case Shutdown shutdown -> {
+                    commit(changes);
+                    return false;
+                }
+            }
+        }
+
+        commit(changes);
+        return true;
+    }
+
+    private void commit(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            writeChanges(changes);
+        } catch (IOException | RuntimeException e) {
+            // Unchecked too (driver or encoding errors) - the writer thread must survive
+            logger.severe("Failed to write shop changes to " + getName() + " storage: " + e);
+            writeFailed(); // Next checkpoint will capture these changes
+        }
+        changes.clear();
+    }
+
+    private void runCheckpoint(Checkpoint checkpoint) {
+        try {
+            List<ShopRecord> records = new ArrayList<>(checkpoint.shops().size());
+            for (Shop shop : checkpoint.shops()) {
+                records.add(ShopRecord.of(shop));
+            }
+            writeSnapshot(records);
+            checkpointed();
+            checkpoint.done().complete(true);
+        } catch (Exception e) {
+            logger.severe("Failed to save shops: " + e.getMessage());
+            checkpoint.done().complete(false);
+        }
+    }
+
+    private void runReload(Reload reload) {
+        try {
+            reload.done().complete(load());
+        } catch (Exception e) {
+            reload.done().completeExceptionally(e);
+        }
+    }
+}
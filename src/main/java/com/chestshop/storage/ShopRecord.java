@@ -0,0 +1,30 @@
+package com.chestshop.storage;
+
+import com.chestshop.models.Shop;
+
+import java.util.UUID;
+
+/**
+ * Plain, world-independent form of a shop as it is written to disk.
+ * Holds names instead of Bukkit objects so it can be built and read off the main thread.
+ * The id is -1 for shops saved before ids existed; stock and space are -1 if never counted.
+ */
+public record ShopRecord(int id, UUID ownerUUID, String ownerName,
+                         String signWorld, int signX, int signY, int signZ,
+                         String chestWorld, int chestX, int chestY, int chestZ,
+                         String item, int amount, double buyPrice, double sellPrice,
+                         int stock, int space) {
+
+    public static ShopRecord of(Shop shop) {
+        return new ShopRecord(shop.getId(), shop.getOwnerUUID(), shop.getOwnerName(),
+                shop.getSignWorldName(), shop.getSignX(), shop.getSignY(), shop.getSignZ(),
+                shop.getChestWorldName(), shop.getChestX(), shop.getChestY(), shop.getChestZ(),
+                shop.getItem().name(), shop.getAmount(), shop.getBuyPrice(), shop.getSellPrice(),
+                shop.getStock(), shop.getSpace());
+    }
+
+    public ShopRecord withStock(int stock, int space) {
+        return new ShopRecord(id, ownerUUID, ownerName, signWorld, signX, signY, signZ,
+                chestWorld, chestX, chestY, chestZ, item, amount, buyPrice, sellPrice, stock, space);
+    }
+}
@@ -0,0 +1,72 @@
+package com.chestshop.storage;
+
+import com.chestshop.models.Shop;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Persistence backend for shops.
+ *
+ * Mutations are handed over from the main thread and must return immediately;
+ * implementations do their I/O on their own thread.
+ */
+public interface ShopStore {
+
+    /**
+     * Name used for this backend in config.yml and log messages
+     */
+    String getName();
+
+    /**
+     * Read every stored shop. Only called before {@link #start()}; use {@link #reload()} afterwards.
+     */
+    List<ShopRecord> load() throws IOException;
+
+    /**
+     * Start accepting writes
+     */
+    void start();
+
+    void shopAdded(Shop shop);
+
+    void shopRemoved(String world, int x, int y, int z);
+
+    /**
+     * The shop's cached stock counts changed (everything else is unchanged)
+     */
+    void stockChanged(Shop shop);
+
+    /**
+     * True if {@link #checkpoint(Collection)} should run (checked periodically)
+     */
+    boolean needsCheckpoint(int shopCount);
+
+    /**
+     * Persist the complete set of shops, replacing whatever is stored.
+     * Stores may rewrite only what changed since the previous checkpoint;
+     * call {@link #invalidate()} first if the stored data is unrelated to it.
+     * The collection must not be modified afterwards.
+     */
+    CompletableFuture<Boolean> checkpoint(Collection<Shop> shops);
+
+    /**
+     * The stored shops no longer match the ones in memory (e.g. they were
+     * migrated from another store) - the next checkpoint must rewrite everything
+     */
+    default void invalidate() {
+    }
+
+    /**
+     * Read every stored shop off the main thread, once everything handed over
+     * before this call is persisted
+     */
+    CompletableFuture<List<ShopRecord>> reload();
+
+    /**
+     * Flush and release all resources
+     */
+    void close();
+}
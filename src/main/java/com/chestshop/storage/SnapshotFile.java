@@ -0,0 +1,297 @@
+package com.chestshop.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A snapshot file that is replaced atomically and keeps compressed backups.
+ *
+ * Writes go to a temp file with a CRC32C footer, are fsynced, and renamed over
+ * the live file. The previous file is renamed aside (no copy) and then deflated
+ * into generation 1 (name.1.z); older generations shift up by rename and the
+ * oldest is dropped.
+ *
+ * Reads verify the checksum and fall back through name.prev (left by a crash
+ * mid-rotation) and name.1.z ... name.N.z until one decodes. Files without a
+ * footer (written before checksums existed, or edited by hand) are accepted as-is.
+ */
+public final class SnapshotFile {
+
+    /**
+     * Footer style: a fixed binary trailer, or a comment line for text formats
+     */
+    public enum Format { BINARY, TEXT }
+
+    /**
+     * Turns verified file contents into a value; throws if the contents are unusable
+     */
+    @FunctionalInterface
+    public interface Decoder<T> {
+        T decode(ByteBuffer data) throws IOException;
+    }
+
+    private static final int FOOTER_MAGIC = 0x43534346; // "CSCF"
+    private static final int FOOTER_SIZE = 12; // int length, int crc32c, int magic
+    private static final String TEXT_FOOTER = "# crc32c: ";
+
+    private final File file;
+    private final Format format;
+    private final int generations;
+
+    public SnapshotFile(File file, Format format, int generations) {
+        this.file = file;
+        this.format = format;
+        this.generations = Math.max(0, generations);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * True if there is anything to read (the live file or a crash leftover)
+     */
+    public boolean exists() {
+        return file.exists() || previousFile().exists();
+    }
+
+    // ===== Writing =====
+
+    public void write(byte[] data) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+
+        // Full new copy on disk before anything is renamed
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(seal(data));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+
+        // Shift backups up one generation and move the live file aside (renames only)
+        File previous = previousFile();
+        if (generations > 0 && file.exists()) {
+            Files.deleteIfExists(generationFile(generations).toPath());
+            for (int i = generations - 1; i >= 1; i--) {
+                File older = generationFile(i);
+                if (older.exists()) {
+                    Files.move(older.toPath(), generationFile(i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file.toPath(), previous.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(parent);
+
+        // New file is in place - now compress the old one into generation 1
+        if (previous.exists()) {
+            File compressed = generationFile(1);
+            File compressedTemp = new File(compressed.getPath() + ".tmp");
+            Files.write(compressedTemp.toPath(), deflate(Files.readAllBytes(previous.toPath())));
+            Files.move(compressedTemp.toPath(), compressed.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(previous.toPath());
+        }
+    }
+
+    /**
+     * Remove the live file and all of its backups
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(previousFile().toPath());
+        for (int i = 1; i <= generations; i++) {
+            Files.deleteIfExists(generationFile(i).toPath());
+        }
+    }
+
+    private byte[] seal(byte[] data) {
+        CRC32C crc = new CRC32C();
+        if (format == Format.TEXT) {
+            // Checksum covers every line above the footer line
+            boolean newline = data.length == 0 || data[data.length - 1] == '\n';
+            byte[] body = newline ? data : ByteBuffer.allocate(data.length + 1).put(data).put((byte) '\n').array();
+            crc.update(body);
+            byte[] footer = (TEXT_FOOTER + String.format("%08x", crc.getValue()) + "\n").getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(body.length + footer.length).put(body).put(footer).array();
+        }
+        crc.update(data);
+        return ByteBuffer.allocate(data.length + FOOTER_SIZE).order(ByteOrder.BIG_ENDIAN)
+                .put(data)
+                .putInt(data.length)
+                .putInt((int) crc.getValue())
+                .putInt(FOOTER_MAGIC)
+                .array();
+    }
+
+    // ===== Reading =====
+
+    /**
+     * Read the newest intact generation. Returns null if none exist; throws if
+     * files exist but none of them can be read.
+     */
+    public <T> T read(Decoder<T> decoder, Logger logger) throws IOException {
+        List<File> candidates = new ArrayList<>();
+        candidates.add(file);
+        candidates.add(previousFile());
+        for (int i = 1; i <= generations; i++) {
+            candidates.add(generationFile(i));
+        }
+
+        IOException failure = null;
+        for (File candidate : candidates) {
+            if (!candidate.exists()) {
+                continue;
+            }
+            try {
+                T value = decoder.decode(verify(readContents(candidate)));
+                if (failure != null) {
+                    logger.warning("Restored " + file.getName() + " from " + candidate.getName() + ".");
+                }
+                return value;
+            } catch (IOException | RuntimeException e) {
+                logger.warning("Failed to read " + candidate.getName() + ": " + e.getMessage());
+                if (failure == null) {
+                    failure = e instanceof IOException io ? io : new IOException(e.getMessage(), e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IOException("no readable copy of " + file.getName() + " (" + failure.getMessage() + ")", failure);
+        }
+        return null;
+    }
+
+    private ByteBuffer readContents(File candidate) throws IOException {
+        if (candidate.getName().endsWith(".z")) {
+            return ByteBuffer.wrap(inflate(Files.readAllBytes(candidate.toPath())));
+        }
+        // Read into the heap rather than mapped: a mapping lives until GC, and on
+        // Windows the file can't be renamed aside by the next write while it does
+        return ByteBuffer.wrap(Files.readAllBytes(candidate.toPath()));
+    }
+
+    /**
+     * Check the footer and return just the data in front of it
+     */
+    private ByteBuffer verify(ByteBuffer contents) throws IOException {
+        int size = contents.limit();
+        CRC32C crc = new CRC32C();
+
+        if (format == Format.TEXT) {
+            int end = size;
+            if (end > 0 && contents.get(end - 1) == '\n') {
+                end--;
+            }
+            int lineStart = end;
+            while (lineStart > 0 && contents.get(lineStart - 1) != '\n') {
+                lineStart--;
+            }
+            byte[] line = new byte[end - lineStart];
+            contents.get(lineStart, line);
+            String lastLine = new String(line, StandardCharsets.UTF_8);
+            if (!lastLine.startsWith(TEXT_FOOTER)) {
+                return contents; // No checksum (edited by hand) - accept as-is
+            }
+            crc.update(contents.slice(0, lineStart));
+            if (!lastLine.substring(TEXT_FOOTER.length()).trim().equals(String.format("%08x", crc.getValue()))) {
+                throw new IOException("checksum mismatch (if you edited the file, remove its last '"
+                        + TEXT_FOOTER.trim() + "' line)");
+            }
+            return contents.slice(0, lineStart);
+        }
+
+        if (size < FOOTER_SIZE || contents.getInt(size - 4) != FOOTER_MAGIC) {
+            return contents; // Written before checksums existed
+        }
+        int length = contents.getInt(size - FOOTER_SIZE);
+        if (length != size - FOOTER_SIZE) {
+            throw new IOException("length mismatch");
+        }
+        ByteBuffer data = contents.slice(0, length);
+        crc.update(data.duplicate());
+        if ((int) crc.getValue() != contents.getInt(size - 8)) {
+            throw new IOException("checksum mismatch");
+        }
+        return data;
+    }
+
+    // ===== Helpers =====
+
+    private File previousFile() {
+        return new File(file.getPath() + ".prev");
+    }
+
+    private File generationFile(int generation) {
+        return new File(file.getPath() + "." + generation + ".z");
+    }
+
+    /**
+     * Make the rename itself durable (not supported on every platform)
+     */
+    private static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // e.g. Windows can't open directories - the rename is still atomic
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("compressed backup is truncated");
+                }
+                out.write(chunk, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("compressed backup is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.chestshop.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Embedded SQLite store (shops.db) with one row per shop.
+ *
+ * Every change is an individual insert or delete, so each shop is durable on its
+ * own and nothing is ever rewritten wholesale. The writer thread wraps each
+ * drained batch in a single transaction. Uses the SQLite driver bundled with
+ * Spigot/Paper.
+ */
+public class SqliteShopStore extends QueuedShopStore {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS shops ("
+            + "shop_id INTEGER NOT NULL DEFAULT -1, sign_world TEXT NOT NULL, sign_x INTEGER NOT NULL, sign_y INTEGER NOT NULL, sign_z INTEGER NOT NULL, "
+            + "owner_uuid TEXT NOT NULL, owner_name TEXT NOT NULL, "
+            + "chest_world TEXT NOT NULL, chest_x INTEGER NOT NULL, chest_y INTEGER NOT NULL, chest_z INTEGER NOT NULL, "
+            + "item TEXT NOT NULL, amount INTEGER NOT NULL, buy_price REAL NOT NULL, sell_price REAL NOT NULL, "
+            + "stock INTEGER NOT NULL DEFAULT -1, space INTEGER NOT NULL DEFAULT -1, "
+            + "PRIMARY KEY (sign_world, sign_x, sign_y, sign_z))";
+    private static final String UPSERT = "INSERT OR REPLACE INTO shops (sign_world, sign_x, sign_y, sign_z, "
+            + "owner_uuid, owner_name, chest_world, chest_x, chest_y, chest_z, item, amount, buy_price, sell_price, shop_id, stock, space) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_STOCK = "UPDATE shops SET stock = ?, space = ? "
+            + "WHERE sign_world = ? AND sign_x = ? AND sign_y = ? AND sign_z = ?";
+    private static final String DELETE = "DELETE FROM shops WHERE sign_world = ? AND sign_x = ? AND sign_y = ? AND sign_z = ?";
+    private static final String SELECT_ALL = "SELECT sign_world, sign_x, sign_y, sign_z, owner_uuid, owner_name, "
+            + "chest_world, chest_x, chest_y, chest_z, item, amount, buy_price, sell_price, shop_id, stock, space FROM shops";
+
+    private final File dataFolder;
+    private final String url;
+    private Connection connection; // Only touched by the writer thread once started
+    private volatile boolean failed = false; // A batch failed - rewrite everything on the next checkpoint
+
+    public SqliteShopStore(Logger logger, File dataFolder) {
+        super(logger);
+        this.dataFolder = dataFolder;
+        this.url = "jdbc:sqlite:" + new File(dataFolder, "shops.db").getAbsolutePath();
+    }
+
+    /**
+     * Check if the SQLite JDBC driver is present on this server
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public List<ShopRecord> load() throws IOException {
+        List<ShopRecord> records = new ArrayList<>();
+        dataFolder.mkdirs();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement statement = conn.createStatement()) {
+            createSchema(statement);
+            try (ResultSet rs = statement.executeQuery(SELECT_ALL)) {
+                while (rs.next()) {
+                    try {
+                        records.add(new ShopRecord(
+                                rs.getInt("shop_id"),
+                                UUID.fromString(rs.getString("owner_uuid")),
+                                rs.getString("owner_name"),
+                                rs.getString("sign_world"),
+                                rs.getInt("sign_x"), rs.getInt("sign_y"), rs.getInt("sign_z"),
+                                rs.getString("chest_world"),
+                                rs.getInt("chest_x"), rs.getInt("chest_y"), rs.getInt("chest_z"),
+                                rs.getString("item"),
+                                rs.getInt("amount"),
+                                rs.getDouble("buy_price"),
+                                rs.getDouble("sell_price"),
+                                rs.getInt("stock"),
+                                rs.getInt("space")));
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Skipping shop row with invalid owner-uuid: " + rs.getString("owner_uuid"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return records;
+    }
+
+    /**
+     * Rows are written individually - only a failed batch needs a full rewrite
+     */
+    @Override
+    public boolean needsCheckpoint(int shopCount) {
+        return failed;
+    }
+
+    @Override
+    protected void writeFailed() {
+        failed = true;
+    }
+
+    @Override
+    protected void checkpointed() {
+        failed = false;
+    }
+
+    @Override
+    protected void open() throws IOException {
+        try {
+            dataFolder.mkdirs();
+            connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                createSchema(statement);
+            }
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void writeChanges(List<Change> changes) throws IOException {
+        if (connection == null) {
+            throw new IOException("database is not open");
+        }
+        try (PreparedStatement upsert = connection.prepareStatement(UPSERT);
+             PreparedStatement delete = connection.prepareStatement(DELETE);
+             PreparedStatement updateStock = connection.prepareStatement(UPDATE_STOCK)) {
+            for (Change change : changes) {
+                switch (change) {
+                    case Added added -> {
+                        bindShop(upsert, added.record());
+                        upsert.executeUpdate();
+                    }
+                    case Removed removed -> {
+                        delete.setString(1, removed.world());
+                        delete.setInt(2, removed.x());
+                        delete.setInt(3, removed.y());
+                        delete.setInt(4, removed.z());
+                        delete.executeUpdate();
+                    }
+                    case StockChanged changed -> {
+                        updateStock.setInt(1, changed.stock());
+                        updateStock.setInt(2, changed.space());
+                        updateStock.setString(3, changed.world());
+                        updateStock.setInt(4, changed.x());
+                        updateStock.setInt(5, changed.y());
+                        updateStock.setInt(6, changed.z());
+                        updateStock.executeUpdate();
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replace every row (used when migrating into this store)
+     */
+    @Override
+    protected void writeSnapshot(List<ShopRecord> records) throws IOException {
+        if (connection == null) {
+            throw new IOException("database is not open");
+        }
+        try (Statement clear = connection.createStatement();
+             PreparedStatement upsert = connection.prepareStatement(UPSERT)) {
+            clear.executeUpdate("DELETE FROM shops");
+            for (ShopRecord record : records) {
+                bindShop(upsert, record);
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void closeResources() {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            logger.warning("Failed to close shop database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create the table, adding columns missing from older databases (shop_id, stock, space)
+     */
+    private static void createSchema(Statement statement) throws SQLException {
+        statement.executeUpdate(CREATE_TABLE);
+        Set<String> existing = new HashSet<>();
+        try (ResultSet columns = statement.executeQuery("PRAGMA table_info(shops)")) {
+            while (columns.next()) {
+                existing.add(columns.getString("name"));
+            }
+        }
+        for (String column : List.of("shop_id", "stock", "space")) {
+            if (!existing.contains(column)) {
+                statement.executeUpdate("ALTER TABLE shops ADD COLUMN " + column + " INTEGER NOT NULL DEFAULT -1");
+            }
+        }
+    }
+
+    private void bindShop(PreparedStatement statement, ShopRecord record) throws SQLException {
+        statement.setString(1, record.signWorld());
+        statement.setInt(2, record.signX());
+        statement.setInt(3, record.signY());
+        statement.setInt(4, record.signZ());
+        statement.setString(5, record.ownerUUID().toString());
+        statement.setString(6, record.ownerName());
+        statement.setString(7, record.chestWorld());
+        statement.setInt(8, record.chestX());
+        statement.setInt(9, record.chestY());
+        statement.setInt(10, record.chestZ());
+        statement.setString(11, record.item());
+        statement.setInt(12, record.amount());
+        statement.setDouble(13, record.buyPrice());
+        statement.setDouble(14, record.sellPrice());
+        statement.setInt(15, record.id());
+        statement.setInt(16, record.stock());
+        statement.setInt(17, record.space());
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.warning("Failed to roll back shop database: " + e.getMessage());
+        }
+    }
+}
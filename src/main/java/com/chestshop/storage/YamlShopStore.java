@@ -0,0 +1,90 @@
+package com.chestshop.storage;
+
+import com.chestshop.models.Shop;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * Classic shops.yml store: every checkpoint rewrites the whole file.
+ * Changes between checkpoints are only held in memory. Writes are atomic and
+ * checksummed, with compressed backups (see {@link SnapshotFile}).
+ */
+public class YamlShopStore extends QueuedShopStore {
+
+    private final SnapshotFile shopsFile;
+    private volatile boolean dirty = false; // Flag to track if data needs saving
+
+    public YamlShopStore(Logger logger, File dataFolder, int backups) {
+        super(logger);
+        this.shopsFile = new SnapshotFile(new File(dataFolder, "shops.yml"), SnapshotFile.Format.TEXT, backups);
+    }
+
+    @Override
+    public String getName() {
+        return "yaml";
+    }
+
+    @Override
+    public List<ShopRecord> load() throws IOException {
+        List<ShopRecord> records = shopsFile.read(
+                data -> YamlSnapshot.decode(StandardCharsets.UTF_8.decode(data).toString(), logger), logger);
+        return records != null ? records : new ArrayList<>();
+    }
+
+    @Override
+    public void shopAdded(Shop shop) {
+        dirty = true; // Saved on next auto-save cycle
+    }
+
+    @Override
+    public void shopRemoved(String world, int x, int y, int z) {
+        dirty = true;
+    }
+
+    @Override
+    public void stockChanged(Shop shop) {
+        dirty = true;
+    }
+
+    @Override
+    public boolean needsCheckpoint(int shopCount) {
+        return dirty;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> checkpoint(Collection<Shop> shops) {
+        dirty = false; // Reset flag before saving
+        return super.checkpoint(shops);
+    }
+
+    @Override
+    protected void open() {
+    }
+
+    @Override
+    protected void writeChanges(List<Change> changes) {
+        // Nothing is queued - changes are only written by checkpoints
+    }
+
+    @Override
+    protected void writeSnapshot(List<ShopRecord> records) throws IOException {
+        try {
+            // Temp file + rename; the old file becomes the newest backup
+            shopsFile.write(YamlSnapshot.encode(records).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            dirty = true; // Mark dirty again so we retry next cycle
+            throw e;
+        }
+    }
+
+    @Override
+    protected void closeResources() {
+    }
+}
@@ -0,0 +1,111 @@
+package com.chestshop.storage;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Reader and writer for the shops.yml format
+ */
+public final class YamlSnapshot {
+
+    private YamlSnapshot() {
+    }
+
+    public static String encode(List<ShopRecord> records) {
+        YamlConfiguration config = new YamlConfiguration();
+
+        int index = 0;
+        for (ShopRecord record : records) {
+            String path = "shops." + index;
+            config.set(path + ".id", record.id());
+            config.set(path + ".owner-uuid", record.ownerUUID().toString());
+            config.set(path + ".owner-name", record.ownerName());
+            config.set(path + ".sign-world", record.signWorld());
+            config.set(path + ".sign-x", record.signX());
+            config.set(path + ".sign-y", record.signY());
+            config.set(path + ".sign-z", record.signZ());
+            config.set(path + ".chest-world", record.chestWorld());
+            config.set(path + ".chest-x", record.chestX());
+            config.set(path + ".chest-y", record.chestY());
+            config.set(path + ".chest-z", record.chestZ());
+            config.set(path + ".item", record.item());
+            config.set(path + ".amount", record.amount());
+            config.set(path + ".buy-price", record.buyPrice());
+            config.set(path + ".sell-price", record.sellPrice());
+            config.set(path + ".stock", record.stock());
+            config.set(path + ".space", record.space());
+            index++;
+        }
+
+        return config.saveToString();
+    }
+
+    public static List<ShopRecord> decode(String yaml, Logger logger) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.loadFromString(yaml);
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("invalid YAML: " + e.getMessage(), e);
+        }
+        return read(config, logger);
+    }
+
+    public static List<ShopRecord> read(File file, Logger logger) {
+        return read(YamlConfiguration.loadConfiguration(file), logger);
+    }
+
+    private static List<ShopRecord> read(FileConfiguration shopsConfig, Logger logger) {
+        List<ShopRecord> records = new ArrayList<>();
+        ConfigurationSection shopsSection = shopsConfig.getConfigurationSection("shops");
+
+        if (shopsSection == null) {
+            return records;
+        }
+
+        for (String key : shopsSection.getKeys(false)) {
+            String path = "shops." + key;
+
+            try {
+                // Safe null checks for all string values
+                String uuidString = shopsConfig.getString(path + ".owner-uuid");
+                if (uuidString == null || uuidString.isEmpty()) {
+                    logger.warning("Skipping shop " + key + ": missing owner-uuid");
+                    continue;
+                }
+
+                records.add(new ShopRecord(
+                        shopsConfig.getInt(path + ".id", -1),
+                        UUID.fromString(uuidString),
+                        shopsConfig.getString(path + ".owner-name", "Unknown"),
+                        shopsConfig.getString(path + ".sign-world"),
+                        shopsConfig.getInt(path + ".sign-x"),
+                        shopsConfig.getInt(path + ".sign-y"),
+                        shopsConfig.getInt(path + ".sign-z"),
+                        shopsConfig.getString(path + ".chest-world"),
+                        shopsConfig.getInt(path + ".chest-x"),
+                        shopsConfig.getInt(path + ".chest-y"),
+                        shopsConfig.getInt(path + ".chest-z"),
+                        shopsConfig.getString(path + ".item"),
+                        shopsConfig.getInt(path + ".amount", 1),
+                        shopsConfig.getDouble(path + ".buy-price", 0),
+                        shopsConfig.getDouble(path + ".sell-price", 0),
+                        shopsConfig.getInt(path + ".stock", -1),
+                        shopsConfig.getInt(path + ".space", -1)
+                ));
+            } catch (Exception e) {
+                logger.warning("Failed to load shop " + key + ": " + e.getMessage());
+            }
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,62 @@
+package com.chestshop.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Maps block positions to ids: one {@link LongIntMap} of {@link BlockKey}s per
+ * world. Lookups hash the world name (cached by String) and a long, so they
+ * don't allocate or box. Not thread-safe.
+ */
+public class BlockIndex {
+
+    private final Map<String, LongIntMap> worlds = new HashMap<>();
+    private int size;
+
+    /**
+     * Returns the id at the block, or {@link LongIntMap#MISSING}
+     */
+    public int get(String world, int x, int y, int z) {
+        LongIntMap blocks = worlds.get(world);
+        return blocks != null ? blocks.get(BlockKey.pack(x, y, z)) : LongIntMap.MISSING;
+    }
+
+    public int put(String world, int x, int y, int z, int id) {
+        int previous = worlds.computeIfAbsent(world, k -> new LongIntMap()).put(BlockKey.pack(x, y, z), id);
+        if (previous == LongIntMap.MISSING) {
+            size++;
+        }
+        return previous;
+    }
+
+    public int remove(String world, int x, int y, int z) {
+        LongIntMap blocks = worlds.get(world);
+        if (blocks == null) {
+            return LongIntMap.MISSING;
+        }
+        int removed = blocks.remove(BlockKey.pack(x, y, z));
+        if (removed != LongIntMap.MISSING) {
+            size--;
+            if (blocks.isEmpty()) {
+                worlds.remove(world);
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        worlds.clear();
+        size = 0;
+    }
+
+    public void forEachValue(IntConsumer action) {
+        for (LongIntMap blocks : worlds.values()) {
+            blocks.forEachValue(action);
+        }
+    }
+}
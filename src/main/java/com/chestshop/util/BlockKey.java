@@ -0,0 +1,28 @@
+package com.chestshop.util;
+
+/**
+ * Packs block coordinates into a single long: 26 bits x, 26 bits z, 12 bits y
+ * (the same layout Minecraft uses for block positions). Covers x/z within
+ * +-33,554,431 and y within -2048..2047. The world is not included.
+ */
+public final class BlockKey {
+
+    private BlockKey() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    public static int x(long key) {
+        return (int) (key >> 38);
+    }
+
+    public static int y(long key) {
+        return (int) (key << 52 >> 52);
+    }
+
+    public static int z(long key) {
+        return (int) (key << 26 >> 38);
+    }
+}
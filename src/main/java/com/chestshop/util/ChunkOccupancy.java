@@ -0,0 +1,52 @@
+package com.chestshop.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts entries per chunk, per world, so callers can rule out a whole chunk
+ * with one primitive lookup. Lookups don't allocate. Not thread-safe.
+ */
+public class ChunkOccupancy {
+
+    private final Map<String, LongObjectMap<int[]>> worlds = new HashMap<>();
+
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public boolean isOccupied(String world, int chunkX, int chunkZ) {
+        LongObjectMap<int[]> chunks = worlds.get(world);
+        return chunks != null && chunks.containsKey(chunkKey(chunkX, chunkZ));
+    }
+
+    public void increment(String world, int chunkX, int chunkZ) {
+        LongObjectMap<int[]> chunks = worlds.computeIfAbsent(world, k -> new LongObjectMap<>());
+        long key = chunkKey(chunkX, chunkZ);
+        int[] count = chunks.get(key);
+        if (count == null) {
+            chunks.put(key, new int[] {1});
+        } else {
+            count[0]++;
+        }
+    }
+
+    public void decrement(String world, int chunkX, int chunkZ) {
+        LongObjectMap<int[]> chunks = worlds.get(world);
+        if (chunks == null) {
+            return;
+        }
+        long key = chunkKey(chunkX, chunkZ);
+        int[] count = chunks.get(key);
+        if (count != null && --count[0] <= 0) {
+            chunks.remove(key);
+            if (chunks.isEmpty()) {
+                worlds.remove(world);
+            }
+        }
+    }
+
+    public void clear() {
+        worlds.clear();
+    }
+}
@@ -0,0 +1,82 @@
+package com.chestshop.util;
+
+/**
+ * Set of primitive long keys that each drop out a fixed time after being
+ * added (e.g. alert cooldowns). Every key has one entry in a FIFO of expiry
+ * times; since all keys live equally long, that FIFO is already sorted, so
+ * expiring only ever pops its head. Add and lookup are amortized O(1) and
+ * nothing is boxed. Times are System.nanoTime() readings, compared by
+ * difference so they may wrap around. Not thread-safe.
+ */
+public class ExpiringLongSet {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final long ttl;
+    private final LongIntMap live = new LongIntMap();
+
+    // Ring of (key, expiry) in insertion order
+    private long[] keys = new long[DEFAULT_CAPACITY];
+    private long[] expiries = new long[DEFAULT_CAPACITY];
+    private int head;
+    private int count;
+
+    public ExpiringLongSet(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Whether the key was added less than ttl before now
+     */
+    public boolean contains(long key, long now) {
+        expire(now);
+        return live.containsKey(key);
+    }
+
+    /**
+     * Add the key unless it is still live. Returns false if it was.
+     */
+    public boolean add(long key, long now) {
+        expire(now);
+        if (live.put(key, 0) != LongIntMap.MISSING) {
+            return false;
+        }
+        if (count == keys.length) {
+            grow();
+        }
+        int tail = (head + count) & (keys.length - 1);
+        keys[tail] = key;
+        expiries[tail] = now + ttl;
+        count++;
+        return true;
+    }
+
+    public int size() {
+        return live.size();
+    }
+
+    /**
+     * Drop every key whose time is up
+     */
+    private void expire(long now) {
+        int mask = keys.length - 1;
+        while (count > 0 && expiries[head] - now <= 0) { // Overflow-safe, as nanoTime requires
+            live.remove(keys[head]);
+            head = (head + 1) & mask;
+            count--;
+        }
+    }
+
+    private void grow() {
+        long[] newKeys = new long[keys.length << 1];
+        long[] newExpiries = new long[keys.length << 1];
+        for (int i = 0; i < count; i++) {
+            int slot = (head + i) & (keys.length - 1);
+            newKeys[i] = keys[slot];
+            newExpiries[i] = expiries[slot];
+        }
+        keys = newKeys;
+        expiries = newExpiries;
+        head = 0;
+    }
+}
@@ -0,0 +1,156 @@
+package com.chestshop.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of non-negative ints (e.g. shop ids) using open addressing with linear
+ * probing. Nothing is boxed; a negative slot marks an empty bucket. Not thread-safe.
+ */
+public class IntSet {
+
+    private static final int EMPTY = -1;
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] slots;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public IntSet() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int value) {
+        int slot = slot(value);
+        int existing;
+        while ((existing = slots[slot]) != EMPTY) {
+            if (existing == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns false if the value was already present
+     */
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative values are not supported");
+        }
+        int slot = slot(value);
+        int existing;
+        while ((existing = slots[slot]) != EMPTY) {
+            if (existing == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(slots.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns false if the value wasn't present
+     */
+    public boolean remove(int value) {
+        int slot = slot(value);
+        int existing;
+        while ((existing = slots[slot]) != EMPTY) {
+            if (existing == value) {
+                size--;
+                shiftBack(slot);
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int value : slots) {
+            if (value != EMPTY) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Copy of the values, in no particular order (safe to iterate while modifying the set)
+     */
+    public int[] toArray() {
+        int[] values = new int[size];
+        int i = 0;
+        for (int value : slots) {
+            if (value != EMPTY) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Close the gap left by a removal (see {@link LongObjectMap})
+     */
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int value = slots[slot];
+            if (value == EMPTY) {
+                break;
+            }
+            int home = slot(value);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                slots[gap] = value;
+                gap = slot;
+            }
+        }
+        slots[gap] = EMPTY;
+    }
+
+    private int slot(int value) {
+        int hash = value * 0x9E3779B9; // Sequential ids would otherwise fill one run of slots
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        allocate(capacity);
+        for (int value : old) {
+            if (value != EMPTY) {
+                int slot = slot(value);
+                while (slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = value;
+            }
+        }
+    }
+}
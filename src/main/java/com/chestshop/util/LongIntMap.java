@@ -0,0 +1,166 @@
+package com.chestshop.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hash map from primitive long keys to non-negative int values (e.g. shop ids),
+ * using open addressing with linear probing. Nothing is boxed. A negative slot
+ * marks an empty bucket, so negative values are not allowed. Not thread-safe.
+ */
+public class LongIntMap {
+
+    /**
+     * Returned by lookups when the key isn't present
+     */
+    public static final int MISSING = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongIntMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value for the key, or {@link #MISSING}
+     */
+    public int get(long key) {
+        int slot = slot(key);
+        int value;
+        while ((value = values[slot]) != MISSING) {
+            if (keys[slot] == key) {
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Returns the previous value for the key, or {@link #MISSING}
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative values are not supported");
+        }
+        int slot = slot(key);
+        int existing;
+        while ((existing = values[slot]) != MISSING) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(values.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Returns the removed value, or {@link #MISSING} if the key wasn't present
+     */
+    public int remove(long key) {
+        int slot = slot(key);
+        int value;
+        while ((value = values[slot]) != MISSING) {
+            if (keys[slot] == key) {
+                size--;
+                shiftBack(slot);
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    public void forEachValue(IntConsumer action) {
+        for (int value : values) {
+            if (value != MISSING) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Close the gap left by a removal (see {@link LongObjectMap})
+     */
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int value = values[slot];
+            if (value == MISSING) {
+                break;
+            }
+            int home = slot(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = value;
+                gap = slot;
+            }
+        }
+        values[gap] = MISSING;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != MISSING) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != MISSING) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
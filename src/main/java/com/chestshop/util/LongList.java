@@ -0,0 +1,57 @@
+package com.chestshop.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive longs. Append-only apart from {@link #clear} and
+ * {@link #removeFirst}.
+ * Not thread-safe.
+ */
+public class LongList {
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private long[] values;
+    private int size;
+
+    public LongList() {
+        this.values = new long[DEFAULT_CAPACITY];
+    }
+
+    public void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length + (values.length >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drop the first count values
+     */
+    public void removeFirst(int count) {
+        if (count < 0 || count > size) {
+            throw new IndexOutOfBoundsException(count);
+        }
+        System.arraycopy(values, count, values, 0, size - count);
+        size -= count;
+    }
+}
@@ -0,0 +1,68 @@
+package com.chestshop.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer single-consumer queue over a power-of-two array.
+ *
+ * Neither side locks or blocks: {@link #offer} fails when the ring is full and
+ * {@link #drainTo} takes whatever is there. Exactly one thread may offer and
+ * one (other) thread may drain.
+ */
+public class SpscRing<T> {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final Object[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // Next slot to read (consumer)
+    private final AtomicLong tail = new AtomicLong(); // Next slot to write (producer)
+
+    /**
+     * Capacity is rounded up to a power of two
+     */
+    public SpscRing(int capacity) {
+        int size = Integer.highestOneBit(Math.min(MAX_CAPACITY, Math.max(2, capacity)) - 1) << 1;
+        this.slots = new Object[size];
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Add an element (producer thread). Returns false if the ring is full.
+     */
+    public boolean offer(T element) {
+        long t = tail.get();
+        if (t - head.get() >= slots.length) {
+            return false;
+        }
+        slots[(int) (t & mask)] = element;
+        tail.lazySet(t + 1); // Publishes the slot write
+        return true;
+    }
+
+    /**
+     * Move up to max elements into target, oldest first (consumer thread).
+     * Returns how many were moved.
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super T> target, int max) {
+        long h = head.get();
+        int count = (int) Math.min(tail.get() - h, max);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((h + i) & mask);
+            target.add((T) slots[index]);
+            slots[index] = null;
+        }
+        head.lazySet(h + count); // Hands the slots back to the producer
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+}
@@ -0,0 +1,125 @@
+package com.chestshop.economy;
+
+import org.bukkit.OfflinePlayer;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionEngineTest {
+
+    private static final Logger LOGGER = Logger.getLogger("TransactionEngineTest");
+    private static final double DELTA = 1e-9;
+
+    private final OfflinePlayer payer = player("payer");
+    private final OfflinePlayer payee = player("payee");
+
+    @Test
+    void payerWhoCantAffordOneUnitPaysNothing() {
+        SimulatedEconomyGateway economy = new SimulatedEconomyGateway(0, 5);
+        TransactionEngine engine = new TransactionEngine(economy, LOGGER, false);
+
+        TransactionEngine.Payment payment = pay(engine, 10, 9, 1);
+
+        assertEquals(TransactionEngine.Status.INSUFFICIENT_FUNDS, payment.status());
+        assertEquals(0, payment.units());
+        assertEquals(5, economy.getBalance(payer), DELTA);
+        assertEquals(5, economy.getBalance(payee), DELTA);
+    }
+
+    @Test
+    void bulkTradeIsTrimmedToWhatThePayerCanAfford() {
+        SimulatedEconomyGateway economy = new SimulatedEconomyGateway(0, 35);
+        TransactionEngine engine = new TransactionEngine(economy, LOGGER, false);
+
+        TransactionEngine.Payment payment = pay(engine, 10, 9, 5);
+
+        assertEquals(TransactionEngine.Status.PAID, payment.status());
+        assertEquals(3, payment.units());
+        assertEquals(5, economy.getBalance(payer), DELTA);
+        assertEquals(35 + 3 * 9, economy.getBalance(payee), DELTA);
+    }
+
+    @Test
+    void failedDepositGivesThePayerTheirMoneyBack() {
+        SimulatedEconomyGateway economy = new SimulatedEconomyGateway(0, 100) {
+            @Override
+            public Result deposit(OfflinePlayer player, double amount) {
+                return player == payee ? Result.failed("account locked") : super.deposit(player, amount);
+            }
+        };
+        TransactionEngine engine = new TransactionEngine(economy, LOGGER, false);
+
+        TransactionEngine.Payment payment = pay(engine, 10, 9, 4);
+
+        assertEquals(TransactionEngine.Status.DEPOSIT_FAILED, payment.status());
+        assertEquals(0, payment.units());
+        assertEquals("account locked", payment.errorMessage());
+        assertEquals(100, economy.getBalance(payer), DELTA);
+        assertEquals(100, economy.getBalance(payee), DELTA);
+    }
+
+    @Test
+    void shutdownCompletesQueuedPaymentsOnTheCallingThread() {
+        SimulatedEconomyGateway economy = new SimulatedEconomyGateway(20, 100);
+        TransactionEngine engine = new TransactionEngine(economy, LOGGER, true);
+        List<TransactionEngine.Payment> payments = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            engine.pay(payer, payee, 10, 9, 1, payment -> {
+                payments.add(payment);
+                threads.add(Thread.currentThread());
+            });
+        }
+        assertTrue(payments.isEmpty(), "completions ran before the tick");
+
+        // No tick task - only shutdown applies the results
+        engine.shutdown();
+
+        assertEquals(3, payments.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TransactionEngine.Status.PAID, payments.get(i).status());
+            assertSame(Thread.currentThread(), threads.get(i));
+        }
+        assertEquals(70, economy.getBalance(payer), DELTA);
+
+        // Trades completed after shutdown run inline rather than being queued forever
+        TransactionEngine.Payment late = pay(engine, 10, 9, 1);
+        assertEquals(TransactionEngine.Status.PAID, late.status());
+        assertEquals(60, economy.getBalance(payer), DELTA);
+    }
+
+    /**
+     * Pay and return the result, which must arrive before pay returns
+     */
+    private TransactionEngine.Payment pay(TransactionEngine engine, double unitPrice, double unitPayeeAmount,
+                                          int maxUnits) {
+        TransactionEngine.Payment[] result = new TransactionEngine.Payment[1];
+        engine.pay(payer, payee, unitPrice, unitPayeeAmount, maxUnits, payment -> result[0] = payment);
+        assertTrue(result[0] != null, "payment did not complete inline");
+        return result[0];
+    }
+
+    /**
+     * An OfflinePlayer with just an id and a name
+     */
+    private static OfflinePlayer player(String name) {
+        UUID id = UUID.nameUUIDFromBytes(name.getBytes());
+        return (OfflinePlayer) Proxy.newProxyInstance(OfflinePlayer.class.getClassLoader(),
+                new Class<?>[]{OfflinePlayer.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getUniqueId" -> id;
+                    case "getName" -> name;
+                    case "hashCode" -> id.hashCode();
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> name;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,165 @@
+package com.chestshop.ledger;
+
+import com.chestshop.models.TradeSide;
+import org.bukkit.Material;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * History over a generated ledger of {@value #DAYS} days, written through the
+ * ledger itself so the day files and indexes are the real format.
+ */
+class TradeLedgerTest {
+
+    private static final Logger LOGGER = Logger.getLogger("TradeLedgerTest");
+    private static final int DAYS = 30;
+    private static final int TRADES_PER_DAY = 5000;
+    private static final int OWNERS = 10;
+    private static final int RETAIN_DAYS = 7;
+    private static final long PAGE_MILLIS = 500; // Generous for slow CI machines - a page is typically well under 10ms
+
+    private final UUID[] owners = new UUID[OWNERS];
+    private final Path folder;
+
+    TradeLedgerTest() throws IOException {
+        folder = Files.createTempDirectory("ledger-test");
+        for (int i = 0; i < OWNERS; i++) {
+            owners[i] = new UUID(0, i);
+        }
+    }
+
+    @AfterEach
+    void deleteLedger() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void historyCoversOnlyTheRetainedDays() throws Exception {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        generate(today.minusDays(DAYS - 1), DAYS);
+
+        TradeLedger ledger = start(RETAIN_DAYS);
+        try {
+            HistoryPage first = history(ledger, HistoryQuery.byOwner(owners[3]), 1);
+            int perOwnerPerDay = TRADES_PER_DAY / OWNERS;
+            assertEquals(RETAIN_DAYS * perOwnerPerDay, first.total());
+
+            // Newest first, all within the retained days
+            List<TradeRecord> trades = first.trades();
+            assertEquals(10, trades.size());
+            for (int i = 1; i < trades.size(); i++) {
+                assertTrue(trades.get(i - 1).time() >= trades.get(i).time(), "page is not newest first");
+            }
+            LocalDate oldest = today.minusDays(RETAIN_DAYS - 1);
+            HistoryPage last = history(ledger, HistoryQuery.byOwner(owners[3]), first.pageCount());
+            TradeRecord oldestTrade = last.trades().get(last.trades().size() - 1);
+            assertEquals(oldest, day(oldestTrade));
+        } finally {
+            ledger.close();
+        }
+
+        // Nothing was deleted - with every day retained all of them are found again
+        TradeLedger all = start(0);
+        try {
+            assertEquals(DAYS * TRADES_PER_DAY / OWNERS, history(all, HistoryQuery.byOwner(owners[3]), 1).total());
+        } finally {
+            all.close();
+        }
+    }
+
+    @Test
+    void pageOfAMultiDayLedgerTakesMilliseconds() throws Exception {
+        generate(LocalDate.now(ZoneOffset.UTC).minusDays(DAYS - 1), DAYS);
+
+        TradeLedger ledger = start(0);
+        try {
+            history(ledger, HistoryQuery.byOwner(owners[0]), 1); // Waits for the index to load
+            for (int page : new int[]{1, 50, 1000, 1500}) {
+                long start = System.nanoTime();
+                HistoryPage result = history(ledger, HistoryQuery.byOwner(owners[7]), page);
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertEquals(10, result.trades().size());
+                assertTrue(millis < PAGE_MILLIS, "page " + page + " took " + millis + "ms");
+            }
+        } finally {
+            ledger.close();
+        }
+    }
+
+    @Test
+    void daysAgeOutWhileRunning() throws Exception {
+        LocalDate firstDay = LocalDate.now(ZoneOffset.UTC).minusDays(RETAIN_DAYS - 1);
+        generate(firstDay, RETAIN_DAYS);
+
+        TradeLedger ledger = start(RETAIN_DAYS);
+        try {
+            int perOwnerPerDay = TRADES_PER_DAY / OWNERS;
+            assertEquals(RETAIN_DAYS * perOwnerPerDay, history(ledger, HistoryQuery.byOwner(owners[1]), 1).total());
+
+            // A trade two days on pushes the two oldest days out of the index
+            ledger.record(trade(firstDay.plusDays(RETAIN_DAYS + 1), 0, owners[1]));
+            HistoryPage page = history(ledger, HistoryQuery.byOwner(owners[1]), 1);
+            assertEquals((RETAIN_DAYS - 2) * perOwnerPerDay + 1, page.total());
+        } finally {
+            ledger.close();
+        }
+    }
+
+    /**
+     * Write TRADES_PER_DAY trades for each of days days from firstDay, spread over each day
+     */
+    private void generate(LocalDate firstDay, int days) {
+        // Room for every trade, so none overflow to the log however far the writer falls behind
+        TradeLedger ledger = new TradeLedger(folder.toFile(), LOGGER, Runnable::run, days * TRADES_PER_DAY, 1, 0);
+        ledger.start();
+        for (int day = 0; day < days; day++) {
+            for (int i = 0; i < TRADES_PER_DAY; i++) {
+                ledger.record(trade(firstDay.plusDays(day), i, owners[i % OWNERS]));
+            }
+        }
+        ledger.close();
+    }
+
+    private static TradeRecord trade(LocalDate day, int i, UUID owner) {
+        long time = day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() + i * 10_000L;
+        int shop = i % 50;
+        return new TradeRecord(time, i % 2 == 0 ? TradeSide.BUY : TradeSide.SELL,
+                new UUID(1, i % 100), "Player" + i % 100, owner, "Owner" + owner.getLeastSignificantBits(),
+                shop, "world", shop, 64, 0, Material.STONE, 1, 5.0, 0.25);
+    }
+
+    private TradeLedger start(int retainDays) {
+        TradeLedger ledger = new TradeLedger(folder.toFile(), LOGGER, Runnable::run, 1024, 1, retainDays);
+        ledger.start();
+        return ledger;
+    }
+
+    private static HistoryPage history(TradeLedger ledger, HistoryQuery query, int page) throws Exception {
+        CompletableFuture<HistoryPage> result = new CompletableFuture<>();
+        assertTrue(ledger.history(query, page, 10, result::complete), "ledger is not running");
+        return result.get(30, TimeUnit.SECONDS);
+    }
+
+    private static LocalDate day(TradeRecord trade) {
+        return LocalDate.ofEpochDay(Math.floorDiv(trade.time(), TimeUnit.DAYS.toMillis(1)));
+    }
+}
@@ -0,0 +1,224 @@
+package com.chestshop.managers;
+
+import com.chestshop.models.Shop;
+import com.chestshop.util.IntSet;
+import org.bukkit.Material;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * One writer churns shops through a {@link ShopTable} and publishes snapshots
+ * through a {@link ShopPublisher}, as {@link ShopManager} does, while reader
+ * threads check that every snapshot they pick up is internally consistent and
+ * never changes under them.
+ */
+class ShopSnapshotStressTest {
+
+    private static final Material[] ITEMS = {Material.STONE, Material.DIRT, Material.DIAMOND, Material.OAK_LOG};
+    private static final int WRITER_OPS = 200_000;
+    private static final int READERS = 4;
+    private static final int GROW_TO = 1500; // Live shops, spread over a few segments
+
+    private final ShopTable table = new ShopTable();
+    private final Map<Material, IntSet> itemIndex = new EnumMap<>(Material.class);
+    private final ShopPublisher publisher = new ShopPublisher(table, itemIndex);
+    private volatile ShopSnapshot snapshot = ShopSnapshot.EMPTY;
+
+    @Test
+    void readersNeverSeeTornSnapshots() throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong checked = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    start.await();
+                    long lastVersion = -1;
+                    while (!done.get() && failure.get() == null) {
+                        ShopSnapshot seen = snapshot;
+                        if (seen.getVersion() < lastVersion) {
+                            throw new AssertionError("version went back from " + lastVersion + " to " + seen.getVersion());
+                        }
+                        lastVersion = seen.getVersion();
+                        int hash = verify(seen);
+                        Thread.onSpinWait();
+                        if (verify(seen) != hash) {
+                            throw new AssertionError("snapshot " + seen.getVersion() + " changed after it was published");
+                        }
+                        checked.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "snapshot-reader-" + i);
+            readers.add(reader);
+            reader.start();
+        }
+
+        start.countDown();
+        try {
+            churn();
+        } finally {
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+
+        assertNull(failure.get(), () -> "reader saw a torn snapshot: " + failure.get());
+        assertTrue(checked.get() > 0, "readers never ran");
+        verify(snapshot);
+    }
+
+    @Test
+    void shopListMatchesTheTableAcrossEmptySegments() {
+        for (int i = 0; i < 5000; i++) {
+            add(ITEMS[i % ITEMS.length], i);
+        }
+        publish();
+        // Empty a whole segment in the middle, and thin out the last one
+        for (int id = 1024; id < 2048; id++) {
+            remove(id);
+        }
+        for (int id = 4096; id < 5000; id += 3) {
+            remove(id);
+        }
+        table.setStock(10, 5, 5);
+        publisher.changed(10, table.item(10));
+        publish();
+
+        List<Shop> expected = new ArrayList<>();
+        table.forEach(id -> expected.add(table.get(id)));
+        List<Shop> shops = snapshot.getShops();
+        assertEquals(expected.size(), shops.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), shops.get(i));
+        }
+        assertEquals(expected, new ArrayList<>(shops));
+        verify(snapshot);
+
+        // After the table is cleared (a reload) nothing old may survive
+        table.clear(0);
+        itemIndex.clear();
+        publisher.changedAll();
+        add(Material.STONE, 0);
+        publish();
+        assertEquals(1, snapshot.size());
+        assertTrue(snapshot.getShopsByItem(Material.DIAMOND).isEmpty(), "item list survived the reload");
+        verify(snapshot);
+    }
+
+    private int add(Material item, int x) {
+        Shop shop = new Shop(-1, UUID.randomUUID(), "owner", "world", x, 64, 0, "world", x, 63, 0,
+                item, 1, 1.0, 0.0, -1, -1);
+        int id = table.add(shop);
+        itemIndex.computeIfAbsent(item, k -> new IntSet()).add(id);
+        publisher.changed(id, item);
+        return id;
+    }
+
+    private void remove(int id) {
+        Shop removed = table.remove(id);
+        itemIndex.get(removed.getItem()).remove(id);
+        publisher.changed(id, removed.getItem());
+    }
+
+    /**
+     * Writer: random adds, removals and restocks, publishing after every few
+     * changes. Adds win until the table spans a few segments.
+     */
+    private void churn() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Integer> live = new ArrayList<>();
+        int nextPos = 0;
+        int untilPublish = 1;
+
+        for (int op = 0; op < WRITER_OPS; op++) {
+            int choice = random.nextInt(10);
+            if (live.isEmpty() || choice < (live.size() < GROW_TO ? 5 : 4)) {
+                live.add(add(ITEMS[random.nextInt(ITEMS.length)], nextPos++));
+            } else if (choice < 8) {
+                remove(live.remove(random.nextInt(live.size())));
+            } else {
+                int id = live.get(random.nextInt(live.size()));
+                table.setStock(id, random.nextInt(64), random.nextInt(64));
+                publisher.changed(id, table.item(id));
+            }
+
+            if (--untilPublish == 0) {
+                publish();
+                untilPublish = 1 + random.nextInt(8);
+            }
+        }
+        publish();
+    }
+
+    private void publish() {
+        snapshot = publisher.publish(snapshot);
+    }
+
+    /**
+     * Check one snapshot's invariants; returns a fingerprint of its contents
+     */
+    private static int verify(ShopSnapshot seen) {
+        List<Shop> shops = seen.getShops();
+        if (shops.size() != seen.size()) {
+            throw new AssertionError("size " + seen.size() + " but " + shops.size() + " shops");
+        }
+
+        Map<Integer, Shop> byId = new HashMap<>();
+        int hash = 1;
+        int lastId = -1;
+        for (Shop shop : shops) {
+            if (shop == null || shop.getId() < 0) {
+                throw new AssertionError("unregistered shop in snapshot " + seen.getVersion());
+            }
+            if (shop.getId() <= lastId) {
+                throw new AssertionError("id " + shop.getId() + " listed after " + lastId + " in snapshot " + seen.getVersion());
+            }
+            lastId = shop.getId();
+            if (byId.put(shop.getId(), shop) != null) {
+                throw new AssertionError("id " + shop.getId() + " listed twice in snapshot " + seen.getVersion());
+            }
+            hash = 31 * hash + System.identityHashCode(shop);
+        }
+
+        int indexed = 0;
+        for (Material item : ITEMS) {
+            for (Shop shop : seen.getShopsByItem(item)) {
+                if (shop.getItem() != item) {
+                    throw new AssertionError("shop " + shop.getId() + " indexed under " + item + " but sells " + shop.getItem());
+                }
+                if (byId.get(shop.getId()) != shop) {
+                    throw new AssertionError("item index and shop list disagree on id " + shop.getId()
+                            + " in snapshot " + seen.getVersion());
+                }
+                indexed++;
+            }
+        }
+        if (indexed != shops.size()) {
+            throw new AssertionError("item index holds " + indexed + " shops, list holds " + shops.size()
+                    + " in snapshot " + seen.getVersion());
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,79 @@
+package com.chestshop.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiringLongSetTest {
+
+    private static final long TTL = 100;
+
+    @Test
+    void keysExpireInTheOrderTheyWereAdded() {
+        ExpiringLongSet set = new ExpiringLongSet(TTL);
+        set.add(1, 0);
+        set.add(2, 10);
+        set.add(3, 20);
+
+        assertTrue(set.contains(1, 99));
+        assertFalse(set.contains(1, 100)); // Exactly ttl later it is gone
+        assertTrue(set.contains(2, 100));
+        assertFalse(set.contains(2, 110));
+        assertTrue(set.contains(3, 110));
+        assertFalse(set.contains(3, 120));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void liveKeyIsNotAddedAgain() {
+        ExpiringLongSet set = new ExpiringLongSet(TTL);
+        assertTrue(set.add(7, 0));
+        assertFalse(set.add(7, 50));
+        // The rejected add doesn't extend the cooldown
+        assertFalse(set.contains(7, 100));
+    }
+
+    @Test
+    void keyCanBeAddedAgainAfterItExpires() {
+        ExpiringLongSet set = new ExpiringLongSet(TTL);
+        assertTrue(set.add(7, 0));
+        assertTrue(set.add(7, 100));
+        assertTrue(set.contains(7, 199));
+        assertFalse(set.contains(7, 200));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void ringWrapsAroundAndGrowsWhileWrapped() {
+        ExpiringLongSet set = new ExpiringLongSet(TTL);
+        long now = 0;
+        // Keep 10 keys live so head and tail chase each other round the ring many times
+        for (long key = 0; key < 10_000; key++, now += TTL / 10) {
+            assertTrue(set.add(key, now));
+            assertTrue(set.size() <= 10, "expired keys were kept");
+        }
+        // Grow while the live keys straddle the end of the ring
+        for (long key = 10_000; key < 10_100; key++) {
+            assertTrue(set.add(key, now));
+        }
+        for (long key = 9_991; key < 10_100; key++) {
+            assertTrue(set.contains(key, now), "lost key " + key);
+        }
+        assertFalse(set.contains(9_990, now));
+        assertFalse(set.contains(10_099, now + TTL));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void expiryWorksAcrossNanoTimeOverflow() {
+        ExpiringLongSet set = new ExpiringLongSet(TTL);
+        long now = Long.MAX_VALUE - 10; // Expiry time wraps to a negative value
+        assertTrue(set.add(1, now));
+        assertTrue(set.contains(1, now + 50));
+        assertFalse(set.add(1, now + 50));
+        assertFalse(set.contains(1, now + TTL));
+        assertTrue(set.add(1, now + TTL));
+    }
+}